@@ -0,0 +1,22 @@
+-- Base table as created by Hibernate (document-processor entity), so the migration also runs on an empty database
+CREATE TABLE IF NOT EXISTS embeddings (
+    id               BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    file_uuid        UUID                        NOT NULL,
+    file_name        VARCHAR(255)                NOT NULL,
+    chunk_text       TEXT                        NOT NULL,
+    vector           vector(768)                 NOT NULL,
+    vector_generated BOOLEAN                     NOT NULL,
+    page_number      INTEGER,
+    created_at       TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    user_id          VARCHAR(255)                NOT NULL
+);
+
+-- Binary quantization: 1 bit per dimension (96 bytes instead of 3 KB), maintained by Postgres on every insert/update.
+-- Stays inline in the heap tuple while the full vector is TOASTed, so the Hamming prefilter does not touch float32 data.
+ALTER TABLE embeddings
+    ADD COLUMN IF NOT EXISTS vector_bits bit(768) GENERATED ALWAYS AS (binary_quantize(vector)::bit(768)) STORED;
+
+CREATE INDEX IF NOT EXISTS idx_emb_vector_bits ON embeddings USING hnsw (vector_bits bit_hamming_ops);
+
+-- Half precision: float16 HNSW index, half the size of a float32 one
+CREATE INDEX IF NOT EXISTS idx_emb_vector_half ON embeddings USING hnsw ((CAST(vector AS halfvec(768))) halfvec_cosine_ops);
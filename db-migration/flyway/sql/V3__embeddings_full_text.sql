@@ -0,0 +1,5 @@
+-- Lexical retrieval leg: 'simple' configuration keeps part numbers, error codes and identifiers as they are typed
+ALTER TABLE embeddings
+    ADD COLUMN IF NOT EXISTS chunk_tsv tsvector GENERATED ALWAYS AS (to_tsvector('simple', chunk_text)) STORED;
+
+CREATE INDEX IF NOT EXISTS idx_emb_chunk_tsv ON embeddings USING gin (chunk_tsv);
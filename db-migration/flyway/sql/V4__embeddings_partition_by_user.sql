@@ -0,0 +1,50 @@
+-- Hash partitioning of embeddings by user_id: every search filters on user_id, so the planner prunes to one partition
+-- and its local HNSW / GIN indexes, and a large tenant no longer bloats the index and buffer cache of the others.
+-- The schema is owned by Flyway from here on (spring.jpa.hibernate.ddl-auto=none in the services).
+
+ALTER TABLE embeddings RENAME TO embeddings_unpartitioned;
+
+CREATE TABLE embeddings (
+    id               BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    file_uuid        UUID                        NOT NULL,
+    file_name        VARCHAR(255)                NOT NULL,
+    chunk_text       TEXT                        NOT NULL,
+    vector           vector(768)                 NOT NULL,
+    vector_generated BOOLEAN                     NOT NULL,
+    page_number      INTEGER,
+    created_at       TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    user_id          VARCHAR(255)                NOT NULL,
+    vector_bits      bit(768) GENERATED ALWAYS AS (binary_quantize(vector)::bit(768)) STORED,
+    chunk_tsv        tsvector GENERATED ALWAYS AS (to_tsvector('simple', chunk_text)) STORED,
+    -- the partition key has to be part of the primary key
+    PRIMARY KEY (id, user_id)
+) PARTITION BY HASH (user_id);
+
+DO $$
+BEGIN
+    FOR i IN 0..15 LOOP
+        EXECUTE format('CREATE TABLE embeddings_p%s PARTITION OF embeddings FOR VALUES WITH (MODULUS 16, REMAINDER %s)',
+                       lpad(i::text, 2, '0'), i);
+    END LOOP;
+END $$;
+
+INSERT INTO embeddings (id, file_uuid, file_name, chunk_text, vector, vector_generated, page_number, created_at, user_id)
+SELECT id, file_uuid, file_name, chunk_text, vector, vector_generated, page_number, created_at, user_id
+FROM embeddings_unpartitioned;
+
+SELECT setval(pg_get_serial_sequence('embeddings', 'id'), COALESCE((SELECT max(id) FROM embeddings), 0) + 1, false);
+
+-- drops the old indexes too, which frees their names for the partitioned ones below
+DROP TABLE embeddings_unpartitioned;
+
+-- Indexes on the partitioned table are created on every partition (local indexes)
+CREATE INDEX idx_emb_file_uuid ON embeddings (file_uuid);
+CREATE INDEX idx_emb_vector_generated ON embeddings (vector_generated);
+CREATE INDEX idx_emb_file_uuid_vector_generated ON embeddings (file_uuid, vector_generated);
+CREATE INDEX idx_emb_user_file ON embeddings (user_id, file_uuid);
+CREATE INDEX idx_emb_vector ON embeddings USING hnsw (vector vector_cosine_ops);
+CREATE INDEX idx_emb_vector_bits ON embeddings USING hnsw (vector_bits bit_hamming_ops);
+CREATE INDEX idx_emb_vector_half ON embeddings USING hnsw ((CAST(vector AS halfvec(768))) halfvec_cosine_ops);
+CREATE INDEX idx_emb_chunk_tsv ON embeddings USING gin (chunk_tsv);
+
+ANALYZE embeddings;
@@ -0,0 +1,5 @@
+-- The partitioned table cannot have a unique index on id alone (the primary key has to contain user_id), so the
+-- uniqueness of id relies on every row taking it from the identity sequence: explicit ids are rejected from now on.
+-- Lookups by id alone still probe all 16 partitions, the services add user_id to them.
+
+ALTER TABLE embeddings ALTER COLUMN id SET GENERATED ALWAYS;
@@ -1,7 +1,9 @@
 package com.github.vadimmiheev.vectordocs.answergenerator.config;
 
 import dev.langchain4j.model.openai.OpenAiChatModel;
+import dev.langchain4j.model.Tokenizer;
 import dev.langchain4j.model.openai.OpenAiStreamingChatModel;
+import dev.langchain4j.model.openai.OpenAiTokenizer;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -34,4 +36,10 @@ public class ChatModelConfig {
                 .apiKey(apiKey)
                 .build();
     }
+
+    // cl100k token counts, close enough to budget prompts for the self-hosted models as well
+    @Bean
+    public Tokenizer tokenizer() {
+        return new OpenAiTokenizer("gpt-3.5-turbo");
+    }
 }
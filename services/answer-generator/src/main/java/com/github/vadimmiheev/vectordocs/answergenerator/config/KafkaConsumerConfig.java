@@ -0,0 +1,38 @@
+package com.github.vadimmiheev.vectordocs.answergenerator.config;
+
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.kafka.ConcurrentKafkaListenerContainerFactoryConfigurer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.listener.ContainerProperties;
+
+import java.util.Properties;
+
+@Configuration
+public class KafkaConsumerConfig {
+
+    // Listeners hand records off to PartitionedDispatcher and acknowledge them when done; acks may arrive out of
+    // order, the container defers the commit until all earlier offsets of the partition are acknowledged.
+    // With async acks the container pauses the consumer until every record of the previous poll is acknowledged
+    // (it keeps polling while paused, so max.poll.interval.ms is not at risk). That bounds the records in flight by
+    // max.poll.records, and it also means one slow answer still holds back the next poll batch: head-of-line blocking
+    // is gone within a batch, not across batches.
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<Object, Object> asyncAckListenerContainerFactory(
+            ConcurrentKafkaListenerContainerFactoryConfigurer configurer,
+            ConsumerFactory<Object, Object> consumerFactory,
+            @Value("${app.kafka.max-in-flight:16}") int maxInFlight
+    ) {
+        ConcurrentKafkaListenerContainerFactory<Object, Object> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        configurer.configure(factory, consumerFactory);
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+        factory.getContainerProperties().setAsyncAcks(true);
+        Properties consumerProperties = new Properties();
+        consumerProperties.setProperty(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, String.valueOf(Math.max(1, maxInFlight)));
+        factory.getContainerProperties().setKafkaConsumerProperties(consumerProperties);
+        return factory;
+    }
+}
@@ -0,0 +1,54 @@
+package com.github.vadimmiheev.vectordocs.answergenerator.config;
+
+import com.github.vadimmiheev.vectordocs.answergenerator.service.NotificationConnectionMonitor;
+import io.rsocket.loadbalance.LoadbalanceTarget;
+import io.rsocket.loadbalance.RoundRobinLoadbalanceStrategy;
+import io.rsocket.transport.netty.client.TcpClientTransport;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.rsocket.RSocketRequester;
+import reactor.core.publisher.Flux;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@Configuration
+public class NotificationRSocketConfig {
+
+    // One long-lived requester for all answers: every stream is multiplexed over a few connections to a single
+    // notification-service instance, picked round-robin, and a dropped connection is re-established with backoff.
+    // The target stays single on purpose: a user's WebSocket session lives in the memory of exactly one instance and
+    // this hop does not pass the gateway, so spreading streams over several instances would deliver them to nobody.
+    // Scaling notification-service out needs shared sessions first.
+    @Bean(destroyMethod = "dispose")
+    public RSocketRequester notificationRequester(
+            RSocketRequester.Builder builder,
+            NotificationConnectionMonitor connectionMonitor,
+            @Value("${app.notification.rsocket.host:notification-service}") String host,
+            @Value("${app.notification.rsocket.port:7000}") int port,
+            @Value("${app.notification.rsocket.connections:2}") int connections,
+            @Value("${app.notification.rsocket.reconnect.max-attempts:5}") long reconnectAttempts,
+            @Value("${app.notification.rsocket.reconnect.min-backoff:PT0.2S}") Duration minBackoff,
+            @Value("${app.notification.rsocket.reconnect.max-backoff:PT5S}") Duration maxBackoff
+    ) {
+        String address = host == null ? "" : host.trim();
+        if (address.isEmpty()) {
+            throw new IllegalStateException("app.notification.rsocket.host is empty");
+        }
+        List<LoadbalanceTarget> targets = new ArrayList<>();
+        for (int i = 0; i < Math.max(1, connections); i++) {
+            targets.add(LoadbalanceTarget.from(address + ":" + port + "#" + i, TcpClientTransport.create(address, port)));
+        }
+
+        return builder
+                .rsocketConnector(connector -> connector
+                        .reconnect(Retry.backoff(reconnectAttempts, minBackoff)
+                                .maxBackoff(maxBackoff)
+                                .doBeforeRetry(signal -> connectionMonitor.onReconnectAttempt(signal.failure())))
+                        .interceptors(registry -> registry.forConnection(connectionMonitor)))
+                .transports(Flux.just(targets), new RoundRobinLoadbalanceStrategy());
+    }
+}
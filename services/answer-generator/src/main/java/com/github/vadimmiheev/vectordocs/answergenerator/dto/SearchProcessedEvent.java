@@ -13,9 +13,13 @@ import java.util.UUID;
 public class SearchProcessedEvent {
     private String requestId;
     private String query;
+    // query the hits were searched with (the rewritten follow-up), may be null
+    private String ragQuery;
     private String userId;
     private List<SearchContextItem> context;
     private List<Hit> embeddings;
+    // vector of the query the hits were retrieved with, may be null
+    private float[] queryVector;
 
     @Getter
     @Setter
@@ -23,6 +27,7 @@ public class SearchProcessedEvent {
     @AllArgsConstructor
     @Builder
     public static class Hit {
+        private Long id;
         private UUID fileUuid;
         private String fileName;
         private Integer pageNumber;
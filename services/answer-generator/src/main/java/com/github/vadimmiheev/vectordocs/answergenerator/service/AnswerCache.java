@@ -0,0 +1,226 @@
+package com.github.vadimmiheev.vectordocs.answergenerator.service;
+
+import com.github.vadimmiheev.vectordocs.answergenerator.dto.SearchProcessedEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Generated answers keyed by user, the exact set of retrieved chunk ids and the conversation context. A new question
+ * reuses an answer when it retrieved the same chunks in the same conversation and its query vector is within the
+ * similarity threshold of the cached question. Results served from the search-service cache carry no vector, then
+ * the normalized search query text has to be the same. Answers are dropped when a document they were built from is
+ * deleted or reprocessed; a per-user version keeps answers generated across such a change out of the cache.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AnswerCache {
+
+    private static final int MAX_QUESTIONS_PER_KEY = 4;
+
+    private final MeterRegistry meterRegistry;
+    private final Map<String, AtomicLong> userVersions = new ConcurrentHashMap<>();
+
+    @Value("${app.answer.cache.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${app.answer.cache.similarity-threshold:0.95}")
+    private double similarityThreshold = 0.95;
+
+    @Value("${app.answer.cache.max-entries:1000}")
+    private int maxEntries = 1000;
+
+    @Value("${app.answer.cache.ttl:PT1H}")
+    private Duration ttl = Duration.ofHours(1);
+
+    // access ordered, evicts the least recently used chunk sets; guarded by this
+    private final LinkedHashMap<Key, List<Entry>> entries = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, List<Entry>> eldest) {
+            return size() > maxEntries;
+        }
+    };
+
+    /**
+     * @param query the query the hits were searched with; a follow-up only means something next to its context
+     * @return the lookup for this question, or {@code null} when it cannot be cached (disabled, hits without ids)
+     */
+    public Lookup lookup(String userId, String query, List<SearchProcessedEvent.SearchContextItem> context,
+                         float[] queryVector, List<SearchProcessedEvent.Hit> hits) {
+        if (!enabled || hits == null || hits.isEmpty() || hits.stream().anyMatch(h -> h.getId() == null)) {
+            return null;
+        }
+        Set<Long> chunkIds = hits.stream().map(SearchProcessedEvent.Hit::getId).collect(Collectors.toCollection(TreeSet::new));
+        Set<UUID> documentIds = hits.stream().map(SearchProcessedEvent.Hit::getFileUuid).filter(Objects::nonNull).collect(Collectors.toSet());
+        return new Lookup(new Key(userId, chunkIds, hash(context)), normalize(query), unit(queryVector), documentIds, version(userId).get());
+    }
+
+    /**
+     * @return the cached answer tokens, or {@code null} on a miss
+     */
+    public List<String> get(Lookup lookup) {
+        if (lookup == null) {
+            return null;
+        }
+        List<String> tokens = null;
+        synchronized (this) {
+            List<Entry> candidates = entries.get(lookup.key());
+            if (candidates != null) {
+                long now = System.nanoTime();
+                candidates.removeIf(e -> now - e.createdAtNanos() > ttl.toNanos());
+                for (Entry entry : candidates) {
+                    if (matches(entry, lookup)) {
+                        tokens = entry.tokens();
+                        break;
+                    }
+                }
+            }
+        }
+        count(tokens != null ? "hit" : "miss");
+        return tokens;
+    }
+
+    public void put(Lookup lookup, List<String> tokens) {
+        if (lookup == null || tokens.isEmpty()) {
+            return;
+        }
+        synchronized (this) {
+            // a document changed while the answer was generated, it may already be stale
+            if (version(lookup.key().userId()).get() != lookup.version()) {
+                return;
+            }
+            List<Entry> candidates = entries.computeIfAbsent(lookup.key(), k -> new ArrayList<>());
+            candidates.removeIf(e -> matches(e, lookup));
+            if (candidates.size() >= MAX_QUESTIONS_PER_KEY) {
+                candidates.removeFirst();
+            }
+            candidates.add(new Entry(lookup.query(), lookup.queryVector(), List.copyOf(tokens), lookup.documentIds(), System.nanoTime()));
+        }
+    }
+
+    public void invalidateDocument(String userId, UUID documentId) {
+        int removed = 0;
+        synchronized (this) {
+            if (userId != null) {
+                version(userId).incrementAndGet();
+            }
+            Iterator<Map.Entry<Key, List<Entry>>> it = entries.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<Key, List<Entry>> next = it.next();
+                if (userId != null && !userId.equals(next.getKey().userId())) {
+                    continue;
+                }
+                int before = next.getValue().size();
+                next.getValue().removeIf(e -> e.documentIds().contains(documentId));
+                removed += before - next.getValue().size();
+                if (next.getValue().isEmpty()) {
+                    it.remove();
+                }
+            }
+        }
+        if (removed > 0) {
+            log.debug("Dropped {} cached answers built from document {}", removed, documentId);
+            Counter.builder("answer.cache.invalidated")
+                    .description("Cached answers dropped because a source document changed")
+                    .register(meterRegistry)
+                    .increment(removed);
+        }
+    }
+
+    private boolean matches(Entry entry, Lookup lookup) {
+        if (entry.queryVector() != null && lookup.queryVector() != null
+                && entry.queryVector().length == lookup.queryVector().length) {
+            return dot(entry.queryVector(), lookup.queryVector()) >= similarityThreshold;
+        }
+        return entry.query().equals(lookup.query());
+    }
+
+    private AtomicLong version(String userId) {
+        return userVersions.computeIfAbsent(userId, u -> new AtomicLong());
+    }
+
+    private void count(String result) {
+        Counter.builder("answer.cache")
+                .description("Answer cache lookups")
+                .tag("result", result)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    private static String hash(List<SearchProcessedEvent.SearchContextItem> context) {
+        if (context == null || context.isEmpty()) {
+            return "";
+        }
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (SearchProcessedEvent.SearchContextItem item : context) {
+                digest.update(String.valueOf(item.getRole()).getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+                digest.update(String.valueOf(item.getMessage()).getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 1);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String normalize(String query) {
+        return query == null ? "" : query.strip().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    private static float[] unit(float[] vector) {
+        if (vector == null || vector.length == 0) {
+            return null;
+        }
+        double norm = Math.sqrt(dot(vector, vector));
+        if (norm == 0) {
+            return null;
+        }
+        float[] unit = new float[vector.length];
+        for (int i = 0; i < vector.length; i++) {
+            unit[i] = (float) (vector[i] / norm);
+        }
+        return unit;
+    }
+
+    private static double dot(float[] a, float[] b) {
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    record Key(String userId, Set<Long> chunkIds, String contextHash) {
+    }
+
+    public record Lookup(Key key, String query, float[] queryVector, Set<UUID> documentIds, long version) {
+    }
+
+    private record Entry(String query, float[] queryVector, List<String> tokens, Set<UUID> documentIds, long createdAtNanos) {
+    }
+}
@@ -1,26 +1,32 @@
 package com.github.vadimmiheev.vectordocs.answergenerator.service;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.vadimmiheev.vectordocs.answergenerator.dto.SearchProcessedEvent;
 import dev.langchain4j.data.message.AiMessage;
 import dev.langchain4j.data.message.ChatMessage;
-import dev.langchain4j.data.message.SystemMessage;
-import dev.langchain4j.data.message.UserMessage;
 import dev.langchain4j.model.StreamingResponseHandler;
 import dev.langchain4j.model.openai.OpenAiStreamingChatModel;
 import dev.langchain4j.model.output.Response;
+import dev.langchain4j.model.output.TokenUsage;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.annotation.KafkaListener;
-import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.kafka.support.Acknowledgment;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 import reactor.core.publisher.Flux;
-import reactor.core.publisher.Sinks;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 @Slf4j
 @Service
@@ -30,42 +36,29 @@ public class AnswerGenerationListener {
     private final ObjectMapper objectMapper;
     private final OpenAiStreamingChatModel streamingChatModel;
     private final NotificationClient notificationClient;
+    private final LlmStreamLimiter streamLimiter;
+    private final PromptBuilder promptBuilder;
+    private final AnswerCache answerCache;
+    private final MeterRegistry meterRegistry;
+    private final PartitionedDispatcher dispatcher;
+    private final ObservationRegistry observationRegistry;
+
+    private static final String BUSY_MESSAGE = "The assistant is busy right now, please ask again in a moment.\n";
+
+    // chunks waiting for notification-service before the overflow policy applies
+    @Value("${app.answer.stream.buffer-size:256}")
+    private int streamBufferSize = 256;
+
+    @Value("${app.answer.stream.overflow:COALESCE}")
+    private AnswerStream.Overflow streamOverflow = AnswerStream.Overflow.COALESCE;
+
+    @KafkaListener(topics = "${app.topics.search-processed:search.processed}", groupId = "${spring.kafka.consumer.group-id:answer-generator}",
+            containerFactory = "asyncAckListenerContainerFactory")
+    public void onRecord(ConsumerRecord<String, String> record, Acknowledgment ack) {
+        dispatcher.dispatch(record, ack, () -> onSearchProcessed(record.value(), record.key()));
+    }
 
-    private static final String SYSTEM_PROMPT = String.join("\n",
-            "You are part of a retrieval-augmented generation (RAG) system.",
-            "The user is having an ongoing conversation with an assistant.\n",
-
-            "Your role:",
-            "- Answer the user's question using only the provided document fragments (embeddings).",
-            "- You will receive:",
-            "1. The conversation history.",
-            "2. Document fragments array in JSON format, each with a file identifier (`fileUuid`), file name (`fileName`) and page number (`pageNumber`).\n",
-
-            "Instructions:",
-            "1. Use **only** the provided fragments to generate your answer. Do not rely on external knowledge.",
-            "2. If the provided fragments do not contain enough information — explicitly state that the documents do not contain the answer.",
-            "3. Each factual statement in your answer must reference one or more sources (document + page).",
-            "4. If multiple fragments contain relevant information — **prefer to include all of them** as sources.",
-            "5. Be concise, clear, and factual.",
-            "6. Include **all relevant sources** that were used in forming the answer.\n",
-
-
-            "Answer format:",
-            "1. First, write the concise answer text.",
-            "2. Then output the list of sources in format: <fileUuid>/<fileName>/<pageNumber>\\n",
-            "3. Wrap the list in `<BEGIN_SOURCES>` and `<END_SOURCES>` tags exactly as shown.\n",
-
-            "Example output:",
-            "The warranty period specified in the documents is 2 years.",
-            "<BEGIN_SOURCES>",
-            "abc123/doc1.pdf/5",
-            "xyz789/doc 2.txt/7",
-            "<END_SOURCES>"
-    );
-
-    @KafkaListener(topics = "${app.topics.search-processed:search.processed}", groupId = "${spring.kafka.consumer.group-id:answer-generator}")
-    public void onSearchProcessed(String message,
-                                  @Header(name = "kafka_receivedMessageKey", required = false) String key) {
+    public void onSearchProcessed(String message, String key) {
         try {
             SearchProcessedEvent event = objectMapper.readValue(message, SearchProcessedEvent.class);
             String userId = event.getUserId();
@@ -86,67 +79,173 @@ public class AnswerGenerationListener {
                 return;
             }
 
-            // Create a sink and stream tokens to notification-service
-            Sinks.Many<String> sink = Sinks.many().unicast().onBackpressureBuffer();
-            notificationClient.streamAnswer(userId, requestId, sink.asFlux());
+            // Same question on the same chunks in the same conversation: replay the earlier answer at full speed, no LLM call
+            String searchQuery = StringUtils.hasText(event.getRagQuery()) ? event.getRagQuery() : query;
+            AnswerCache.Lookup cacheLookup = answerCache.lookup(userId, searchQuery, context, event.getQueryVector(), embeddings);
+            List<String> cached = answerCache.get(cacheLookup);
+            if (cached != null) {
+                notificationClient.streamAnswer(userId, requestId, Flux.fromIterable(cached));
+                log.info("Replayed cached answer for userId={}", userId);
+                return;
+            }
+
+            // Bounded bridge from the LLM callback to the RSocket stream to notification-service
+            AnswerStream stream = new AnswerStream(requestId, streamBufferSize, streamOverflow, meterRegistry);
+            notificationClient.streamAnswer(userId, requestId, stream.asFlux());
+
+            PromptBuilder.Prompt prompt = promptBuilder.build(query, context, embeddings);
+            recordPrompt(userId, prompt);
+            long receivedAt = System.nanoTime();
+            LlmSpans spans = LlmSpans.start(observationRegistry, requestId);
+            streamLimiter.submit(userId,
+                    release -> generate(userId, prompt.messages(), stream, receivedAt, spans, release, cacheLookup),
+                    () -> {
+                        spans.firstToken("busy");
+                        stream.offer(BUSY_MESSAGE);
+                        stream.complete();
+                    });
+
+        } catch (Exception e) {
+            log.error("Failed to process search.processed message: {}", message, e);
+        }
+    }
+
+    private void generate(String userId, List<ChatMessage> messages, AnswerStream stream, long receivedAt, LlmSpans spans,
+                          Runnable release, AnswerCache.Lookup cacheLookup) {
+        if (stream.isCancelled()) {
+            // nobody is listening anymore (user left while the answer was queued), do not start the LLM at all
+            spans.firstToken("cancelled");
+            release.run();
+            stream.complete();
+            log.info("Skipped LLM call for userId={}, answer stream already cancelled", userId);
+            return;
+        }
 
+        List<String> tokens = new ArrayList<>();
+        spans.stream().start();
+        try {
             streamingChatModel.generate(
-                buildMessages(query, context, embeddings),
+                messages,
                 new StreamingResponseHandler<>() {
                     @Override
                     public void onNext(String token) {
-                        sink.tryEmitNext(token);
+                        if (spans.firstToken("token")) {
+                            timeToFirstToken().record(System.nanoTime() - receivedAt, TimeUnit.NANOSECONDS);
+                        }
+                        // a cancelled stream refuses the rest; langchain4j 0.34 cannot abort the HTTP stream itself
+                        if (stream.offer(token)) {
+                            tokens.add(token);
+                        }
                     }
 
                     @Override
                     public void onComplete(Response<AiMessage> response) {
-                        sink.tryEmitComplete();
-                        log.info("Completed streaming answer for userId={}", userId);
+                        release.run();
+                        spans.end(null);
+                        recordUsage(response);
+                        if (stream.isCancelled()) {
+                            log.info("LLM finished a cancelled answer for userId={}", userId);
+                        } else {
+                            answerCache.put(cacheLookup, tokens);
+                            log.info("Completed streaming answer for userId={}", userId);
+                        }
+                        stream.complete();
                     }
 
                     @Override
                     public void onError(Throwable error) {
+                        release.run();
+                        spans.end(error);
                         log.error("Error during LLM streaming for userId={}", userId, error);
-                        sink.tryEmitError(error);
+                        stream.error(error);
                     }
                 }
             );
-
-        } catch (Exception e) {
-            log.error("Failed to process search.processed message: {}", message, e);
+        } catch (RuntimeException e) {
+            release.run();
+            spans.end(e);
+            log.error("Failed to start LLM streaming for userId={}", userId, e);
+            stream.error(e);
         }
     }
 
-    private List<ChatMessage> buildMessages(String query, List<SearchProcessedEvent.SearchContextItem> context, List<SearchProcessedEvent.Hit> embeddings) {
-        List<ChatMessage> messages = new ArrayList<>();
+    /**
+     * Trace spans of one answer: time to first token (queueing included) and the LLM stream. The limiter may start
+     * the stream on another thread, so both are parented explicitly on the observation current at receipt.
+     */
+    private record LlmSpans(Observation firstTokenSpan, Observation stream, AtomicBoolean waiting) {
+
+        static LlmSpans start(ObservationRegistry registry, String requestId) {
+            Observation parent = registry.getCurrentObservation();
+            Observation firstToken = Observation.createNotStarted("answer.llm.first-token", registry)
+                    .highCardinalityKeyValue("request.id", String.valueOf(requestId))
+                    .parentObservation(parent)
+                    .start();
+            Observation stream = Observation.createNotStarted("answer.llm.stream", registry)
+                    .highCardinalityKeyValue("request.id", String.valueOf(requestId))
+                    .parentObservation(parent);
+            return new LlmSpans(firstToken, stream, new AtomicBoolean(true));
+        }
 
-        messages.add(SystemMessage.from(SYSTEM_PROMPT));
+        /**
+         * @return true for the first call only, which ends the first token span with the given outcome
+         */
+        boolean firstToken(String outcome) {
+            if (!waiting.compareAndSet(true, false)) {
+                return false;
+            }
+            firstTokenSpan.lowCardinalityKeyValue("outcome", outcome).stop();
+            return true;
+        }
 
-        // provide chat history
-        if (context != null && !context.isEmpty()) {
-            for (SearchProcessedEvent.SearchContextItem item : context) {
-                if (item.getRole().equals("agent")) {
-                    messages.add(AiMessage.from(item.getMessage()));
-                } else if (item.getRole().equals("user")) {
-                    messages.add(UserMessage.from(item.getMessage()));
-                }
+        void end(Throwable error) {
+            firstToken(error == null ? "empty" : "error");
+            if (error != null) {
+                stream.error(error);
             }
+            stream.stop();
         }
+    }
 
-        // last user message
-        messages.add(UserMessage.from(query));
+    private void recordPrompt(String userId, PromptBuilder.Prompt prompt) {
+        DistributionSummary.builder("answer.prompt.tokens")
+                .description("Estimated prompt tokens per answer")
+                .baseUnit("tokens")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry)
+                .record(prompt.tokens());
+        log.info("Prompt for userId={}: ~{} tokens (history {}, fragments {}), fragments used={} dropped={}, turns dropped={}",
+                userId, prompt.tokens(), prompt.historyTokens(), prompt.fragmentTokens(),
+                prompt.fragmentsUsed(), prompt.fragmentsDropped(), prompt.turnsDropped());
+    }
 
-        // fragments
-        try {
-            StringBuilder sb = new StringBuilder();
-            sb.append("Fragments:\n");
-            String fragments = objectMapper.writeValueAsString(embeddings);
-            sb.append(fragments);
-            messages.add(SystemMessage.from(sb.toString()));
-        } catch (JsonProcessingException e) {
-            log.error("Failed to serialize fragments", e);
+    // actual usage as reported by the model, when the endpoint sends it
+    private void recordUsage(Response<AiMessage> response) {
+        TokenUsage usage = response == null ? null : response.tokenUsage();
+        if (usage == null) {
+            return;
+        }
+        if (usage.inputTokenCount() != null) {
+            tokenSummary("input").record(usage.inputTokenCount());
+        }
+        if (usage.outputTokenCount() != null) {
+            tokenSummary("output").record(usage.outputTokenCount());
         }
+    }
+
+    private DistributionSummary tokenSummary(String type) {
+        return DistributionSummary.builder("answer.llm.tokens")
+                .description("Tokens reported by the chat model per answer")
+                .baseUnit("tokens")
+                .tag("type", type)
+                .register(meterRegistry);
+    }
 
-        return messages;
+    // from the search.processed message to the first LLM token, queueing included
+    private Timer timeToFirstToken() {
+        return Timer.builder("answer.llm.ttft")
+                .description("Time to first answer token")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
     }
 }
@@ -0,0 +1,198 @@
+package com.github.vadimmiheev.vectordocs.answergenerator.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded bridge between the LLM streaming callback and the RSocket stream. Tokens are handed downstream only as
+ * fast as notification-service requests them; at most {@code capacity} chunks wait in between, beyond that the
+ * {@link Overflow} policy decides. Once the stream is cancelled, by the policy or by the consumer (the user has no
+ * session left, the connection dropped), every further token is refused so the caller can stop working on it.
+ */
+@Slf4j
+public class AnswerStream {
+
+    public enum Overflow {
+        /** Append the token to the last waiting chunk: nothing is lost, the client gets fewer, larger frames. */
+        COALESCE,
+        /** Drop the token; the client sees a gap but the stream keeps its pace. */
+        DROP,
+        /** Stop the answer: what is already waiting is delivered, the rest of the LLM output is ignored. */
+        CANCEL
+    }
+
+    private final String requestId;
+    private final int capacity;
+    private final Overflow overflow;
+    private final MeterRegistry meterRegistry;
+
+    // guarded by this
+    private final Deque<String> queue = new ArrayDeque<>();
+    private FluxSink<String> sink;
+    private boolean done;
+    private Throwable error;
+    private boolean terminated;
+
+    private volatile boolean cancelled;
+    private final AtomicInteger wip = new AtomicInteger();
+
+    private final Flux<String> flux;
+
+    public AnswerStream(String requestId, int capacity, Overflow overflow, MeterRegistry meterRegistry) {
+        this.requestId = requestId;
+        this.capacity = Math.max(1, capacity);
+        this.overflow = overflow;
+        this.meterRegistry = meterRegistry;
+        this.flux = Flux.create(this::attach);
+    }
+
+    public Flux<String> asFlux() {
+        return flux;
+    }
+
+    /**
+     * @return false once the stream is cancelled: the token was refused and so will be every following one
+     */
+    public boolean offer(String token) {
+        boolean accepted = enqueue(token);
+        drain();
+        return accepted;
+    }
+
+    public void complete() {
+        synchronized (this) {
+            done = true;
+        }
+        drain();
+    }
+
+    public void error(Throwable error) {
+        synchronized (this) {
+            this.error = error;
+            done = true;
+        }
+        drain();
+    }
+
+    public String requestId() {
+        return requestId;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public synchronized int queued() {
+        return queue.size();
+    }
+
+    private synchronized boolean enqueue(String token) {
+        if (cancelled) {
+            return false;
+        }
+        if (done) {
+            return true;
+        }
+        if (queue.size() < capacity) {
+            queue.addLast(token);
+            return true;
+        }
+        overflowed();
+        switch (overflow) {
+            case COALESCE -> queue.addLast(queue.pollLast() + token);
+            case DROP -> { /* counted above */ }
+            case CANCEL -> {
+                log.warn("Answer stream for requestId={} is not consumed fast enough, stopping the answer", requestId);
+                cancel("overflow");
+                done = true;
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void attach(FluxSink<String> sink) {
+        synchronized (this) {
+            if (this.sink != null) {
+                // Flux.create turns this into an error for the second subscriber
+                throw new IllegalStateException("Answer stream allows only one subscriber");
+            }
+            this.sink = sink;
+        }
+        sink.onRequest(_ -> drain());
+        sink.onCancel(this::consumerCancelled);
+    }
+
+    // emits outside the monitor: downstream may request (and so drain) from another thread that holds its own lock
+    private void drain() {
+        if (wip.getAndIncrement() != 0) {
+            return;
+        }
+        do {
+            while (true) {
+                String next;
+                boolean complete = false;
+                synchronized (this) {
+                    if (sink == null || terminated) {
+                        break;
+                    }
+                    if (!queue.isEmpty() && sink.requestedFromDownstream() > 0) {
+                        next = queue.pollFirst();
+                    } else if (queue.isEmpty() && done) {
+                        terminated = true;
+                        next = null;
+                        complete = true;
+                    } else {
+                        break;
+                    }
+                }
+                if (complete) {
+                    if (error != null && !cancelled) {
+                        sink.error(error);
+                    } else {
+                        sink.complete();
+                    }
+                    break;
+                }
+                sink.next(next);
+            }
+        } while (wip.decrementAndGet() != 0);
+    }
+
+    private synchronized void consumerCancelled() {
+        if (terminated) {
+            return;
+        }
+        terminated = true;
+        queue.clear();
+        cancel("consumer");
+        log.info("Answer stream for requestId={} cancelled by the consumer", requestId);
+    }
+
+    private void cancel(String reason) {
+        if (cancelled) {
+            return;
+        }
+        cancelled = true;
+        Counter.builder("answer.stream.cancelled")
+                .description("Answer streams stopped before the LLM finished")
+                .tag("reason", reason)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    private void overflowed() {
+        Counter.builder("answer.stream.overflow")
+                .description("Tokens that found the answer stream buffer full")
+                .tag("policy", overflow.name().toLowerCase())
+                .register(meterRegistry)
+                .increment();
+    }
+}
@@ -0,0 +1,47 @@
+package com.github.vadimmiheev.vectordocs.answergenerator.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.util.UUID;
+
+/**
+ * Drops cached answers built from a document that was deleted (documentId) or (re)processed (id).
+ * Every instance keeps its own cache, so the listener uses its own throwaway consumer group.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DocumentEventsListener {
+
+    private final ObjectMapper objectMapper;
+    private final AnswerCache answerCache;
+
+    @KafkaListener(topics = {
+            "${app.topics.documents-processed:documents.processed}",
+            "${app.topics.documents-deleted:documents.deleted}"
+    }, groupId = "${spring.kafka.consumer.group-id:answer-generator}-documents-${random.uuid}",
+            properties = "auto.offset.reset=latest")
+    public void onDocumentChanged(String message,
+                                  @Header(name = KafkaHeaders.RECEIVED_TOPIC, required = false) String topic) {
+        try {
+            JsonNode event = objectMapper.readTree(message);
+            String documentId = event.hasNonNull("documentId") ? event.get("documentId").asText() : event.path("id").asText(null);
+            if (!StringUtils.hasText(documentId)) {
+                log.warn("Skip document change: missing document id. topic={}", topic);
+                return;
+            }
+
+            answerCache.invalidateDocument(event.path("userId").asText(null), UUID.fromString(documentId));
+        } catch (Exception e) {
+            log.error("Failed to process document change message: {}", message, e);
+        }
+    }
+}
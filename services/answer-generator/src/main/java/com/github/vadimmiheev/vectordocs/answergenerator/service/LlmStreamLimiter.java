@@ -0,0 +1,194 @@
+package com.github.vadimmiheev.vectordocs.answergenerator.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Caps the number of concurrent LLM streams. Streams over the limit wait in per-user queues that are served
+ * round-robin, so one user asking many questions at once cannot starve the others. A stream still waiting after
+ * the max queue wait is dropped and its busy callback runs instead.
+ */
+@Slf4j
+@Component
+public class LlmStreamLimiter {
+
+    private final int maxConcurrent;
+    private final Duration maxQueueWait;
+
+    // guarded by this
+    private final Map<String, Deque<Pending>> queues = new HashMap<>();
+    private final Deque<String> turns = new ArrayDeque<>();
+    private int active;
+    private int queued;
+
+    private final ScheduledExecutorService timeouts = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "llm-queue-timeout");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final MeterRegistry meterRegistry;
+    private final Timer queueWait;
+    private final Counter busy;
+
+    public LlmStreamLimiter(MeterRegistry meterRegistry,
+                            @Value("${app.answer.llm.max-concurrent:4}") int maxConcurrent,
+                            @Value("${app.answer.llm.max-queue-wait:PT30S}") Duration maxQueueWait) {
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+        this.maxQueueWait = maxQueueWait;
+        this.meterRegistry = meterRegistry;
+        this.queueWait = Timer.builder("answer.llm.queue.wait")
+                .description("Time an answer waited for an LLM stream slot")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.busy = Counter.builder("answer.llm.busy")
+                .description("Answers dropped after waiting longer than the max queue wait")
+                .register(meterRegistry);
+    }
+
+    // the gauges read this limiter, so they are registered once it is fully constructed
+    @PostConstruct
+    void registerGauges() {
+        Gauge.builder("answer.llm.queue.depth", this, LlmStreamLimiter::queueDepth)
+                .description("Answers waiting for an LLM stream slot")
+                .register(meterRegistry);
+        Gauge.builder("answer.llm.active", this, LlmStreamLimiter::activeStreams)
+                .description("LLM streams in progress")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @param stream starts the LLM stream; it receives a release callback that must run once the stream completes or fails
+     * @param onBusy runs instead of {@code stream} when no slot freed up within the max queue wait
+     */
+    public void submit(String userId, Consumer<Runnable> stream, Runnable onBusy) {
+        Pending pending = new Pending(userId, stream, onBusy, System.nanoTime());
+        synchronized (this) {
+            if (active >= maxConcurrent) {
+                queues.computeIfAbsent(userId, u -> {
+                    turns.addLast(u);
+                    return new ArrayDeque<>();
+                }).addLast(pending);
+                queued++;
+                pending.timeout = timeouts.schedule(() -> expire(pending), maxQueueWait.toMillis(), TimeUnit.MILLISECONDS);
+                return;
+            }
+            active++;
+        }
+        start(pending);
+    }
+
+    public synchronized int queueDepth() {
+        return queued;
+    }
+
+    public synchronized int activeStreams() {
+        return active;
+    }
+
+    private void start(Pending pending) {
+        queueWait.record(System.nanoTime() - pending.enqueuedAt, TimeUnit.NANOSECONDS);
+        AtomicBoolean released = new AtomicBoolean();
+        Runnable release = () -> {
+            if (released.compareAndSet(false, true)) {
+                onRelease();
+            }
+        };
+        try {
+            pending.stream.accept(release);
+        } catch (RuntimeException e) {
+            log.error("Failed to start LLM stream for userId={}", pending.userId, e);
+            release.run();
+        }
+    }
+
+    // the freed slot goes straight to the next user in turn, started on the releasing thread
+    private void onRelease() {
+        Pending next;
+        synchronized (this) {
+            next = pollNext();
+            if (next == null) {
+                active--;
+                return;
+            }
+        }
+        next.timeout.cancel(false);
+        start(next);
+    }
+
+    private Pending pollNext() {
+        String userId = turns.pollFirst();
+        if (userId == null) {
+            return null;
+        }
+        Deque<Pending> queue = queues.get(userId);
+        Pending next = queue.pollFirst();
+        if (queue.isEmpty()) {
+            queues.remove(userId);
+        } else {
+            turns.addLast(userId);
+        }
+        queued--;
+        return next;
+    }
+
+    private void expire(Pending pending) {
+        synchronized (this) {
+            Deque<Pending> queue = queues.get(pending.userId);
+            if (queue == null || !queue.remove(pending)) {
+                return; // already started
+            }
+            queued--;
+            if (queue.isEmpty()) {
+                queues.remove(pending.userId);
+                turns.remove(pending.userId);
+            }
+        }
+        busy.increment();
+        log.warn("No LLM stream slot within {} for userId={}, answering busy", maxQueueWait, pending.userId);
+        try {
+            pending.onBusy.run();
+        } catch (RuntimeException e) {
+            log.error("Busy callback failed for userId={}", pending.userId, e);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        timeouts.shutdownNow();
+    }
+
+    private static final class Pending {
+        private final String userId;
+        private final Consumer<Runnable> stream;
+        private final Runnable onBusy;
+        private final long enqueuedAt;
+        private ScheduledFuture<?> timeout;
+
+        private Pending(String userId, Consumer<Runnable> stream, Runnable onBusy, long enqueuedAt) {
+            this.userId = userId;
+            this.stream = stream;
+            this.onBusy = onBusy;
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+}
@@ -2,14 +2,19 @@ package com.github.vadimmiheev.vectordocs.answergenerator.service;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import io.micrometer.observation.transport.SenderContext;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.messaging.rsocket.RSocketRequester;
 import org.springframework.stereotype.Component;
 import org.springframework.util.MimeType;
 import reactor.core.publisher.Flux;
 
+import java.util.HashMap;
 import java.util.Map;
 
 @Slf4j
@@ -17,36 +22,61 @@ import java.util.Map;
 @RequiredArgsConstructor
 public class NotificationClient {
 
-    private final RSocketRequester.Builder rSocketRequesterBuilder;
+    // shared, reconnecting requester (see NotificationRSocketConfig), not a connection per answer
+    private final RSocketRequester notificationRequester;
     private final ObjectMapper objectMapper;
-
-
-    @Value("${app.notification.rsocket.host:notification-service}")
-    private String rsocketHost;
-
-    @Value("${app.notification.rsocket.port:7000}")
-    private int rsocketPort;
+    private final MeterRegistry meterRegistry;
+    private final TokenCoalescer tokenCoalescer;
+    private final ObservationRegistry observationRegistry;
 
     public void streamAnswer(String userId, String requestId, Flux<String> tokens) {
         log.info("Streaming answer to notification-service via RSocket route 'search.result', userId={}", userId);
 
-        RSocketRequester requester = rSocketRequesterBuilder
-            .tcp(rsocketHost, rsocketPort);
+        // starting the sender observation writes the W3C traceparent into the metadata next to userId/requestId
+        Map<String, String> metadata = new HashMap<>(Map.of("userId", userId, "requestId", requestId));
+        SenderContext<Map<String, String>> context = new SenderContext<>((carrier, key, value) -> carrier.put(key, value));
+        context.setCarrier(metadata);
+        context.setRemoteServiceName("notification-service");
+        Observation observation = Observation.createNotStarted("notification.rsocket.stream", () -> context, observationRegistry)
+                .highCardinalityKeyValue("request.id", requestId)
+                .start();
 
-        String metadataJson;
+        // doFinally below ends the observation only once the stream is subscribed, a failure while building it ends it here
+        Flux<Void> exchange;
         try {
-            metadataJson = objectMapper.writeValueAsString(Map.of("userId", userId, "requestId", requestId));
+            String metadataJson = objectMapper.writeValueAsString(metadata);
+            exchange = notificationRequester
+                .route("search.result")
+                // attach JSON metadata as a separate composite metadata entry
+                .metadata(metadataJson, MimeType.valueOf("application/json"))
+                .data(tokenCoalescer.coalesce(tokens))
+                .retrieveFlux(Void.class);
         } catch (JsonProcessingException e) {
+            observation.error(e);
+            observation.stop();
             throw new RuntimeException("Failed to serialize metadata for RSocket", e);
+        } catch (RuntimeException e) {
+            observation.error(e);
+            observation.stop();
+            throw e;
         }
 
-        requester
-            .route("search.result")
-            // attach JSON metadata as a separate composite metadata entry
-            .metadata(metadataJson, MimeType.valueOf("application/json"))
-            .data(tokens)
-            .retrieveFlux(Void.class)
-            .doOnError(err -> log.error("Error streaming to notification-service via RSocket", err))
-            .subscribe();
+        exchange
+            .doOnComplete(() -> countStream("completed"))
+            .doOnError(err -> {
+                countStream("error");
+                observation.error(err);
+                log.error("Error streaming to notification-service via RSocket", err);
+            })
+            .doFinally(signal -> observation.stop())
+            .subscribe(null, err -> { /* logged above */ });
+    }
+
+    private void countStream(String result) {
+        Counter.builder("notification.rsocket.streams")
+                .description("Answer streams sent to notification-service")
+                .tag("result", result)
+                .register(meterRegistry)
+                .increment();
     }
 }
@@ -0,0 +1,73 @@
+package com.github.vadimmiheev.vectordocs.answergenerator.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.rsocket.DuplexConnection;
+import io.rsocket.plugins.DuplexConnectionInterceptor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tracks the RSocket connections to notification-service: open connection gauge, connect/reconnect counters
+ * and the "notificationRSocket" health indicator. Connections are opened lazily, so before the first answer
+ * the health is UNKNOWN rather than DOWN.
+ */
+@Slf4j
+@Component("notificationRSocket")
+public class NotificationConnectionMonitor implements DuplexConnectionInterceptor, HealthIndicator {
+
+    private final AtomicInteger openConnections = new AtomicInteger();
+    private final Counter connects;
+    private final Counter reconnectAttempts;
+    private volatile String lastFailure;
+
+    public NotificationConnectionMonitor(MeterRegistry meterRegistry) {
+        Gauge.builder("notification.rsocket.connections", openConnections, AtomicInteger::get)
+                .description("Open RSocket connections to notification-service")
+                .register(meterRegistry);
+        this.connects = Counter.builder("notification.rsocket.connects")
+                .description("RSocket connections established to notification-service")
+                .register(meterRegistry);
+        this.reconnectAttempts = Counter.builder("notification.rsocket.reconnect.attempts")
+                .description("Failed connection attempts retried with backoff")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public DuplexConnection apply(Type type, DuplexConnection connection) {
+        if (type == Type.SOURCE) {
+            openConnections.incrementAndGet();
+            connects.increment();
+            lastFailure = null;
+            connection.onClose()
+                    .doFinally(signal -> openConnections.decrementAndGet())
+                    .onErrorComplete()
+                    .subscribe();
+        }
+        return connection;
+    }
+
+    public void onReconnectAttempt(Throwable failure) {
+        reconnectAttempts.increment();
+        lastFailure = failure.toString();
+        log.warn("Connection to notification-service failed, reconnecting: {}", lastFailure);
+    }
+
+    @Override
+    public Health health() {
+        int open = openConnections.get();
+        if (open > 0) {
+            return Health.up().withDetail("connections", open).build();
+        }
+        String failure = lastFailure;
+        if (failure != null) {
+            return Health.down().withDetail("connections", 0).withDetail("error", failure).build();
+        }
+        return Health.unknown().withDetail("connections", 0).build();
+    }
+}
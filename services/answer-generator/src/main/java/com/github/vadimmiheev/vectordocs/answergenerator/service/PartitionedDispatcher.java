@@ -0,0 +1,70 @@
+package com.github.vadimmiheev.vectordocs.answergenerator.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Takes records off the Kafka consumer thread: each one is processed on a virtual thread and acknowledged when done,
+ * so a slow LLM call no longer holds up the records polled with it. The consumer thread never waits here; the records
+ * in flight are bounded by the async-ack container factory ({@code KafkaConsumerConfig}), which does not poll again
+ * until the previous batch is acknowledged and commits offsets in order.
+ */
+@Slf4j
+@Component
+public class PartitionedDispatcher {
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final ObservationRegistry observationRegistry;
+
+    public PartitionedDispatcher(MeterRegistry meterRegistry, ObservationRegistry observationRegistry) {
+        this.observationRegistry = observationRegistry;
+        Gauge.builder("answer.kafka.in-flight", inFlight, AtomicInteger::get)
+                .description("Kafka records being processed off the consumer threads")
+                .register(meterRegistry);
+    }
+
+    public void dispatch(ConsumerRecord<?, ?> record, Acknowledgment ack, Runnable task) {
+        inFlight.incrementAndGet();
+        try {
+            // the listener's observation (Kafka consumer span) stays the parent of what the task observes
+            Observation listenerObservation = observationRegistry.getCurrentObservation();
+            executor.execute(() -> {
+                try (Observation.Scope _ = listenerObservation == null ? null : listenerObservation.openScope()) {
+                    task.run();
+                } catch (RuntimeException e) {
+                    log.error("Failed to process record {}-{}@{}", record.topic(), record.partition(), record.offset(), e);
+                } finally {
+                    inFlight.decrementAndGet();
+                    ack.acknowledge();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.decrementAndGet();
+            throw e;
+        }
+    }
+
+    // listener containers are stopped before this runs; records still unacknowledged here are redelivered
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+            log.warn("{} records still in flight at shutdown", inFlight.get());
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.github.vadimmiheev.vectordocs.answergenerator.service;
+
+import com.github.vadimmiheev.vectordocs.answergenerator.dto.SearchProcessedEvent;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.Tokenizer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Assembles the answer prompt within a token budget. The conversation history is filled newest turn first up to
+ * its own cap (older turns are dropped, the sources block of earlier answers is stripped), the fragments then fill
+ * the rest in relevance order, each cut to a per-fragment cap, in a compact {@code [n] fileUuid/fileName/page} format.
+ */
+@Component
+public class PromptBuilder {
+
+    static final String SYSTEM_PROMPT = String.join("\n",
+            "You are part of a retrieval-augmented generation (RAG) system.",
+            "The user is having an ongoing conversation with an assistant.\n",
+
+            "Your role:",
+            "- Answer the user's question using only the provided document fragments.",
+            "- You will receive:",
+            "1. The conversation history.",
+            "2. Document fragments, each starting with a header line `[n] <fileUuid>/<fileName>/<pageNumber>` followed by the fragment text.\n",
+
+            "Instructions:",
+            "1. Use **only** the provided fragments to generate your answer. Do not rely on external knowledge.",
+            "2. If the provided fragments do not contain enough information — explicitly state that the documents do not contain the answer.",
+            "3. Each factual statement in your answer must reference one or more sources (document + page).",
+            "4. If multiple fragments contain relevant information — **prefer to include all of them** as sources.",
+            "5. Be concise, clear, and factual.",
+            "6. Include **all relevant sources** that were used in forming the answer.\n",
+
+
+            "Answer format:",
+            "1. First, write the concise answer text.",
+            "2. Then output the list of sources in format: <fileUuid>/<fileName>/<pageNumber>\\n (the fragment header without `[n]`)",
+            "3. Wrap the list in `<BEGIN_SOURCES>` and `<END_SOURCES>` tags exactly as shown.\n",
+
+            "Example output:",
+            "The warranty period specified in the documents is 2 years.",
+            "<BEGIN_SOURCES>",
+            "abc123/doc1.pdf/5",
+            "xyz789/doc 2.txt/7",
+            "<END_SOURCES>"
+    );
+
+    private static final Pattern SOURCES_BLOCK = Pattern.compile("<BEGIN_SOURCES>.*?(<END_SOURCES>|$)", Pattern.DOTALL);
+
+    // a turn or fragment is only shortened when at least this much of it fits, below that it is dropped
+    private static final int MIN_PARTIAL_TOKENS = 48;
+
+    private final Tokenizer tokenizer;
+    private final int maxTokens;
+    private final int historyMaxTokens;
+    private final int fragmentMaxTokens;
+
+    public PromptBuilder(Tokenizer tokenizer,
+                         @Value("${app.answer.prompt.max-tokens:6000}") int maxTokens,
+                         @Value("${app.answer.prompt.history-max-tokens:1500}") int historyMaxTokens,
+                         @Value("${app.answer.prompt.fragment-max-tokens:400}") int fragmentMaxTokens) {
+        this.tokenizer = tokenizer;
+        this.maxTokens = maxTokens;
+        this.historyMaxTokens = historyMaxTokens;
+        this.fragmentMaxTokens = fragmentMaxTokens;
+    }
+
+    public Prompt build(String query, List<SearchProcessedEvent.SearchContextItem> context, List<SearchProcessedEvent.Hit> hits) {
+        int available = maxTokens - count(SYSTEM_PROMPT) - count(query);
+
+        // history, newest turn first
+        LinkedList<ChatMessage> history = new LinkedList<>();
+        int historyBudget = Math.min(historyMaxTokens, Math.max(0, available / 2));
+        int historyTokens = 0;
+        int turnsDropped = 0;
+        if (context != null) {
+            for (int i = context.size() - 1; i >= 0; i--) {
+                SearchProcessedEvent.SearchContextItem item = context.get(i);
+                String text = "agent".equals(item.getRole())
+                        ? SOURCES_BLOCK.matcher(nullToEmpty(item.getMessage())).replaceAll("").strip()
+                        : nullToEmpty(item.getMessage());
+                if (!StringUtils.hasText(text) || !("agent".equals(item.getRole()) || "user".equals(item.getRole()))) {
+                    continue;
+                }
+                int left = historyBudget - historyTokens;
+                int tokens = count(text);
+                if (tokens > left) {
+                    if (left < MIN_PARTIAL_TOKENS) {
+                        turnsDropped = i + 1;
+                        break;
+                    }
+                    text = truncate(text, tokens, left);
+                    tokens = count(text);
+                    turnsDropped = i;
+                    i = 0; // the budget is spent, older turns are dropped
+                }
+                history.addFirst("agent".equals(item.getRole()) ? AiMessage.from(text) : UserMessage.from(text));
+                historyTokens += tokens;
+            }
+        }
+
+        // fragments arrive best first, keep them in that order until the budget runs out
+        int fragmentBudget = available - historyTokens;
+        StringBuilder fragments = new StringBuilder("Fragments:\n");
+        int fragmentTokens = 0;
+        int fragmentsUsed = 0;
+        Set<String> seen = new HashSet<>();
+        List<SearchProcessedEvent.Hit> candidates = hits == null ? List.of() : hits;
+        for (SearchProcessedEvent.Hit hit : candidates) {
+            if (!StringUtils.hasText(hit.getChunkText()) || !seen.add(hit.getChunkText())) {
+                continue;
+            }
+            String header = "[" + (fragmentsUsed + 1) + "] " + hit.getFileUuid() + "/" + hit.getFileName() + "/" + hit.getPageNumber() + "\n";
+            int left = Math.min(fragmentMaxTokens, fragmentBudget - fragmentTokens - count(header));
+            if (left < MIN_PARTIAL_TOKENS && fragmentsUsed > 0) {
+                break;
+            }
+            String text = hit.getChunkText().strip();
+            int tokens = count(text);
+            if (tokens > left) {
+                text = truncate(text, tokens, Math.max(left, MIN_PARTIAL_TOKENS));
+            }
+            String block = header + text + "\n\n";
+            fragments.append(block);
+            fragmentTokens += count(block);
+            fragmentsUsed++;
+        }
+
+        List<ChatMessage> messages = new ArrayList<>();
+        messages.add(SystemMessage.from(SYSTEM_PROMPT));
+        messages.addAll(history);
+        messages.add(UserMessage.from(query));
+        messages.add(SystemMessage.from(fragments.toString()));
+
+        return new Prompt(messages, tokenizer.estimateTokenCountInMessages(messages), historyTokens, fragmentTokens,
+                fragmentsUsed, candidates.size() - fragmentsUsed, turnsDropped);
+    }
+
+    private int count(String text) {
+        return text == null || text.isEmpty() ? 0 : tokenizer.estimateTokenCountInText(text);
+    }
+
+    // keeps the head of the text, cut at a word boundary in proportion to the token overshoot
+    private static String truncate(String text, int tokens, int maxTokens) {
+        int chars = (int) ((long) text.length() * Math.max(maxTokens - 1, 0) / Math.max(tokens, 1));
+        if (chars >= text.length()) {
+            return text;
+        }
+        int cut = text.lastIndexOf(' ', chars);
+        return text.substring(0, cut > chars / 2 ? cut : chars).strip() + " …";
+    }
+
+    private static String nullToEmpty(String text) {
+        return text == null ? "" : text;
+    }
+
+    public record Prompt(List<ChatMessage> messages,
+                         int tokens,
+                         int historyTokens,
+                         int fragmentTokens,
+                         int fragmentsUsed,
+                         int fragmentsDropped,
+                         int turnsDropped) {
+    }
+}
@@ -7,17 +7,23 @@ import dev.langchain4j.data.message.ChatMessage;
 import dev.langchain4j.data.message.SystemMessage;
 import dev.langchain4j.data.message.UserMessage;
 import dev.langchain4j.model.openai.OpenAiChatModel;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.kafka.core.KafkaTemplate;
-import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.kafka.support.Acknowledgment;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 @Slf4j
 @Service
@@ -27,6 +33,10 @@ public class QuestionSupplementationListener {
     private final ObjectMapper objectMapper;
     private final OpenAiChatModel chatModel;
     private final KafkaTemplate<String, String> kafkaTemplate;
+    private final RagQueryCache ragQueryCache;
+    private final MeterRegistry meterRegistry;
+    private final PartitionedDispatcher dispatcher;
+    private final ObservationRegistry observationRegistry;
 
     @Value("${app.topics.search-request-supplemented}")
     private String supplementedRequestTopic;
@@ -42,9 +52,13 @@ public class QuestionSupplementationListener {
             "Generate the final search query that best represents what information should be retrieved from the database."
     );
 
-    @KafkaListener(topics = "${app.topics.search-request:search.request}", groupId = "${spring.kafka.consumer.group-id:answer-generator}")
-    public void onSearchRequest(String message,
-                                @Header(name = "kafka_receivedMessageKey", required = false) String key) {
+    @KafkaListener(topics = "${app.topics.search-request:search.request}", groupId = "${spring.kafka.consumer.group-id:answer-generator}",
+            containerFactory = "asyncAckListenerContainerFactory")
+    public void onRecord(ConsumerRecord<String, String> record, Acknowledgment ack) {
+        dispatcher.dispatch(record, ack, () -> onSearchRequest(record.value(), record.key()));
+    }
+
+    public void onSearchRequest(String message, String key) {
         try {
             SearchRequestEvent request = objectMapper.readValue(message, SearchRequestEvent.class);
             String userId = request.getUserId();
@@ -55,11 +69,15 @@ public class QuestionSupplementationListener {
                 return;
             }
 
-            // Skip supplementation if there is no context
-            if (!request.getContext().isEmpty()) {
-                AiMessage searchQuery = chatModel.generate(buildMessages(query, request.getContext())).content();
-                request.setRagQuery(searchQuery.text());
-            }
+            long started = System.nanoTime();
+            Observation observation = Observation.createNotStarted("answer.supplement", observationRegistry)
+                    .highCardinalityKeyValue("request.id", String.valueOf(request.getRequestId()));
+            String outcome = observation.observe(() -> {
+                String result = supplement(request);
+                observation.lowCardinalityKeyValue("outcome", result);
+                return result;
+            });
+            supplementationTimer(outcome).record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
 
             kafkaTemplate.send(supplementedRequestTopic, key, objectMapper.writeValueAsString(request));
             log.info("Published search.request.supplemented for userId={}, query={} to topic {}", userId, query, supplementedRequestTopic);
@@ -68,6 +86,42 @@ public class QuestionSupplementationListener {
         }
     }
 
+    /**
+     * Sets the rag query of the request, the LLM rewrite is the last resort.
+     *
+     * @return how the rag query was obtained, for the supplementation timer
+     */
+    private String supplement(SearchRequestEvent request) {
+        // Skip supplementation if there is no context
+        if (request.getContext() == null || request.getContext().isEmpty()) {
+            return "no-context";
+        }
+        if (SelfContainedQuery.isSelfContained(request.getQuery())) {
+            request.setRagQuery(request.getQuery());
+            return "self-contained";
+        }
+
+        RagQueryCache.Key cacheKey = ragQueryCache.key(request.getUserId(), request.getContext(), request.getQuery());
+        String cached = ragQueryCache.get(cacheKey);
+        if (cached != null) {
+            request.setRagQuery(cached);
+            return "cached";
+        }
+
+        AiMessage searchQuery = chatModel.generate(buildMessages(request.getQuery(), request.getContext())).content();
+        request.setRagQuery(searchQuery.text());
+        ragQueryCache.put(cacheKey, searchQuery.text());
+        return "llm";
+    }
+
+    private Timer supplementationTimer(String outcome) {
+        return Timer.builder("answer.supplementation")
+                .description("Time spent producing the rag query before search")
+                .tag("outcome", outcome)
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+    }
+
     private List<ChatMessage> buildMessages(String query, List<SearchRequestEvent.SearchContextItem> context) {
         List<ChatMessage> messages = new ArrayList<>();
 
@@ -0,0 +1,106 @@
+package com.github.vadimmiheev.vectordocs.answergenerator.service;
+
+import com.github.vadimmiheev.vectordocs.answergenerator.dto.SearchRequestEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Rewritten search queries keyed by user, a hash of the conversation context and the question, so a retried or
+ * repeated question in the same conversation does not wait for another LLM rewrite.
+ */
+@Component
+@RequiredArgsConstructor
+public class RagQueryCache {
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.supplementation.cache.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${app.supplementation.cache.max-entries:5000}")
+    private int maxEntries = 5000;
+
+    @Value("${app.supplementation.cache.ttl:PT30M}")
+    private Duration ttl = Duration.ofMinutes(30);
+
+    // access ordered, evicts the least recently used entry; guarded by this
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+            return size() > maxEntries;
+        }
+    };
+
+    public Key key(String userId, List<SearchRequestEvent.SearchContextItem> context, String query) {
+        return new Key(userId, hash(context), query.strip().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * @return the cached rag query, or {@code null} on a miss
+     */
+    public String get(Key key) {
+        if (!enabled) {
+            return null;
+        }
+        String ragQuery = null;
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                if (System.nanoTime() - entry.createdAtNanos() > ttl.toNanos()) {
+                    entries.remove(key);
+                } else {
+                    ragQuery = entry.ragQuery();
+                }
+            }
+        }
+        Counter.builder("answer.supplementation.cache")
+                .description("Rewritten query cache lookups")
+                .tag("result", ragQuery != null ? "hit" : "miss")
+                .register(meterRegistry)
+                .increment();
+        return ragQuery;
+    }
+
+    public void put(Key key, String ragQuery) {
+        if (!enabled || ragQuery == null || ragQuery.isBlank()) {
+            return;
+        }
+        synchronized (this) {
+            entries.put(key, new Entry(ragQuery, System.nanoTime()));
+        }
+    }
+
+    private static String hash(List<SearchRequestEvent.SearchContextItem> context) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (SearchRequestEvent.SearchContextItem item : context) {
+                digest.update(String.valueOf(item.getRole()).getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+                digest.update(String.valueOf(item.getMessage()).getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 1);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public record Key(String userId, String contextHash, String query) {
+    }
+
+    private record Entry(String ragQuery, long createdAtNanos) {
+    }
+}
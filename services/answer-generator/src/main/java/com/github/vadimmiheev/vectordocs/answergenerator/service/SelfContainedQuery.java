@@ -0,0 +1,59 @@
+package com.github.vadimmiheev.vectordocs.answergenerator.service;
+
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Cheap check whether a follow-up question can be searched as is, without an LLM rewrite against the conversation:
+ * it must carry enough content words of its own and must not lean on the history through pronouns, "what about ..."
+ * style openers or words like "previous"/"same".
+ */
+final class SelfContainedQuery {
+
+    private static final Pattern WORD = Pattern.compile("[\\p{L}\\p{N}]+");
+
+    private static final int MIN_CONTENT_WORDS = 4;
+
+    private static final Set<String> REFERRING = Set.of(
+            "it", "its", "this", "that", "these", "those", "they", "them", "their", "he", "she", "him", "her", "his",
+            "there", "above", "previous", "previously", "same", "earlier", "former", "latter", "again", "else", "one", "ones",
+            "это", "этот", "эта", "эти", "этого", "этой", "тот", "та", "те", "того", "он", "она", "оно", "они", "его", "её",
+            "ее", "их", "им", "там", "такой", "такая", "такие", "ещё", "еще", "выше", "предыдущий", "предыдущем");
+
+    private static final Set<String> OPENERS = Set.of("and", "but", "also", "so", "or", "а", "и", "но", "также");
+
+    private static final Pattern FOLLOW_UP = Pattern.compile("^(what|how) about\\b|^(why|how come|and then)\\W*$|^а (что|как)\\s");
+
+    private static final Set<String> STOP_WORDS = Set.of(
+            "the", "and", "for", "are", "was", "were", "what", "which", "who", "whom", "when", "where", "why", "how",
+            "does", "did", "can", "could", "should", "would", "will", "with", "from", "about", "into", "have", "has",
+            "had", "not", "you", "your", "any", "all", "there", "here", "please", "tell", "show", "give", "list",
+            "что", "как", "где", "когда", "почему", "какой", "какая", "какие", "для", "это", "или", "при");
+
+    private SelfContainedQuery() {
+    }
+
+    static boolean isSelfContained(String query) {
+        String normalized = query.strip().toLowerCase(Locale.ROOT);
+        if (FOLLOW_UP.matcher(normalized).find()) {
+            return false;
+        }
+
+        Matcher words = WORD.matcher(normalized);
+        int contentWords = 0;
+        boolean first = true;
+        while (words.find()) {
+            String word = words.group();
+            if (REFERRING.contains(word) || (first && OPENERS.contains(word))) {
+                return false;
+            }
+            first = false;
+            if (!STOP_WORDS.contains(word) && (word.length() > 2 || word.chars().anyMatch(Character::isDigit))) {
+                contentWords++;
+            }
+        }
+        return contentWords >= MIN_CONTENT_WORDS;
+    }
+}
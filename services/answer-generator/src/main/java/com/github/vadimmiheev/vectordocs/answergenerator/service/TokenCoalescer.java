@@ -0,0 +1,172 @@
+package com.github.vadimmiheev.vectordocs.answergenerator.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.reactivestreams.Subscription;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.SignalType;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Merges LLM tokens into larger chunks before they go over RSocket, so a chunk of 1-3 characters no longer costs
+ * its own frame, JSON serialization and WebSocket message. The first token is forwarded right away to keep the
+ * time to first token, after that a chunk is flushed once it reaches max chars or max delay after its first token.
+ * A chunk is only emitted when downstream asked for one, and a full chunk stops the upstream requests, so
+ * backpressure from notification-service still reaches the token source.
+ */
+@Component
+public class TokenCoalescer {
+
+    private final boolean enabled;
+    private final Duration maxDelay;
+    private final int maxChars;
+    private final Scheduler scheduler;
+
+    private final Counter tokensIn;
+    private final Counter chunksOut;
+
+    @Autowired
+    public TokenCoalescer(MeterRegistry meterRegistry,
+                          @Value("${app.answer.stream.coalesce.enabled:true}") boolean enabled,
+                          @Value("${app.answer.stream.coalesce.max-delay:PT0.05S}") Duration maxDelay,
+                          @Value("${app.answer.stream.coalesce.max-chars:64}") int maxChars) {
+        this(meterRegistry, enabled, maxDelay, maxChars, Schedulers.parallel());
+    }
+
+    TokenCoalescer(MeterRegistry meterRegistry, boolean enabled, Duration maxDelay, int maxChars, Scheduler scheduler) {
+        this.enabled = enabled && maxChars > 1;
+        this.maxDelay = maxDelay;
+        this.maxChars = maxChars;
+        this.scheduler = scheduler;
+        this.tokensIn = Counter.builder("answer.stream.tokens")
+                .description("Answer tokens before coalescing")
+                .register(meterRegistry);
+        this.chunksOut = Counter.builder("answer.stream.chunks")
+                .description("Answer chunks sent to notification-service after coalescing")
+                .register(meterRegistry);
+    }
+
+    public Flux<String> coalesce(Flux<String> tokens) {
+        if (!enabled) {
+            return tokens;
+        }
+        return Flux.create(sink -> {
+            Chunk chunk = new Chunk(sink);
+            sink.onRequest(_ -> chunk.downstreamRequested());
+            // disposing the chunk cancels the token source, hookFinally then drops a pending flush timer
+            sink.onDispose(chunk);
+            tokens.subscribe(chunk);
+        });
+    }
+
+    private class Chunk extends BaseSubscriber<String> {
+
+        private final FluxSink<String> sink;
+
+        // guarded by this
+        private final StringBuilder buffer = new StringBuilder();
+        private boolean first = true;
+        private boolean due;         // the chunk should go out as soon as downstream asks for it
+        private boolean stalled;     // the chunk is full and upstream is not asked for more
+        private boolean upstreamDone;
+        private Throwable upstreamError;
+        private Disposable pendingFlush;
+
+        Chunk(FluxSink<String> sink) {
+            this.sink = sink;
+        }
+
+        @Override
+        protected void hookOnSubscribe(Subscription subscription) {
+            request(1);
+        }
+
+        @Override
+        protected synchronized void hookOnNext(String token) {
+            tokensIn.increment();
+            buffer.append(token);
+            if (first || buffer.length() >= maxChars) {
+                first = false;
+                due = true;
+                tryFlush();
+                if (!buffer.isEmpty()) {
+                    stalled = true;
+                    return;
+                }
+            } else if (pendingFlush == null) {
+                pendingFlush = scheduler.schedule(this::timeUp, maxDelay.toMillis(), TimeUnit.MILLISECONDS);
+            }
+            request(1);
+        }
+
+        @Override
+        protected synchronized void hookOnComplete() {
+            upstreamDone = true;
+            due = true;
+            tryFlush();
+        }
+
+        @Override
+        protected synchronized void hookOnError(Throwable error) {
+            upstreamDone = true;
+            upstreamError = error;
+            due = true;
+            tryFlush();
+        }
+
+        synchronized void downstreamRequested() {
+            tryFlush();
+            if (stalled && buffer.isEmpty()) {
+                stalled = false;
+                request(1);
+            }
+        }
+
+        @Override
+        protected synchronized void hookFinally(SignalType type) {
+            cancelFlush();
+        }
+
+        private synchronized void timeUp() {
+            pendingFlush = null;
+            due = true;
+            tryFlush();
+        }
+
+        private void tryFlush() {
+            if (due && !buffer.isEmpty() && sink.requestedFromDownstream() > 0) {
+                cancelFlush();
+                due = false;
+                chunksOut.increment();
+                String chunk = buffer.toString();
+                buffer.setLength(0);
+                sink.next(chunk);
+            }
+            if (upstreamDone && buffer.isEmpty()) {
+                cancelFlush();
+                if (upstreamError != null) {
+                    sink.error(upstreamError);
+                } else {
+                    sink.complete();
+                }
+            }
+        }
+
+        private void cancelFlush() {
+            if (pendingFlush != null) {
+                pendingFlush.dispose();
+                pendingFlush = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.github.vadimmiheev.vectordocs.answergenerator.service;
+
+import com.github.vadimmiheev.vectordocs.answergenerator.dto.SearchProcessedEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AnswerCacheTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AnswerCache cache = new AnswerCache(meterRegistry);
+
+    private final UUID documentId = UUID.randomUUID();
+    private final List<SearchProcessedEvent.Hit> hits = List.of(hit(1L, documentId), hit(2L, documentId));
+
+    @Test
+    void shouldHitOnSimilarQueryWithSameChunks() {
+        // Given
+        cache.put(cache.lookup("user-1", "What is the warranty?", null, new float[]{1f, 0f, 0f}, hits), List.of("Two ", "years."));
+
+        // When
+        List<String> similar = cache.get(cache.lookup("user-1", "what's the warranty", null, new float[]{0.99f, 0.1f, 0f}, hits.reversed()));
+        List<String> different = cache.get(cache.lookup("user-1", "Who made it?", null, new float[]{0f, 1f, 0f}, hits));
+        List<String> otherChunks = cache.get(cache.lookup("user-1", "What is the warranty?", null, new float[]{1f, 0f, 0f}, List.of(hit(1L, documentId))));
+        List<String> otherUser = cache.get(cache.lookup("user-2", "What is the warranty?", null, new float[]{1f, 0f, 0f}, hits));
+
+        // Then
+        assertThat(similar).containsExactly("Two ", "years.");
+        assertThat(different).isNull();
+        assertThat(otherChunks).isNull();
+        assertThat(otherUser).isNull();
+        assertThat(meterRegistry.counter("answer.cache", "result", "hit").count()).isEqualTo(1.0);
+        assertThat(meterRegistry.counter("answer.cache", "result", "miss").count()).isEqualTo(3.0);
+    }
+
+    @Test
+    void shouldFallBackToQueryTextWithoutVector() {
+        // Given
+        cache.put(cache.lookup("user-1", "What is the warranty?", null, null, hits), List.of("Two years."));
+
+        // When / Then
+        assertThat(cache.get(cache.lookup("user-1", "  what is the   WARRANTY? ", null, null, hits))).containsExactly("Two years.");
+        assertThat(cache.get(cache.lookup("user-1", "What is the price?", null, null, hits))).isNull();
+    }
+
+    @Test
+    void shouldMatchQueryTextOnSearchCacheHit() {
+        // Given - the first answer came from a full search with a vector
+        List<SearchProcessedEvent.SearchContextItem> chat = List.of(
+                new SearchProcessedEvent.SearchContextItem("user", "Which model is it?"),
+                new SearchProcessedEvent.SearchContextItem("assistant", "The X200."));
+        cache.put(cache.lookup("user-1", "What is the warranty of the X200?", chat, new float[]{1f, 0f}, hits),
+                List.of("Two years."));
+
+        // When / Then - the repeat is a search-service cache hit, so it arrives without a vector
+        assertThat(cache.get(cache.lookup("user-1", "what is the warranty of the  x200?", chat, null, hits)))
+                .containsExactly("Two years.");
+        assertThat(cache.get(cache.lookup("user-1", "How long is the X200 covered?", chat, null, hits))).isNull();
+    }
+
+    @Test
+    void shouldDropAnswersWhenSourceDocumentChanges() {
+        // Given
+        AnswerCache.Lookup lookup = cache.lookup("user-1", "What is the warranty?", null, new float[]{1f, 0f}, hits);
+        cache.put(lookup, List.of("Two years."));
+
+        // When
+        cache.invalidateDocument("user-1", documentId);
+
+        // Then
+        assertThat(cache.get(cache.lookup("user-1", "What is the warranty?", null, new float[]{1f, 0f}, hits))).isNull();
+        assertThat(meterRegistry.counter("answer.cache.invalidated").count()).isEqualTo(1.0);
+
+        // an answer generated before the change is not stored
+        cache.put(lookup, List.of("Two years."));
+        assertThat(cache.get(cache.lookup("user-1", "What is the warranty?", null, new float[]{1f, 0f}, hits))).isNull();
+    }
+
+    @Test
+    void shouldKeepAnswersOfDifferentConversationsApart() {
+        // Given - the same follow-up in two chats, served from the search-service result cache, so without a vector
+        List<SearchProcessedEvent.SearchContextItem> firstChat = List.of(
+                new SearchProcessedEvent.SearchContextItem("user", "List the error codes"),
+                new SearchProcessedEvent.SearchContextItem("assistant", "E-4521 and E-17"));
+        List<SearchProcessedEvent.SearchContextItem> secondChat = List.of(
+                new SearchProcessedEvent.SearchContextItem("user", "List the spare parts"),
+                new SearchProcessedEvent.SearchContextItem("assistant", "Valve and sensor"));
+        cache.put(cache.lookup("user-1", "and the second one?", firstChat, null, hits), List.of("E-17 is a timeout."));
+
+        // When / Then
+        assertThat(cache.get(cache.lookup("user-1", "and the second one?", firstChat, null, hits))).containsExactly("E-17 is a timeout.");
+        assertThat(cache.get(cache.lookup("user-1", "and the second one?", secondChat, null, hits))).isNull();
+        assertThat(cache.get(cache.lookup("user-1", "and the second one?", null, null, hits))).isNull();
+    }
+
+    @Test
+    void shouldNotCacheHitsWithoutIds() {
+        assertThat(cache.lookup("user-1", "q", null, new float[]{1f}, List.of(hit(null, documentId)))).isNull();
+    }
+
+    private static SearchProcessedEvent.Hit hit(Long id, UUID fileUuid) {
+        return SearchProcessedEvent.Hit.builder().id(id).fileUuid(fileUuid).fileName("doc.pdf").pageNumber(1).chunkText("text").build();
+    }
+}
@@ -5,6 +5,9 @@ import com.github.vadimmiheev.vectordocs.answergenerator.dto.SearchProcessedEven
 import dev.langchain4j.data.message.AiMessage;
 import dev.langchain4j.model.StreamingResponseHandler;
 import dev.langchain4j.model.openai.OpenAiStreamingChatModel;
+import dev.langchain4j.model.openai.OpenAiTokenizer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -14,8 +17,11 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import reactor.core.publisher.Flux;
 
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 
@@ -31,6 +37,9 @@ class AnswerGenerationListenerTest {
     @Mock
     private NotificationClient notificationClient;
 
+    @Mock
+    private PartitionedDispatcher dispatcher;
+
     @Captor
     private ArgumentCaptor<StreamingResponseHandler<AiMessage>> handlerCaptor;
 
@@ -38,7 +47,11 @@ class AnswerGenerationListenerTest {
 
     @BeforeEach
     void setUp() {
-        listener = new AnswerGenerationListener(objectMapper, streamingChatModel, notificationClient);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        listener = new AnswerGenerationListener(objectMapper, streamingChatModel, notificationClient,
+                new LlmStreamLimiter(meterRegistry, 4, Duration.ofSeconds(30)),
+                new PromptBuilder(new OpenAiTokenizer("gpt-3.5-turbo"), 6000, 1500, 400),
+                new AnswerCache(meterRegistry), meterRegistry, dispatcher, ObservationRegistry.NOOP);
     }
 
     @Test
@@ -175,4 +188,81 @@ class AnswerGenerationListenerTest {
         // Should not throw exception, just log error
         verify(notificationClient, never()).streamAnswer(any(), any(), any());
     }
-}
\ No newline at end of file
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldReplayCachedAnswerForSameQuestionOnSameChunks() throws Exception {
+        // Given
+        String message = "{}";
+        SearchProcessedEvent event = new SearchProcessedEvent();
+        event.setUserId("user-123");
+        event.setQuery("test query");
+        event.setRequestId("req-123");
+        event.setQueryVector(new float[]{0.6f, 0.8f});
+        event.setEmbeddings(List.of(
+                SearchProcessedEvent.Hit.builder()
+                        .id(42L)
+                        .fileUuid(java.util.UUID.randomUUID())
+                        .fileName("doc.pdf")
+                        .pageNumber(1)
+                        .chunkText("content")
+                        .build()
+        ));
+        when(objectMapper.readValue(message, SearchProcessedEvent.class)).thenReturn(event);
+
+        listener.onSearchProcessed(message, "key-123");
+        verify(streamingChatModel).generate(any(List.class), handlerCaptor.capture());
+        handlerCaptor.getValue().onNext("cached ");
+        handlerCaptor.getValue().onNext("answer");
+        handlerCaptor.getValue().onComplete(null);
+
+        // When - asked again
+        listener.onSearchProcessed(message, "key-123");
+
+        // Then - no second LLM call, the tokens are replayed
+        verify(streamingChatModel, times(1)).generate(any(List.class), any(StreamingResponseHandler.class));
+        ArgumentCaptor<Flux<String>> streams = ArgumentCaptor.forClass(Flux.class);
+        verify(notificationClient, times(2)).streamAnswer(eq("user-123"), eq("req-123"), streams.capture());
+        assertThat(streams.getAllValues().get(1).collectList().block()).containsExactly("cached ", "answer");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldStopForwardingAndSkipCacheWhenConsumerCancels() throws Exception {
+        // Given
+        String message = "{}";
+        SearchProcessedEvent event = new SearchProcessedEvent();
+        event.setUserId("user-123");
+        event.setQuery("test query");
+        event.setRequestId("req-123");
+        event.setQueryVector(new float[]{0.6f, 0.8f});
+        event.setEmbeddings(List.of(
+                SearchProcessedEvent.Hit.builder()
+                        .id(42L)
+                        .fileUuid(java.util.UUID.randomUUID())
+                        .fileName("doc.pdf")
+                        .pageNumber(1)
+                        .chunkText("content")
+                        .build()
+        ));
+        when(objectMapper.readValue(message, SearchProcessedEvent.class)).thenReturn(event);
+
+        listener.onSearchProcessed(message, "key-123");
+        ArgumentCaptor<Flux<String>> stream = ArgumentCaptor.forClass(Flux.class);
+        verify(notificationClient).streamAnswer(eq("user-123"), eq("req-123"), stream.capture());
+        List<String> received = new ArrayList<>();
+        // notification-service takes one chunk, then the user is gone
+        stream.getValue().take(1).subscribe(received::add);
+
+        // When
+        verify(streamingChatModel).generate(any(List.class), handlerCaptor.capture());
+        handlerCaptor.getValue().onNext("first");
+        handlerCaptor.getValue().onNext("second");
+        handlerCaptor.getValue().onComplete(null);
+
+        // Then - nothing after the cancel is forwarded, and the partial answer is not cached
+        assertThat(received).containsExactly("first");
+        listener.onSearchProcessed(message, "key-123");
+        verify(streamingChatModel, times(2)).generate(any(List.class), any(StreamingResponseHandler.class));
+    }
+}
@@ -0,0 +1,172 @@
+package com.github.vadimmiheev.vectordocs.answergenerator.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscription;
+import reactor.core.publisher.BaseSubscriber;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AnswerStreamTest {
+
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    void shouldDeliverOnlyWhatWasRequested() {
+        // Given
+        AnswerStream stream = new AnswerStream("req-1", 10, AnswerStream.Overflow.COALESCE, meterRegistry);
+        Recorder recorder = new Recorder();
+        stream.asFlux().subscribe(recorder);
+
+        // When
+        stream.offer("a");
+        stream.offer("b");
+        stream.offer("c");
+
+        // Then
+        assertThat(recorder.received).isEmpty();
+        assertThat(stream.queued()).isEqualTo(3);
+
+        recorder.request(2);
+        assertThat(recorder.received).containsExactly("a", "b");
+
+        stream.complete();
+        recorder.request(1);
+        assertThat(recorder.received).containsExactly("a", "b", "c");
+        assertThat(recorder.completed).isTrue();
+    }
+
+    @Test
+    void shouldCoalesceIntoLastChunkWhenFull() {
+        // Given
+        AnswerStream stream = new AnswerStream("req-1", 2, AnswerStream.Overflow.COALESCE, meterRegistry);
+        Recorder recorder = new Recorder();
+        stream.asFlux().subscribe(recorder);
+
+        // When
+        for (String token : List.of("a", "b", "c", "d")) {
+            assertThat(stream.offer(token)).isTrue();
+        }
+        stream.complete();
+        recorder.request(Long.MAX_VALUE);
+
+        // Then
+        assertThat(recorder.received).containsExactly("a", "bcd");
+        assertThat(meterRegistry.counter("answer.stream.overflow", "policy", "coalesce").count()).isEqualTo(2.0);
+    }
+
+    @Test
+    void shouldDropTokensWhenFull() {
+        // Given
+        AnswerStream stream = new AnswerStream("req-1", 2, AnswerStream.Overflow.DROP, meterRegistry);
+        Recorder recorder = new Recorder();
+        stream.asFlux().subscribe(recorder);
+
+        // When
+        for (String token : List.of("a", "b", "c", "d")) {
+            assertThat(stream.offer(token)).isTrue();
+        }
+        stream.complete();
+        recorder.request(Long.MAX_VALUE);
+
+        // Then
+        assertThat(recorder.received).containsExactly("a", "b");
+        assertThat(stream.isCancelled()).isFalse();
+    }
+
+    @Test
+    void shouldCancelAnswerWhenFullAndDeliverWhatWaited() {
+        // Given
+        AnswerStream stream = new AnswerStream("req-1", 2, AnswerStream.Overflow.CANCEL, meterRegistry);
+        Recorder recorder = new Recorder();
+        stream.asFlux().subscribe(recorder);
+
+        // When
+        stream.offer("a");
+        stream.offer("b");
+        boolean accepted = stream.offer("c");
+
+        // Then
+        assertThat(accepted).isFalse();
+        assertThat(stream.isCancelled()).isTrue();
+        assertThat(stream.offer("d")).isFalse();
+
+        recorder.request(Long.MAX_VALUE);
+        assertThat(recorder.received).containsExactly("a", "b");
+        assertThat(recorder.completed).isTrue();
+        assertThat(meterRegistry.counter("answer.stream.cancelled", "reason", "overflow").count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void shouldRefuseTokensAfterConsumerCancelled() {
+        // Given
+        AnswerStream stream = new AnswerStream("req-1", 10, AnswerStream.Overflow.COALESCE, meterRegistry);
+        Recorder recorder = new Recorder();
+        stream.asFlux().subscribe(recorder);
+        recorder.request(1);
+        stream.offer("a");
+
+        // When
+        recorder.cancel();
+
+        // Then
+        assertThat(stream.offer("b")).isFalse();
+        assertThat(stream.isCancelled()).isTrue();
+        assertThat(stream.queued()).isZero();
+        assertThat(recorder.received).containsExactly("a");
+        assertThat(meterRegistry.counter("answer.stream.cancelled", "reason", "consumer").count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void shouldPropagateErrorAfterQueuedTokens() {
+        // Given
+        AnswerStream stream = new AnswerStream("req-1", 10, AnswerStream.Overflow.COALESCE, meterRegistry);
+        Recorder recorder = new Recorder();
+        stream.asFlux().subscribe(recorder);
+
+        // When
+        stream.offer("a");
+        stream.error(new IllegalStateException("llm failed"));
+        recorder.request(Long.MAX_VALUE);
+
+        // Then
+        assertThat(recorder.received).containsExactly("a");
+        assertThat(recorder.error).hasMessage("llm failed");
+    }
+
+    private static class Recorder extends BaseSubscriber<String> {
+
+        private final List<String> received = new ArrayList<>();
+        private boolean completed;
+        private Throwable error;
+
+        @Override
+        protected void hookOnSubscribe(Subscription subscription) {
+            // demand is driven by the test
+        }
+
+        @Override
+        protected void hookOnNext(String value) {
+            received.add(value);
+        }
+
+        @Override
+        protected void hookOnComplete() {
+            completed = true;
+        }
+
+        @Override
+        protected void hookOnError(Throwable throwable) {
+            error = throwable;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.github.vadimmiheev.vectordocs.answergenerator.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LlmStreamLimiterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private LlmStreamLimiter limiter;
+
+    @AfterEach
+    void tearDown() {
+        limiter.shutdown();
+    }
+
+    @Test
+    void shouldServeQueuedUsersRoundRobin() {
+        // Given
+        limiter = new LlmStreamLimiter(meterRegistry, 1, Duration.ofMinutes(1));
+        limiter.registerGauges();
+        List<String> started = new CopyOnWriteArrayList<>();
+        List<Runnable> releases = new ArrayList<>();
+
+        // When - one slot: the first stream runs, user A queues three more, then B asks once
+        submit("a", "a1", started, releases);
+        submit("a", "a2", started, releases);
+        submit("a", "a3", started, releases);
+        submit("b", "b1", started, releases);
+
+        // Then
+        assertThat(started).containsExactly("a1");
+        assertThat(limiter.queueDepth()).isEqualTo(3);
+        assertThat(meterRegistry.get("answer.llm.queue.depth").gauge().value()).isEqualTo(3.0);
+
+        // When
+        releases.get(0).run();
+        releases.get(0).run(); // a second release of the same stream is ignored
+        releases.get(1).run();
+        releases.get(2).run();
+
+        // Then - B is not stuck behind all of A's questions
+        assertThat(started).containsExactly("a1", "a2", "b1", "a3");
+        assertThat(limiter.activeStreams()).isEqualTo(1);
+
+        // When
+        releases.get(3).run();
+
+        // Then
+        assertThat(limiter.activeStreams()).isZero();
+        assertThat(limiter.queueDepth()).isZero();
+    }
+
+    @Test
+    void shouldAnswerBusyAfterMaxQueueWait() throws Exception {
+        // Given
+        limiter = new LlmStreamLimiter(meterRegistry, 1, Duration.ofMillis(50));
+        List<String> started = new CopyOnWriteArrayList<>();
+        List<Runnable> releases = new ArrayList<>();
+        CountDownLatch busy = new CountDownLatch(1);
+        submit("a", "a1", started, releases);
+
+        // When
+        limiter.submit("b", release -> started.add("b1"), busy::countDown);
+
+        // Then
+        assertThat(busy.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(limiter.queueDepth()).isZero();
+        assertThat(meterRegistry.counter("answer.llm.busy").count()).isEqualTo(1.0);
+
+        // When - the slot frees up after B gave up
+        releases.get(0).run();
+
+        // Then
+        assertThat(started).containsExactly("a1");
+        assertThat(limiter.activeStreams()).isZero();
+    }
+
+    private void submit(String userId, String name, List<String> started, List<Runnable> releases) {
+        limiter.submit(userId, release -> {
+            started.add(name);
+            releases.add(release);
+        }, () -> started.add(name + "-busy"));
+    }
+}
@@ -1,6 +1,11 @@
 package com.github.vadimmiheev.vectordocs.answergenerator.service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationHandler;
+import io.micrometer.observation.ObservationRegistry;
+import io.micrometer.observation.transport.SenderContext;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -12,7 +17,9 @@ import org.springframework.messaging.rsocket.RSocketRequester;
 import org.springframework.util.MimeType;
 import reactor.core.publisher.Flux;
 
+import java.time.Duration;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
@@ -21,9 +28,6 @@ import static org.mockito.Mockito.*;
 @ExtendWith(MockitoExtension.class)
 class NotificationClientTest {
 
-    @Mock
-    private RSocketRequester.Builder rSocketRequesterBuilder;
-
     @Mock
     private ObjectMapper objectMapper;
 
@@ -39,24 +43,15 @@ class NotificationClientTest {
     @Captor
     private ArgumentCaptor<Flux<String>> dataCaptor;
 
+    private SimpleMeterRegistry meterRegistry;
+
     private NotificationClient notificationClient;
 
     @BeforeEach
     void setUp() {
-        notificationClient = new NotificationClient(rSocketRequesterBuilder, objectMapper);
-
-        // Set fields via reflection since they're @Value fields
-        try {
-            var hostField = NotificationClient.class.getDeclaredField("rsocketHost");
-            hostField.setAccessible(true);
-            hostField.set(notificationClient, "notification-service");
-
-            var portField = NotificationClient.class.getDeclaredField("rsocketPort");
-            portField.setAccessible(true);
-            portField.set(notificationClient, 7000);
-        } catch (Exception e) {
-            throw new RuntimeException(e);
-        }
+        meterRegistry = new SimpleMeterRegistry();
+        notificationClient = new NotificationClient(rSocketRequester, objectMapper, meterRegistry,
+                new TokenCoalescer(meterRegistry, false, Duration.ofMillis(50), 64), ObservationRegistry.NOOP);
     }
 
     @Test
@@ -70,7 +65,6 @@ class NotificationClientTest {
         RSocketRequester.RequestSpec requestSpec = mock(RSocketRequester.RequestSpec.class);
         RSocketRequester.RetrieveSpec retrieveSpec = mock(RSocketRequester.RetrieveSpec.class);
 
-        when(rSocketRequesterBuilder.tcp("notification-service", 7000)).thenReturn(rSocketRequester);
         when(rSocketRequester.route("search.result")).thenReturn(requestSpec);
         when(requestSpec.metadata(any(String.class), any(MimeType.class))).thenReturn(requestSpec);
         when(requestSpec.data(any(Flux.class))).thenReturn(retrieveSpec);
@@ -83,7 +77,6 @@ class NotificationClientTest {
         notificationClient.streamAnswer(userId, requestId, tokens);
 
         // Then
-        verify(rSocketRequesterBuilder).tcp("notification-service", 7000);
         verify(rSocketRequester).route("search.result");
         verify(requestSpec).metadata(metadataCaptor.capture(), mimeTypeCaptor.capture());
         verify(requestSpec).data(dataCaptor.capture());
@@ -95,6 +88,7 @@ class NotificationClientTest {
         // Verify data flux
         Flux<String> capturedData = dataCaptor.getValue();
         assertThat(capturedData.collectList().block()).containsExactly("token1", "token2", "token3");
+        assertThat(meterRegistry.counter("notification.rsocket.streams", "result", "completed").count()).isEqualTo(1.0);
     }
 
     @Test
@@ -114,8 +108,7 @@ class NotificationClientTest {
         );
 
         assertThat(thrown).isNotNull();
-        // Note: rSocketRequesterBuilder.tcp() is called before serialization error,
-        // so it will be invoked even if serialization fails
+        verifyNoInteractions(rSocketRequester);
     }
 
     @Test
@@ -129,7 +122,6 @@ class NotificationClientTest {
         RSocketRequester.RequestSpec requestSpec = mock(RSocketRequester.RequestSpec.class);
         RSocketRequester.RetrieveSpec retrieveSpec = mock(RSocketRequester.RetrieveSpec.class);
 
-        when(rSocketRequesterBuilder.tcp("notification-service", 7000)).thenReturn(rSocketRequester);
         when(rSocketRequester.route("search.result")).thenReturn(requestSpec);
         when(requestSpec.metadata(any(String.class), any(MimeType.class))).thenReturn(requestSpec);
         when(requestSpec.data(any(Flux.class))).thenReturn(retrieveSpec);
@@ -142,7 +134,98 @@ class NotificationClientTest {
         notificationClient.streamAnswer(userId, requestId, tokens);
 
         // Then - should not throw, just log error
-        verify(rSocketRequesterBuilder).tcp("notification-service", 7000);
         verify(rSocketRequester).route("search.result");
+        assertThat(meterRegistry.counter("notification.rsocket.streams", "result", "error").count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void shouldSendCoalescedChunks() throws Exception {
+        // Given
+        notificationClient = new NotificationClient(rSocketRequester, objectMapper, meterRegistry,
+                new TokenCoalescer(meterRegistry, true, Duration.ofSeconds(10), 8), ObservationRegistry.NOOP);
+        RSocketRequester.RequestSpec requestSpec = mock(RSocketRequester.RequestSpec.class);
+        RSocketRequester.RetrieveSpec retrieveSpec = mock(RSocketRequester.RetrieveSpec.class);
+
+        when(rSocketRequester.route("search.result")).thenReturn(requestSpec);
+        when(requestSpec.metadata(any(String.class), any(MimeType.class))).thenReturn(requestSpec);
+        when(requestSpec.data(any(Flux.class))).thenReturn(retrieveSpec);
+        when(retrieveSpec.retrieveFlux(Void.class)).thenReturn(Flux.empty());
+        when(objectMapper.writeValueAsString(any())).thenReturn("{}");
+
+        // When
+        notificationClient.streamAnswer("user-123", "req-456", Flux.just("The", " answer", " is", " here", "."));
+
+        // Then
+        verify(requestSpec).data(dataCaptor.capture());
+        assertThat(dataCaptor.getValue().collectList().block()).containsExactly("The", " answer is", " here.");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldPropagateTraceContextInMetadata() throws Exception {
+        // Given - a tracing handler stand-in that writes a traceparent like the OpenTelemetry propagator does
+        ObservationRegistry observationRegistry = ObservationRegistry.create();
+        observationRegistry.observationConfig().observationHandler(new ObservationHandler<SenderContext<Object>>() {
+            @Override
+            public void onStart(SenderContext<Object> context) {
+                context.getSetter().set(context.getCarrier(), "traceparent", "00-0af7651916cd43dd8448eb211c80319c-b7ad6b7169203331-01");
+            }
+
+            @Override
+            public boolean supportsContext(Observation.Context context) {
+                return context instanceof SenderContext;
+            }
+        });
+        notificationClient = new NotificationClient(rSocketRequester, objectMapper, meterRegistry,
+                new TokenCoalescer(meterRegistry, false, Duration.ofMillis(50), 64), observationRegistry);
+
+        RSocketRequester.RequestSpec requestSpec = mock(RSocketRequester.RequestSpec.class);
+        RSocketRequester.RetrieveSpec retrieveSpec = mock(RSocketRequester.RetrieveSpec.class);
+        when(rSocketRequester.route("search.result")).thenReturn(requestSpec);
+        when(requestSpec.metadata(any(String.class), any(MimeType.class))).thenReturn(requestSpec);
+        when(requestSpec.data(any(Flux.class))).thenReturn(retrieveSpec);
+        when(retrieveSpec.retrieveFlux(Void.class)).thenReturn(Flux.empty());
+        when(objectMapper.writeValueAsString(any())).thenReturn("{}");
+
+        // When
+        notificationClient.streamAnswer("user-123", "req-456", Flux.just("token"));
+
+        // Then
+        ArgumentCaptor<Map<String, String>> metadata = ArgumentCaptor.forClass(Map.class);
+        verify(objectMapper).writeValueAsString(metadata.capture());
+        assertThat(metadata.getValue())
+                .containsEntry("userId", "user-123")
+                .containsEntry("requestId", "req-456")
+                .containsEntry("traceparent", "00-0af7651916cd43dd8448eb211c80319c-b7ad6b7169203331-01");
+    }
+
+    @Test
+    void shouldStopObservationWhenStreamSetupFails() throws Exception {
+        // Given
+        ObservationRegistry observationRegistry = ObservationRegistry.create();
+        AtomicReference<Observation.Context> stopped = new AtomicReference<>();
+        observationRegistry.observationConfig().observationHandler(new ObservationHandler<Observation.Context>() {
+            @Override
+            public void onStop(Observation.Context context) {
+                stopped.set(context);
+            }
+
+            @Override
+            public boolean supportsContext(Observation.Context context) {
+                return true;
+            }
+        });
+        notificationClient = new NotificationClient(rSocketRequester, objectMapper, meterRegistry,
+                new TokenCoalescer(meterRegistry, false, Duration.ofMillis(50), 64), observationRegistry);
+        when(objectMapper.writeValueAsString(any())).thenReturn("{}");
+        when(rSocketRequester.route("search.result")).thenThrow(new IllegalStateException("requester disposed"));
+
+        // When
+        org.junit.jupiter.api.Assertions.assertThrows(IllegalStateException.class,
+                () -> notificationClient.streamAnswer("user-123", "req-456", Flux.just("token")));
+
+        // Then
+        assertThat(stopped.get()).isNotNull();
+        assertThat(stopped.get().getError()).hasMessage("requester disposed");
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,51 @@
+package com.github.vadimmiheev.vectordocs.answergenerator.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.rsocket.DuplexConnection;
+import io.rsocket.plugins.DuplexConnectionInterceptor;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.actuate.health.Status;
+import reactor.core.publisher.Sinks;
+
+import java.net.ConnectException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class NotificationConnectionMonitorTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final NotificationConnectionMonitor monitor = new NotificationConnectionMonitor(meterRegistry);
+
+    @Test
+    void shouldTrackConnectionLifecycleInHealth() {
+        // Given
+        Sinks.Empty<Void> closed = Sinks.empty();
+        DuplexConnection connection = mock(DuplexConnection.class);
+        when(connection.onClose()).thenReturn(closed.asMono());
+
+        // Then - nothing opened yet
+        assertThat(monitor.health().getStatus()).isEqualTo(Status.UNKNOWN);
+
+        // When
+        monitor.onReconnectAttempt(new ConnectException("Connection refused"));
+
+        // Then
+        assertThat(monitor.health().getStatus()).isEqualTo(Status.DOWN);
+        assertThat(meterRegistry.counter("notification.rsocket.reconnect.attempts").count()).isEqualTo(1.0);
+
+        // When
+        monitor.apply(DuplexConnectionInterceptor.Type.SOURCE, connection);
+
+        // Then
+        assertThat(monitor.health().getStatus()).isEqualTo(Status.UP);
+        assertThat(meterRegistry.get("notification.rsocket.connections").gauge().value()).isEqualTo(1.0);
+
+        // When
+        closed.tryEmitEmpty();
+
+        // Then
+        assertThat(meterRegistry.get("notification.rsocket.connections").gauge().value()).isEqualTo(0.0);
+    }
+}
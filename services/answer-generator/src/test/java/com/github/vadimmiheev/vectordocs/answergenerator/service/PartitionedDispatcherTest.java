@@ -0,0 +1,77 @@
+package com.github.vadimmiheev.vectordocs.answergenerator.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.support.Acknowledgment;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+class PartitionedDispatcherTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final PartitionedDispatcher dispatcher = new PartitionedDispatcher(meterRegistry, ObservationRegistry.NOOP);
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        dispatcher.shutdown();
+    }
+
+    @Test
+    void shouldAcknowledgeAfterProcessingWithoutBlockingTheConsumerThread() {
+        // Given
+        CountDownLatch release = new CountDownLatch(1);
+        Acknowledgment slowAck = mock(Acknowledgment.class);
+        Acknowledgment samePartitionAck = mock(Acknowledgment.class);
+
+        // When - the first record of partition 0 is still processing
+        dispatcher.dispatch(record(0, 1), slowAck, () -> await(release));
+        dispatcher.dispatch(record(0, 2), samePartitionAck, () -> { });
+
+        // Then - the next record of the same partition is not held up, the slow one is acknowledged only when done
+        verify(samePartitionAck, timeout(5000)).acknowledge();
+        verify(slowAck, never()).acknowledge();
+        assertThat(meterRegistry.get("answer.kafka.in-flight").gauge().value()).isEqualTo(1.0);
+
+        // When
+        release.countDown();
+
+        // Then
+        verify(slowAck, timeout(5000)).acknowledge();
+    }
+
+    @Test
+    void shouldAcknowledgeFailedRecords() {
+        // Given
+        Acknowledgment ack = mock(Acknowledgment.class);
+
+        // When
+        dispatcher.dispatch(record(0, 1), ack, () -> {
+            throw new IllegalStateException("boom");
+        });
+
+        // Then - errors are logged and skipped, as before
+        verify(ack, timeout(5000)).acknowledge();
+    }
+
+    private static ConsumerRecord<String, String> record(int partition, long offset) {
+        return new ConsumerRecord<>("search.request", partition, offset, "key", "value");
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
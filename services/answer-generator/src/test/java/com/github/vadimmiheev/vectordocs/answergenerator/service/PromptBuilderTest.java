@@ -0,0 +1,89 @@
+package com.github.vadimmiheev.vectordocs.answergenerator.service;
+
+import com.github.vadimmiheev.vectordocs.answergenerator.dto.SearchProcessedEvent;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.openai.OpenAiTokenizer;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PromptBuilderTest {
+
+    private final OpenAiTokenizer tokenizer = new OpenAiTokenizer("gpt-3.5-turbo");
+
+    @Test
+    void shouldUseCompactFragmentsAndStripSourcesFromHistory() {
+        // Given
+        PromptBuilder builder = new PromptBuilder(tokenizer, 6000, 1500, 400);
+        UUID fileUuid = UUID.randomUUID();
+        List<SearchProcessedEvent.SearchContextItem> context = List.of(
+                new SearchProcessedEvent.SearchContextItem("user", "What is the warranty?"),
+                new SearchProcessedEvent.SearchContextItem("agent", "Two years.\n<BEGIN_SOURCES>\nabc/doc.pdf/5\n<END_SOURCES>"));
+        List<SearchProcessedEvent.Hit> hits = List.of(
+                hit(fileUuid, "manual.pdf", 3, "The warranty covers parts for 24 months."),
+                hit(fileUuid, "manual.pdf", 3, "The warranty covers parts for 24 months."));
+
+        // When
+        PromptBuilder.Prompt prompt = builder.build("Does it cover labour?", context, hits);
+
+        // Then
+        List<ChatMessage> messages = prompt.messages();
+        assertThat(messages).hasSize(5);
+        assertThat(messages.get(0)).isInstanceOf(SystemMessage.class);
+        assertThat(((AiMessage) messages.get(2)).text()).isEqualTo("Two years.");
+        assertThat(((UserMessage) messages.get(3)).singleText()).isEqualTo("Does it cover labour?");
+        assertThat(((SystemMessage) messages.get(4)).text())
+                .isEqualTo("Fragments:\n[1] " + fileUuid + "/manual.pdf/3\nThe warranty covers parts for 24 months.\n\n");
+        assertThat(prompt.fragmentsUsed()).isEqualTo(1);
+        assertThat(prompt.fragmentsDropped()).isEqualTo(1); // duplicate chunk
+        assertThat(prompt.tokens()).isPositive();
+    }
+
+    @Test
+    void shouldStayWithinBudgetDroppingOldTurnsAndWeakestFragments() {
+        // Given
+        int budget = 1200;
+        PromptBuilder builder = new PromptBuilder(tokenizer, budget, 300, 200);
+        List<SearchProcessedEvent.SearchContextItem> context = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            context.add(new SearchProcessedEvent.SearchContextItem(i % 2 == 0 ? "user" : "agent", "turn " + i + " " + words(60)));
+        }
+        List<SearchProcessedEvent.Hit> hits = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            hits.add(hit(UUID.randomUUID(), "doc" + i + ".pdf", i, "fragment " + i + " " + words(300)));
+        }
+
+        // When
+        PromptBuilder.Prompt prompt = builder.build("What happened?", context, hits);
+
+        // Then
+        assertThat(prompt.tokens()).isLessThanOrEqualTo(budget + budget / 10); // estimates, per-message overhead is not budgeted
+        assertThat(prompt.turnsDropped()).isPositive();
+        assertThat(prompt.fragmentsUsed()).isPositive();
+        assertThat(prompt.fragmentsDropped()).isPositive();
+
+        // the newest turn and the best fragment survive
+        String lastTurn = ((AiMessage) prompt.messages().get(prompt.messages().size() - 3)).text();
+        assertThat(lastTurn).startsWith("turn 19");
+        assertThat(((SystemMessage) prompt.messages().getLast()).text()).contains("[1] ").contains("fragment 0 ");
+    }
+
+    private static SearchProcessedEvent.Hit hit(UUID fileUuid, String fileName, int page, String text) {
+        return SearchProcessedEvent.Hit.builder().fileUuid(fileUuid).fileName(fileName).pageNumber(page).chunkText(text).build();
+    }
+
+    private static String words(int count) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            sb.append("word").append(i % 7).append(' ');
+        }
+        return sb.toString().strip();
+    }
+}
@@ -4,6 +4,8 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.vadimmiheev.vectordocs.answergenerator.dto.SearchRequestEvent;
 import dev.langchain4j.data.message.AiMessage;
 import dev.langchain4j.model.openai.OpenAiChatModel;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -31,11 +33,16 @@ class QuestionSupplementationListenerTest {
     @Mock
     private KafkaTemplate<String, String> kafkaTemplate;
 
+    @Mock
+    private PartitionedDispatcher dispatcher;
+
     private QuestionSupplementationListener listener;
 
     @BeforeEach
     void setUp() {
-        listener = new QuestionSupplementationListener(objectMapper, chatModel, kafkaTemplate);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        listener = new QuestionSupplementationListener(objectMapper, chatModel, kafkaTemplate,
+                new RagQueryCache(meterRegistry), meterRegistry, dispatcher, ObservationRegistry.NOOP);
         // Set topic via reflection since it's @Value field
         try {
             var field = QuestionSupplementationListener.class.getDeclaredField("supplementedRequestTopic");
@@ -127,6 +134,56 @@ class QuestionSupplementationListenerTest {
         assertThat(request.getRagQuery()).isEqualTo("enhanced search query");
     }
 
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldReuseRagQueryForSameContextAndQuestion() throws Exception {
+        // Given
+        String message = "{}";
+        when(objectMapper.readValue(message, SearchRequestEvent.class)).thenAnswer(invocation -> {
+            SearchRequestEvent request = new SearchRequestEvent();
+            request.setUserId("user-123");
+            request.setQuery("and the second one?");
+            request.setContext(new ArrayList<>(List.of(
+                    new SearchRequestEvent.SearchContextItem("user", "list the supported sensor models")
+            )));
+            return request;
+        });
+        when(chatModel.generate(any(List.class))).thenReturn(
+                dev.langchain4j.model.output.Response.from(AiMessage.from("second supported sensor model")));
+        when(objectMapper.writeValueAsString(any())).thenReturn("serialized-message");
+
+        // When
+        listener.onSearchRequest(message, "key-1");
+        listener.onSearchRequest(message, "key-2");
+
+        // Then
+        verify(chatModel, times(1)).generate(any(List.class));
+        verify(kafkaTemplate).send(eq("search.request.supplemented"), eq("key-2"), eq("serialized-message"));
+    }
+
+    @Test
+    void shouldSkipRewriteForSelfContainedQuestion() throws Exception {
+        // Given
+        String message = "{}";
+        SearchRequestEvent request = new SearchRequestEvent();
+        request.setUserId("user-123");
+        request.setQuery("What is the warranty period for the XR-200 pressure sensor?");
+        request.setContext(new ArrayList<>(List.of(
+                new SearchRequestEvent.SearchContextItem("user", "previous question")
+        )));
+
+        when(objectMapper.readValue(message, SearchRequestEvent.class)).thenReturn(request);
+        when(objectMapper.writeValueAsString(any())).thenReturn("serialized-message");
+
+        // When
+        listener.onSearchRequest(message, "key-123");
+
+        // Then
+        verifyNoInteractions(chatModel);
+        assertThat(request.getRagQuery()).isEqualTo(request.getQuery());
+        verify(kafkaTemplate).send(eq("search.request.supplemented"), eq("key-123"), eq("serialized-message"));
+    }
+
     @Test
     void shouldHandleExceptionDuringProcessing() throws Exception {
         // Given
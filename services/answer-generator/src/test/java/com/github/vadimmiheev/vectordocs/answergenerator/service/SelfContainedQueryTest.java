@@ -0,0 +1,25 @@
+package com.github.vadimmiheev.vectordocs.answergenerator.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SelfContainedQueryTest {
+
+    @Test
+    void shouldAcceptQuestionsThatStandOnTheirOwn() {
+        assertThat(SelfContainedQuery.isSelfContained("What is the warranty period for the XR-200 pressure sensor?")).isTrue();
+        assertThat(SelfContainedQuery.isSelfContained("How do I reset the router admin password")).isTrue();
+        assertThat(SelfContainedQuery.isSelfContained("Какой гарантийный срок датчика давления XR-200?")).isTrue();
+    }
+
+    @Test
+    void shouldRejectFollowUpsThatNeedTheConversation() {
+        assertThat(SelfContainedQuery.isSelfContained("What about the second model?")).isFalse();
+        assertThat(SelfContainedQuery.isSelfContained("How long is its warranty period in Europe?")).isFalse();
+        assertThat(SelfContainedQuery.isSelfContained("And for the premium subscription plan tiers?")).isFalse();
+        assertThat(SelfContainedQuery.isSelfContained("Why?")).isFalse();
+        assertThat(SelfContainedQuery.isSelfContained("current question")).isFalse();
+        assertThat(SelfContainedQuery.isSelfContained("А что насчёт второй модели?")).isFalse();
+    }
+}
@@ -0,0 +1,152 @@
+package com.github.vadimmiheev.vectordocs.answergenerator.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscription;
+import reactor.core.Disposable;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TokenCoalescerTest {
+
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    void shouldForwardFirstTokenThenMergeUpToMaxChars() {
+        // Given
+        TokenCoalescer coalescer = new TokenCoalescer(meterRegistry, true, Duration.ofSeconds(10), 6, Schedulers.parallel());
+
+        // When
+        List<String> chunks = coalescer.coalesce(Flux.just("Hi", " th", "ere", ", how", " are", " you", "?"))
+                .collectList().block();
+
+        // Then
+        assertThat(chunks).containsExactly("Hi", " there", ", how are", " you?");
+        assertThat(String.join("", chunks)).isEqualTo("Hi there, how are you?");
+        assertThat(meterRegistry.counter("answer.stream.tokens").count()).isEqualTo(7.0);
+        assertThat(meterRegistry.counter("answer.stream.chunks").count()).isEqualTo(4.0);
+    }
+
+    @Test
+    void shouldFlushAfterMaxDelayWhileStreamIsStillOpen() {
+        // Given
+        TokenCoalescer coalescer = new TokenCoalescer(meterRegistry, true, Duration.ofMillis(20), 1000, Schedulers.parallel());
+        Flux<String> stalled = Flux.just("a", "b", "c").concatWith(Flux.never());
+
+        // When
+        List<String> chunks = coalescer.coalesce(stalled).take(2).collectList().block(Duration.ofSeconds(5));
+
+        // Then
+        assertThat(chunks).containsExactly("a", "bc");
+    }
+
+    @Test
+    void shouldFlushBufferedTextBeforeError() {
+        // Given
+        TokenCoalescer coalescer = new TokenCoalescer(meterRegistry, true, Duration.ofSeconds(10), 100, Schedulers.parallel());
+        List<String> received = new ArrayList<>();
+        Flux<String> failing = Flux.just("a", "b").concatWith(Flux.error(new IllegalStateException("boom")));
+
+        // When / Then
+        assertThatThrownBy(() -> coalescer.coalesce(failing).doOnNext(received::add).blockLast())
+                .hasMessageContaining("boom");
+        assertThat(received).containsExactly("a", "b");
+    }
+
+    @Test
+    void shouldStopPullingTokensWhenDownstreamIsSlow() {
+        // Given - downstream takes a single chunk, the source buffers at most 2
+        TokenCoalescer coalescer = new TokenCoalescer(meterRegistry, true, Duration.ofSeconds(10), 4, Schedulers.parallel());
+        AnswerStream source = new AnswerStream("req-1", 2, AnswerStream.Overflow.CANCEL, meterRegistry);
+        List<String> received = new ArrayList<>();
+        coalescer.coalesce(source.asFlux()).subscribe(new BaseSubscriber<>() {
+            @Override
+            protected void hookOnSubscribe(Subscription subscription) {
+                request(1);
+            }
+
+            @Override
+            protected void hookOnNext(String value) {
+                received.add(value);
+            }
+        });
+
+        // When - "a" goes out, "bcde" fills the chunk, "f" and "g" wait in the source
+        for (String token : List.of("a", "b", "c", "d", "e", "f", "g")) {
+            assertThat(source.offer(token)).isTrue();
+        }
+
+        // Then - the next token overflows the source instead of piling up in the coalescer
+        assertThat(source.offer("h")).isFalse();
+        assertThat(received).containsExactly("a");
+    }
+
+    @Test
+    void shouldCancelPendingFlushWhenDisposedMidChunk() {
+        // Given - a scheduler that keeps the flush timers it hands out
+        Scheduler parallel = Schedulers.parallel();
+        List<Disposable> timers = new CopyOnWriteArrayList<>();
+        Scheduler recording = new Scheduler() {
+            @Override
+            public Disposable schedule(Runnable task) {
+                return parallel.schedule(task);
+            }
+
+            @Override
+            public Disposable schedule(Runnable task, long delay, TimeUnit unit) {
+                Disposable timer = parallel.schedule(task, delay, unit);
+                timers.add(timer);
+                return timer;
+            }
+
+            @Override
+            public Worker createWorker() {
+                return parallel.createWorker();
+            }
+        };
+        TokenCoalescer coalescer = new TokenCoalescer(meterRegistry, true, Duration.ofSeconds(10), 100, recording);
+        AtomicBoolean sourceCancelled = new AtomicBoolean();
+        Flux<String> open = Flux.just("a", "b").concatWith(Flux.never()).doOnCancel(() -> sourceCancelled.set(true));
+        List<String> received = new CopyOnWriteArrayList<>();
+        Disposable subscription = coalescer.coalesce(open).subscribe(received::add);
+
+        // When - "a" went out, "b" waits for its flush timer
+        subscription.dispose();
+
+        // Then
+        assertThat(received).containsExactly("a");
+        assertThat(timers).hasSize(1);
+        assertThat(timers.getFirst().isDisposed()).isTrue();
+        assertThat(sourceCancelled).isTrue();
+    }
+
+    @Test
+    void shouldPassTokensThroughWhenDisabled() {
+        // Given
+        TokenCoalescer coalescer = new TokenCoalescer(meterRegistry, false, Duration.ofSeconds(10), 64, Schedulers.parallel());
+
+        // When
+        List<String> chunks = coalescer.coalesce(Flux.just("a", "b", "c")).collectList().block();
+
+        // Then
+        assertThat(chunks).containsExactly("a", "b", "c");
+    }
+}
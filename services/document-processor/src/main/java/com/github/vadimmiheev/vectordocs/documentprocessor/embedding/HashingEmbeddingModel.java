@@ -0,0 +1,108 @@
+package com.github.vadimmiheev.vectordocs.documentprocessor.embedding;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Deterministic local embedding model for offline load tests: words, word bigrams and character trigrams are hashed
+ * into a signed bag of features and L2-normalised. Texts sharing words end up close in cosine space, so searches
+ * still return plausible hits, but there is no semantic understanding.
+ * <p>
+ * The optional artificial latency stands in for the round trip to a real embedding endpoint.
+ */
+public class HashingEmbeddingModel implements EmbeddingModel {
+
+    private static final Pattern WORD = Pattern.compile("[\\p{L}\\p{N}]+");
+
+    private final int dimension;
+    private final long latencyMs;
+
+    public HashingEmbeddingModel(int dimension, long latencyMs) {
+        this.dimension = dimension;
+        this.latencyMs = latencyMs;
+    }
+
+    @Override
+    public Response<List<Embedding>> embedAll(List<TextSegment> textSegments) {
+        simulateLatency();
+        List<Embedding> embeddings = new ArrayList<>(textSegments.size());
+        for (TextSegment segment : textSegments) {
+            embeddings.add(Embedding.from(vector(segment.text())));
+        }
+        return Response.from(embeddings);
+    }
+
+    @Override
+    public int dimension() {
+        return dimension;
+    }
+
+    float[] vector(String text) {
+        float[] vector = new float[dimension];
+        List<String> words = new ArrayList<>();
+        Matcher matcher = WORD.matcher(text == null ? "" : text.toLowerCase(Locale.ROOT));
+        while (matcher.find()) {
+            words.add(matcher.group());
+        }
+
+        for (int i = 0; i < words.size(); i++) {
+            String word = words.get(i);
+            add(vector, "w:" + word, 1f);
+            if (i > 0) {
+                add(vector, "b:" + words.get(i - 1) + ' ' + word, 0.7f);
+            }
+            String padded = '#' + word + '#';
+            for (int j = 0; j + 3 <= padded.length(); j++) {
+                add(vector, "c:" + padded.substring(j, j + 3), 0.3f);
+            }
+        }
+
+        double sum = 0;
+        for (float v : vector) {
+            sum += v * v;
+        }
+        if (sum > 0) {
+            float norm = (float) Math.sqrt(sum);
+            for (int i = 0; i < dimension; i++) {
+                vector[i] /= norm;
+            }
+        }
+        return vector;
+    }
+
+    // the hash picks the dimension and the sign, so unrelated features cancel out instead of piling up
+    private void add(float[] vector, String feature, float weight) {
+        long hash = fnv1a(feature);
+        int index = (int) Math.floorMod(hash, (long) dimension);
+        vector[index] += (hash >>> 63) == 0 ? weight : -weight;
+    }
+
+    private static long fnv1a(String feature) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : feature.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private void simulateLatency() {
+        if (latencyMs <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(latencyMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
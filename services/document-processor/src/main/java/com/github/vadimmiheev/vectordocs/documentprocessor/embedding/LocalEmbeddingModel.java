@@ -0,0 +1,40 @@
+package com.github.vadimmiheev.vectordocs.documentprocessor.embedding;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+
+import java.util.List;
+
+/**
+ * Runs an in-process embedding model (ONNX) without the HTTP hop. An optional prefix is prepended to every text,
+ * for models trained with task prefixes.
+ * <p>
+ * No thread pool of its own: {@code OnnxEmbeddingModel} already embeds the texts of a call in parallel on a pool
+ * sized to the cores and ONNX Runtime parallelizes every inference over its intra-op threads, one more pool on top
+ * would only oversubscribe the CPU.
+ */
+public class LocalEmbeddingModel implements EmbeddingModel {
+
+    private final EmbeddingModel delegate;
+    private final String textPrefix;
+
+    public LocalEmbeddingModel(EmbeddingModel delegate, String textPrefix) {
+        this.delegate = delegate;
+        this.textPrefix = textPrefix == null ? "" : textPrefix;
+    }
+
+    @Override
+    public Response<List<Embedding>> embedAll(List<TextSegment> textSegments) {
+        List<TextSegment> prefixed = textPrefix.isEmpty()
+                ? textSegments
+                : textSegments.stream().map(s -> TextSegment.from(textPrefix + s.text(), s.metadata())).toList();
+        return Response.from(delegate.embedAll(prefixed).content());
+    }
+
+    @Override
+    public int dimension() {
+        return delegate.dimension();
+    }
+}
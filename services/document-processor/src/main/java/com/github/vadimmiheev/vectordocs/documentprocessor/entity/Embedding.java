@@ -4,6 +4,7 @@ import jakarta.persistence.*;
 import lombok.*;
 import org.hibernate.annotations.Array;
 import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.annotations.PartitionKey;
 import org.hibernate.type.SqlTypes;
 
 import java.time.Instant;
@@ -25,6 +26,8 @@ import java.util.UUID;
 @AllArgsConstructor
 public class Embedding {
 
+    // the table is hash partitioned by user_id and its primary key is (id, user_id); id alone is unique only because
+    // it always comes from the identity sequence (V5), the database does not enforce it
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -56,6 +59,8 @@ public class Embedding {
     @Column(name = "created_at", nullable = false)
     private Instant createdAt;
 
+    // added to the WHERE clause of entity updates and deletes, so they touch a single partition
+    @PartitionKey
     @Column(name = "user_id", nullable = false)
     private String userId;
 }
@@ -11,7 +11,7 @@ import dev.langchain4j.data.document.Document;
 import dev.langchain4j.data.document.DocumentSplitter;
 import dev.langchain4j.data.document.splitter.DocumentSplitters;
 import dev.langchain4j.data.segment.TextSegment;
-import dev.langchain4j.model.openai.OpenAiEmbeddingModel;
+import dev.langchain4j.model.embedding.EmbeddingModel;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.jetbrains.annotations.NotNull;
@@ -32,7 +32,7 @@ import java.util.concurrent.locks.ReentrantLock;
 @Slf4j
 public class EmbeddingService {
 
-    private final OpenAiEmbeddingModel embeddingModel;
+    private final EmbeddingModel embeddingModel;
     private final EmbeddingRepository embeddingRepository;
     private final ApplicationEventPublisher publisher;
     private final KafkaTemplate<String, String> kafkaTemplate;
@@ -0,0 +1,54 @@
+package com.github.vadimmiheev.vectordocs.documentprocessor.embedding;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.output.Response;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LocalEmbeddingModelTest {
+
+    private final HashingEmbeddingModel hashing = new HashingEmbeddingModel(768, 0);
+
+    @Test
+    void shouldHandAllTextsToModelInOneCallAndKeepOrder() {
+        // Given - the ONNX model parallelizes a call itself
+        List<Integer> callSizes = new CopyOnWriteArrayList<>();
+        HashingEmbeddingModel recording = new HashingEmbeddingModel(768, 0) {
+            @Override
+            public Response<List<Embedding>> embedAll(List<TextSegment> textSegments) {
+                callSizes.add(textSegments.size());
+                return super.embedAll(textSegments);
+            }
+        };
+        List<TextSegment> segments = IntStream.range(0, 10).mapToObj(i -> TextSegment.from("chunk number " + i)).toList();
+
+        // When
+        List<Embedding> embeddings = new LocalEmbeddingModel(recording, "").embedAll(segments).content();
+
+        // Then
+        assertThat(callSizes).containsExactly(10);
+        assertThat(embeddings).hasSize(10);
+        for (int i = 0; i < 10; i++) {
+            assertThat(embeddings.get(i).vector()).containsExactly(hashing.embed("chunk number " + i).content().vector());
+        }
+    }
+
+    @Test
+    void shouldPrependTextPrefix() {
+        // Given
+        LocalEmbeddingModel model = new LocalEmbeddingModel(hashing, "search_query: ");
+
+        // When
+        float[] vector = model.embed("reset the sensor").content().vector();
+
+        // Then
+        assertThat(vector).containsExactly(hashing.embed("search_query: reset the sensor").content().vector());
+        assertThat(model.dimension()).isEqualTo(768);
+    }
+}
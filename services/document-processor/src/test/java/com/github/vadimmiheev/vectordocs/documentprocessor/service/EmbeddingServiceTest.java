@@ -8,7 +8,7 @@ import com.github.vadimmiheev.vectordocs.documentprocessor.event.EmbeddingsGener
 import com.github.vadimmiheev.vectordocs.documentprocessor.repository.EmbeddingRepository;
 import com.github.vadimmiheev.vectordocs.documentprocessor.util.DocumentsStatusStore;
 import dev.langchain4j.data.segment.TextSegment;
-import dev.langchain4j.model.openai.OpenAiEmbeddingModel;
+import dev.langchain4j.model.embedding.EmbeddingModel;
 import dev.langchain4j.model.output.Response;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -32,7 +32,7 @@ import static org.mockito.Mockito.*;
 class EmbeddingServiceTest {
 
     @Mock
-    private OpenAiEmbeddingModel embeddingModel;
+    private EmbeddingModel embeddingModel;
 
     @Mock
     private EmbeddingRepository embeddingRepository;
@@ -4,6 +4,9 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.vadimmiheev.vectordocs.notificationservice.util.SourcesParser;
 import com.github.vadimmiheev.vectordocs.notificationservice.ws.NotificationSessionRegistry;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import io.micrometer.observation.transport.ReceiverContext;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.messaging.handler.annotation.Header;
@@ -21,6 +24,7 @@ public class AnswerStreamController {
 
     private final NotificationSessionRegistry sessionRegistry;
     private final ObjectMapper objectMapper;
+    private final ObservationRegistry observationRegistry;
 
     @MessageMapping("search.result")
     public Flux<Void> searchResultsHandler(Flux<String> tokens, @Header(name = "metadata", required = false) Map<String, Object> metadata) {
@@ -35,30 +39,30 @@ public class AnswerStreamController {
             return Flux.empty();
         }
         String requestId = requestIdObj.toString();
+        Observation delivery = deliveryObservation(metadata, requestId);
 
         return tokens
-                .doOnNext((t) -> {
+                .doOnSubscribe(s -> delivery.start())
+                .<Void>handle((t, sink) -> {
                     t = SourcesParser.processNextToken(requestId, t);
-
-                    Map<String, Object> payload = Map.of(
-                            "event", "chat.response",
-                            "requestId", requestId,
-                            "token", t
-                    );
-
-                    if (SourcesParser.isSourcesReady(requestId)) {
-                        HashMap<String, Object> temp = new HashMap<>(payload);
-                        temp.put("sources", SourcesParser.getSources(requestId));
-                        payload = temp;
+                    boolean sourcesReady = SourcesParser.isSourcesReady(requestId);
+                    // the parser is holding the chunk back (sources block in progress), nothing to show yet
+                    if (t.isEmpty() && !sourcesReady) {
+                        return;
                     }
-
-                    try {
-                        sessionRegistry.sendToUser(userId, objectMapper.writeValueAsString(payload));
-                    } catch (JsonProcessingException e) {
-                        throw new RuntimeException(e);
+                    if (sendToken(userId, requestId, t, sourcesReady) == 0) {
+                        // no session left to show the answer: completing here cancels the channel, and with it the
+                        // answer stream in answer-generator
+                        log.info("No WS sessions left for userId={}, cancelling answer stream requestId={}", userId, requestId);
+                        sink.complete();
                     }
                 })
                 .doOnComplete(() -> {
+                    String rest = SourcesParser.finish(requestId);
+                    if (!rest.isEmpty()) {
+                        sendToken(userId, requestId, rest, false);
+                    }
+
                     Map<String, Object> payload = Map.of(
                             "event", "chat.response",
                             "requestId", requestId,
@@ -71,7 +75,47 @@ public class AnswerStreamController {
                         log.error("Failed to send chat.response.complete message for userId={}", userId, e);
                     }
                 })
+                .doOnError(delivery::error)
+                .doFinally(signal -> {
+                    SourcesParser.finish(requestId);
+                    delivery.stop();
+                })
                 .then()
                 .flux();
     }
+
+    // WebSocket delivery span, continuing the trace from the traceparent answer-generator put into the metadata
+    private Observation deliveryObservation(Map<String, Object> metadata, String requestId) {
+        ReceiverContext<Map<String, Object>> context = new ReceiverContext<>((carrier, key) -> {
+            Object value = carrier.get(key);
+            return value == null ? null : value.toString();
+        });
+        context.setCarrier(metadata);
+        context.setRemoteServiceName("answer-generator");
+        return Observation.createNotStarted("answer.ws.delivery", () -> context, observationRegistry)
+                .highCardinalityKeyValue("request.id", requestId);
+    }
+
+    /**
+     * @return number of sessions the token was sent to
+     */
+    private int sendToken(String userId, String requestId, String token, boolean withSources) {
+        Map<String, Object> payload = Map.of(
+                "event", "chat.response",
+                "requestId", requestId,
+                "token", token
+        );
+
+        if (withSources) {
+            HashMap<String, Object> temp = new HashMap<>(payload);
+            temp.put("sources", SourcesParser.getSources(requestId));
+            payload = temp;
+        }
+
+        try {
+            return sessionRegistry.sendToUser(userId, objectMapper.writeValueAsString(payload));
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException(e);
+        }
+    }
 }
@@ -48,6 +48,14 @@ public class SourcesParser {
         return sourcesList;
     }
 
+    /**
+     * Ends the request: returns text still held back by the parser and forgets the request.
+     */
+    public static String finish(String requestId) {
+        RequestMeta meta = REQUESTS_META.remove(requestId);
+        return meta == null ? "" : meta.drain();
+    }
+
     /**
      * Clears all stored request metadata. For testing purposes only.
      */
@@ -64,41 +72,41 @@ public class SourcesParser {
         private String sources = "";
 
 
+        // chunks can hold any part of the tags, including both of them, so the buffered tail is re-scanned as a whole
         public String processToken(String token) {
-            String bufferValue = buffer.toString();
-            if (bufferValue.isEmpty()) {
-                if (token.contains("<")) {
-                    String tagPart = token.substring(token.indexOf("<"));
-                    if (BEGIN_TAG.contains(tagPart) || tagPart.contains(BEGIN_TAG)) {
-                        buffer.append(tagPart);
-                        return token.substring(0, token.indexOf("<"));
-                    }
-                }
-                return token;
-            } else {
-                String result = bufferValue + token;
-                if (BEGIN_TAG.contains(result)) {
-                    buffer.append(token);
-                    return "";
-                } else if (result.contains(BEGIN_TAG)) {
-                    String beforeTags = "";
-                    if (result.indexOf(BEGIN_TAG) > 0) {
-                        result = result.substring(result.indexOf(BEGIN_TAG));
-                        beforeTags = result.substring(0, result.indexOf(BEGIN_TAG));
-                    }
-                    if (result.contains(END_TAG)) {
-                        buffer = new StringBuffer();
-                        String afterTags = extractSources(result);
-                        return beforeTags + afterTags;
-                    }
-
-                    buffer = new StringBuffer(result);
-                    return beforeTags;
-                } else {
+            String pending = buffer + token;
+            int beginIndex = pending.indexOf(BEGIN_TAG);
+            if (beginIndex >= 0) {
+                if (pending.indexOf(END_TAG, beginIndex) >= 0) {
                     buffer = new StringBuffer();
-                    return result;
+                    return extractSources(pending);
+                }
+                buffer = new StringBuffer(pending.substring(beginIndex));
+                return pending.substring(0, beginIndex);
+            }
+
+            // hold back a trailing piece that may turn out to be the start of BEGIN_TAG
+            int partial = partialTagStart(pending);
+            buffer = new StringBuffer(pending.substring(partial));
+            return pending.substring(0, partial);
+        }
+
+        /**
+         * Returns text held back as a possible tag start; an unterminated sources block is dropped.
+         */
+        public String drain() {
+            String rest = buffer.toString();
+            buffer = new StringBuffer();
+            return rest.startsWith(BEGIN_TAG) ? "" : rest;
+        }
+
+        private static int partialTagStart(String text) {
+            for (int i = Math.max(0, text.length() - BEGIN_TAG.length() + 1); i < text.length(); i++) {
+                if (text.charAt(i) == '<' && BEGIN_TAG.startsWith(text.substring(i))) {
+                    return i;
                 }
             }
+            return text.length();
         }
 
         private String extractSources(String text) {
@@ -1,6 +1,7 @@
 package com.github.vadimmiheev.vectordocs.notificationservice.config;
 
 import com.github.vadimmiheev.vectordocs.notificationservice.ws.NotificationsWebSocketHandler;
+import io.micrometer.observation.ObservationRegistry;
 import org.springframework.boot.test.context.TestConfiguration;
 import org.springframework.context.annotation.Bean;
 import org.springframework.web.reactive.handler.SimpleUrlHandlerMapping;
@@ -26,4 +27,10 @@ public class TestWebSocketConfig {
     public WebSocketHandlerAdapter handlerAdapter() {
         return new WebSocketHandlerAdapter();
     }
+
+    // the WebFlux slice does not auto-configure observations, AnswerStreamController needs a registry
+    @Bean
+    public ObservationRegistry observationRegistry() {
+        return ObservationRegistry.NOOP;
+    }
 }
\ No newline at end of file
@@ -3,17 +3,27 @@ package com.github.vadimmiheev.vectordocs.notificationservice.controller;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.vadimmiheev.vectordocs.notificationservice.ws.NotificationSessionRegistry;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationHandler;
+import io.micrometer.observation.ObservationRegistry;
+import io.micrometer.observation.transport.ReceiverContext;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import reactor.core.publisher.Flux;
 import reactor.test.StepVerifier;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
@@ -31,7 +41,7 @@ class AnswerStreamControllerTest {
 
     @BeforeEach
     void setUp() {
-        controller = new AnswerStreamController(sessionRegistry, objectMapper);
+        controller = new AnswerStreamController(sessionRegistry, objectMapper, ObservationRegistry.NOOP);
     }
 
     @Test
@@ -184,4 +194,93 @@ class AnswerStreamControllerTest {
         verify(objectMapper, never()).writeValueAsString(any(Map.class));
         verify(sessionRegistry, never()).sendToUser(anyString(), anyString());
     }
-}
\ No newline at end of file
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void searchResultsHandler_withCoalescedChunks_shouldSkipHeldBackChunksAndAttachSources() throws JsonProcessingException {
+        // Given
+        Map<String, Object> metadata = new HashMap<>();
+        metadata.put("userId", "user123");
+        metadata.put("requestId", "req-coalesced");
+
+        Flux<String> tokens = Flux.just("The answer.\n<BEGIN_SOURCES>\nfile123/doc", ".pdf/1\n<END_SOURCES>");
+
+        when(objectMapper.writeValueAsString(any(Map.class))).thenReturn("{}");
+        when(sessionRegistry.sendToUser(eq("user123"), anyString())).thenReturn(1);
+
+        // When
+        StepVerifier.create(controller.searchResultsHandler(tokens, metadata))
+                .verifyComplete();
+
+        // Then - text, sources, complete; nothing for the chunk held back mid-block
+        ArgumentCaptor<Map<String, Object>> payloads = ArgumentCaptor.forClass(Map.class);
+        verify(objectMapper, times(3)).writeValueAsString(payloads.capture());
+        assertEquals("The answer.\n", payloads.getAllValues().get(0).get("token"));
+        assertEquals(1, ((List<?>) payloads.getAllValues().get(1).get("sources")).size());
+        assertEquals(true, payloads.getAllValues().get(2).get("complete"));
+    }
+
+    @Test
+    void searchResultsHandler_whenUserHasNoSessions_shouldCancelTokenStream() throws JsonProcessingException {
+        // Given
+        Map<String, Object> metadata = new HashMap<>();
+        metadata.put("userId", "user123");
+        metadata.put("requestId", "req-gone");
+
+        AtomicBoolean cancelled = new AtomicBoolean();
+        Flux<String> tokens = Flux.just("Hello", " ", "world").doOnCancel(() -> cancelled.set(true));
+
+        when(objectMapper.writeValueAsString(any(Map.class))).thenReturn("{}");
+        when(sessionRegistry.sendToUser(eq("user123"), anyString())).thenReturn(0);
+
+        // When
+        StepVerifier.create(controller.searchResultsHandler(tokens, metadata))
+                .verifyComplete();
+
+        // Then - the first token found nobody, the rest of the answer is not pulled
+        assertTrue(cancelled.get());
+        verify(sessionRegistry, times(2)).sendToUser(eq("user123"), anyString()); // first token + complete
+    }
+
+    @Test
+    void searchResultsHandler_shouldContinueTraceFromMetadata() throws JsonProcessingException {
+        // Given - a tracing handler stand-in that reads the traceparent like the OpenTelemetry propagator does
+        String traceparent = "00-0af7651916cd43dd8448eb211c80319c-b7ad6b7169203331-01";
+        AtomicReference<String> extracted = new AtomicReference<>();
+        AtomicBoolean stopped = new AtomicBoolean();
+        ObservationRegistry observationRegistry = ObservationRegistry.create();
+        observationRegistry.observationConfig().observationHandler(new ObservationHandler<ReceiverContext<Object>>() {
+            @Override
+            public void onStart(ReceiverContext<Object> context) {
+                extracted.set(context.getGetter().get(context.getCarrier(), "traceparent"));
+            }
+
+            @Override
+            public void onStop(ReceiverContext<Object> context) {
+                stopped.set(true);
+            }
+
+            @Override
+            public boolean supportsContext(Observation.Context context) {
+                return context instanceof ReceiverContext;
+            }
+        });
+        controller = new AnswerStreamController(sessionRegistry, objectMapper, observationRegistry);
+
+        Map<String, Object> metadata = new HashMap<>();
+        metadata.put("userId", "user123");
+        metadata.put("requestId", "req-traced");
+        metadata.put("traceparent", traceparent);
+
+        when(objectMapper.writeValueAsString(any(Map.class))).thenReturn("{}");
+        when(sessionRegistry.sendToUser(eq("user123"), anyString())).thenReturn(1);
+
+        // When
+        StepVerifier.create(controller.searchResultsHandler(Flux.just("Hello"), metadata))
+                .verifyComplete();
+
+        // Then
+        assertEquals(traceparent, extracted.get());
+        assertTrue(stopped.get());
+    }
+}
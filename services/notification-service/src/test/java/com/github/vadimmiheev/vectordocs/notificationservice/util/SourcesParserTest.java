@@ -215,4 +215,49 @@ class SourcesParserTest {
         // Then
         assertTrue(ready);
     }
-}
\ No newline at end of file
+
+    @Test
+    void processNextToken_withWholeSourcesBlockInOneChunk_shouldExtractSources() {
+        // Given
+        String requestId = "single-chunk-request";
+        String chunk = "Answer text.\n<BEGIN_SOURCES>\nfile123/doc.pdf/1\nfile456/report.docx/3\n<END_SOURCES>\nThanks";
+
+        // When
+        String result = SourcesParser.processNextToken(requestId, chunk);
+
+        // Then
+        assertEquals("Answer text.\n\nThanks", result);
+        assertTrue(SourcesParser.isSourcesReady(requestId));
+        assertEquals(2, SourcesParser.getSources(requestId).size());
+    }
+
+    @Test
+    void processNextToken_withComparisonBeforeTag_shouldKeepText() {
+        // Given
+        String requestId = "less-than-request";
+
+        // When
+        String result1 = SourcesParser.processNextToken(requestId, "a < b and c <BEGIN_SOUR");
+        String result2 = SourcesParser.processNextToken(requestId, "CES>file123/doc.pdf/1<END_SOURCES>");
+
+        // Then
+        assertEquals("a < b and c ", result1);
+        assertEquals("", result2);
+        assertTrue(SourcesParser.isSourcesReady(requestId));
+    }
+
+    @Test
+    void finish_withHeldBackPartialTag_shouldReturnIt() {
+        // Given
+        String requestId = "finish-request";
+        String result = SourcesParser.processNextToken(requestId, "x <");
+
+        // When
+        String rest = SourcesParser.finish(requestId);
+
+        // Then
+        assertEquals("x ", result);
+        assertEquals("<", rest);
+        assertFalse(SourcesParser.isSourcesReady(requestId));
+    }
+}
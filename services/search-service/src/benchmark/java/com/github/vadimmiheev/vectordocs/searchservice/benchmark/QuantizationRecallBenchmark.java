@@ -0,0 +1,115 @@
+package com.github.vadimmiheev.vectordocs.searchservice.benchmark;
+
+import com.github.vadimmiheev.vectordocs.searchservice.SearchServiceApplication;
+import com.github.vadimmiheev.vectordocs.searchservice.entity.Embedding;
+import com.github.vadimmiheev.vectordocs.searchservice.repository.EmbeddingRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Measures recall@k of the quantized search modes against exact search on the corpus of the configured database and
+ * reports the storage they need. Sample rows of the corpus are used as queries; only read queries are run.
+ * Started with the search-service context (without the web server and the Kafka listeners), e.g.
+ * {@code ./gradlew quantizationBenchmark -Pbenchmark.quantization.queries=200}, the report is written to the log.
+ */
+public class QuantizationRecallBenchmark implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(QuantizationRecallBenchmark.class);
+
+    private final EmbeddingRepository embeddingRepository;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${benchmark.quantization.queries:100}")
+    private int queries;
+
+    @Value("${app.search.top-k:5}")
+    private int topK;
+
+    @Value("${benchmark.quantization.candidates:10,20,50,100}")
+    private int[] candidateCounts;
+
+    public QuantizationRecallBenchmark(EmbeddingRepository embeddingRepository, JdbcTemplate jdbcTemplate) {
+        this.embeddingRepository = embeddingRepository;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public static void main(String[] args) {
+        new SpringApplicationBuilder(SearchServiceApplication.class, QuantizationRecallBenchmark.class)
+                .web(WebApplicationType.NONE)
+                .properties("spring.kafka.listener.auto-startup=false")
+                .run(args)
+                .close();
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        List<Embedding> sample = embeddingRepository.findRandomVectorized(Limit.of(queries));
+        if (sample.isEmpty()) {
+            log.warn("Quantization benchmark skipped: no vectorized embeddings");
+            return;
+        }
+
+        StringBuilder report = new StringBuilder("\nQuantization benchmark: ")
+                .append(sample.size()).append(" queries, top-").append(topK).append('\n')
+                .append(String.format("%-10s %10s %10s %12s%n", "mode", "candidates", "recall", "avg ms"));
+
+        for (int candidates : candidateCounts) {
+            report.append(measure(sample, "binary", candidates, (q) ->
+                    embeddingRepository.findTopSimilarBinary(q.getUserId(), Arrays.toString(q.getVector()), candidates, Limit.of(topK))));
+            report.append(measure(sample, "halfvec", candidates, (q) ->
+                    embeddingRepository.findTopSimilarHalf(q.getUserId(), Arrays.toString(q.getVector()), candidates, Limit.of(topK))));
+        }
+
+        report.append("\nStorage:\n");
+        Map<String, Object> columns = jdbcTemplate.queryForMap(
+                "SELECT avg(pg_column_size(vector)) AS vector_bytes, avg(pg_column_size(vector_bits)) AS bits_bytes, " +
+                "pg_relation_size('embeddings') AS heap_bytes, " +
+                "pg_total_relation_size('embeddings') - pg_relation_size('embeddings') - pg_indexes_size('embeddings') AS toast_bytes " +
+                "FROM embeddings");
+        columns.forEach((name, value) -> report.append(String.format("%-28s %s%n", name, value)));
+        jdbcTemplate.queryForList(
+                "SELECT indexrelname AS index_name, pg_relation_size(indexrelid) AS bytes " +
+                "FROM pg_stat_user_indexes WHERE relname = 'embeddings' ORDER BY indexrelname")
+                .forEach(row -> report.append(String.format("%-28s %s%n", row.get("index_name"), row.get("bytes"))));
+
+        log.info(report.toString());
+    }
+
+    private String measure(List<Embedding> sample, String mode, int candidates, Function<Embedding, List<Embedding>> quantizedSearch) {
+        double recallSum = 0;
+        long nanos = 0;
+        for (Embedding query : sample) {
+            Set<Long> exact = ids(embeddingRepository.findTopSimilar(query.getUserId(), Arrays.toString(query.getVector()), Limit.of(topK)));
+
+            long started = System.nanoTime();
+            Set<Long> approximate = ids(quantizedSearch.apply(query));
+            nanos += System.nanoTime() - started;
+
+            if (!exact.isEmpty()) {
+                approximate.retainAll(exact);
+                recallSum += (double) approximate.size() / exact.size();
+            }
+        }
+        return String.format("%-10s %10d %10.3f %12.2f%n", mode, candidates, recallSum / sample.size(), nanos / 1e6 / sample.size());
+    }
+
+    private Set<Long> ids(List<Embedding> hits) {
+        Set<Long> ids = new HashSet<>();
+        hits.forEach(e -> ids.add(e.getId()));
+        return ids;
+    }
+}
@@ -0,0 +1,404 @@
+package com.github.vadimmiheev.vectordocs.searchservice.benchmark;
+
+import com.github.vadimmiheev.vectordocs.searchservice.similarity.ScoredRow;
+import com.github.vadimmiheev.vectordocs.searchservice.similarity.SimilarityKernel;
+import com.github.vadimmiheev.vectordocs.searchservice.similarity.SimilarityKernels;
+import com.github.vadimmiheev.vectordocs.searchservice.similarity.TopKSelector;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.utility.DockerImageName;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Offline retrieval benchmark: applies the Flyway migrations to a throwaway pgvector (Testcontainers) or to
+ * {@code benchmark.jdbcUrl}, loads a synthetic clustered corpus, and runs the {@code findTopSimilar} query for
+ * noisy copies of known chunks. Ground truth is the exact top-k computed in the JVM.
+ * <p>
+ * Everything is created in a scratch schema ({@code benchmark.schema}, dropped and recreated on every run), so
+ * pointing {@code benchmark.jdbcUrl} at a shared database never touches the application's {@code public.embeddings}.
+ * <p>
+ * Reports recall@k, MRR of the source chunk, p50/p95/p99 latency and QPS per concurrency level.
+ * All settings are {@code benchmark.*} system properties, see {@link Settings}.
+ */
+public final class RetrievalBenchmark {
+
+    private static final Logger log = LoggerFactory.getLogger(RetrievalBenchmark.class);
+
+    private static final int DIMENSION = 768;
+
+    // same statement as EmbeddingRepository.findTopSimilar, Limit rendered as LIMIT
+    private static final String FIND_TOP_SIMILAR = "SELECT * FROM %s.embeddings e " +
+            "WHERE (e.user_id = ?) " +
+            "ORDER BY e.vector <=> CAST(? AS vector) LIMIT ?";
+
+    private final Settings settings;
+    private final SimilarityKernel kernel = SimilarityKernels.best();
+
+    private RetrievalBenchmark(Settings settings) {
+        this.settings = settings;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Settings settings = Settings.fromSystemProperties();
+        if (!settings.schema().matches("[a-z_][a-z0-9_]*") || settings.schema().equals("public")) {
+            throw new IllegalArgumentException("benchmark.schema must be a dedicated scratch schema, got: " + settings.schema());
+        }
+        if (settings.jdbcUrl() != null) {
+            new RetrievalBenchmark(settings).run(settings.jdbcUrl(), settings.user(), settings.password());
+            return;
+        }
+
+        try (PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>(
+                DockerImageName.parse("pgvector/pgvector:pg17").asCompatibleSubstituteFor("postgres"))) {
+            postgres.start();
+            new RetrievalBenchmark(settings).run(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword());
+        }
+    }
+
+    private void run(String url, String user, String password) throws Exception {
+        log.info("Benchmark settings: {}", settings);
+        Corpus corpus = Corpus.generate(settings);
+
+        try (Connection connection = DriverManager.getConnection(url, user, password)) {
+            migrate(connection);
+            load(connection, corpus);
+            configureIndex(connection);
+        }
+
+        List<Query> queries = corpus.queries(settings, kernel);
+        System.out.printf("%nindex=%s corpus=%d users=%d queries=%d k=%d%n",
+                settings.indexDescription(), corpus.size(), settings.users(), queries.size(), settings.k());
+        System.out.printf("%-12s %10s %8s %10s %10s %10s %10s%n", "concurrency", "recall@k", "MRR", "p50 ms", "p95 ms", "p99 ms", "QPS");
+        for (int concurrency : settings.concurrency()) {
+            Result result = measure(url, user, password, queries, concurrency);
+            System.out.printf("%-12d %10.4f %8.4f %10.2f %10.2f %10.2f %10.1f%n", concurrency,
+                    result.recall(), result.mrr(), result.percentileMs(0.50), result.percentileMs(0.95),
+                    result.percentileMs(0.99), result.qps());
+        }
+    }
+
+    private void migrate(Connection connection) throws IOException, SQLException {
+        Path dir = Path.of(settings.migrations());
+        List<Path> scripts;
+        try (Stream<Path> files = Files.list(dir)) {
+            scripts = files.filter(p -> p.getFileName().toString().matches("V\\d+__.*\\.sql"))
+                    .sorted((a, b) -> Integer.compare(version(a), version(b)))
+                    .toList();
+        }
+        String schema = settings.schema();
+        try (Statement statement = connection.createStatement()) {
+            // pgvector in public before search_path changes, so the benchmark connections find it too
+            statement.execute("CREATE EXTENSION IF NOT EXISTS vector");
+            statement.execute("DROP SCHEMA IF EXISTS " + schema + " CASCADE");
+            statement.execute("CREATE SCHEMA " + schema);
+            // the migrations use unqualified names, they resolve to the scratch schema; pgvector stays in public
+            statement.execute("SET search_path TO " + schema + ", public");
+            for (Path script : scripts) {
+                log.info("Applying {} to schema {}", script.getFileName(), schema);
+                statement.execute(Files.readString(script));
+            }
+            // only the index under test is built, after the load
+            statement.execute(String.format("DROP INDEX IF EXISTS %1$s.idx_emb_vector, %1$s.idx_emb_vector_bits, %1$s.idx_emb_vector_half", schema));
+        }
+    }
+
+    private static int version(Path script) {
+        String name = script.getFileName().toString();
+        return Integer.parseInt(name.substring(1, name.indexOf("__")));
+    }
+
+    private void load(Connection connection, Corpus corpus) throws SQLException {
+        long started = System.nanoTime();
+        connection.setAutoCommit(false);
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO " + settings.schema() + ".embeddings (id, file_uuid, file_name, chunk_text, vector, vector_generated, page_number, created_at, user_id) OVERRIDING SYSTEM VALUE " +
+                        "VALUES (?, ?, ?, ?, CAST(? AS vector), true, ?, ?, ?)")) {
+            Timestamp now = Timestamp.from(Instant.now());
+            for (int row = 0; row < corpus.size(); row++) {
+                insert.setLong(1, row + 1L);
+                insert.setObject(2, corpus.fileUuids[row]);
+                insert.setString(3, "synthetic.pdf");
+                insert.setString(4, "synthetic chunk " + row + " of topic " + corpus.topics[row]);
+                insert.setString(5, Arrays.toString(corpus.vectors[row]));
+                insert.setInt(6, 1);
+                insert.setTimestamp(7, now);
+                insert.setString(8, corpus.userIds[row]);
+                insert.addBatch();
+                if (row % 1000 == 999) {
+                    insert.executeBatch();
+                }
+            }
+            insert.executeBatch();
+        }
+        connection.commit();
+        connection.setAutoCommit(true);
+        log.info("Loaded {} rows in {} ms", corpus.size(), (System.nanoTime() - started) / 1_000_000);
+    }
+
+    private void configureIndex(Connection connection) throws SQLException {
+        long started = System.nanoTime();
+        String schema = settings.schema();
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP INDEX IF EXISTS " + schema + ".idx_emb_vector");
+            switch (settings.index()) {
+                case "hnsw" -> statement.execute(String.format(
+                        "CREATE INDEX idx_emb_vector ON %s.embeddings USING hnsw (vector vector_cosine_ops) WITH (m = %d, ef_construction = %d)",
+                        schema, settings.hnswM(), settings.hnswEfConstruction()));
+                case "ivfflat" -> statement.execute(String.format(
+                        "CREATE INDEX idx_emb_vector ON %s.embeddings USING ivfflat (vector vector_cosine_ops) WITH (lists = %d)",
+                        schema, settings.ivfLists()));
+                case "none" -> {
+                }
+                default -> throw new IllegalArgumentException("Unknown benchmark.index: " + settings.index());
+            }
+            statement.execute("ANALYZE " + schema + ".embeddings");
+        }
+        log.info("Index {} ready in {} ms", settings.indexDescription(), (System.nanoTime() - started) / 1_000_000);
+    }
+
+    private Result measure(String url, String user, String password, List<Query> queries, int concurrency) throws Exception {
+        long[] latencies = new long[queries.size()];
+        double[] recall = new double[queries.size()];
+        double[] reciprocalRanks = new double[queries.size()];
+        AtomicInteger next = new AtomicInteger();
+
+        ExecutorService pool = Executors.newFixedThreadPool(concurrency);
+        long started = System.nanoTime();
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int w = 0; w < concurrency; w++) {
+                workers.add(pool.submit(() -> {
+                    try (Connection connection = DriverManager.getConnection(url, user, password);
+                         PreparedStatement statement = connection.prepareStatement(String.format(FIND_TOP_SIMILAR, settings.schema()))) {
+                        applySessionSettings(connection);
+                        for (int i = next.getAndIncrement(); i < queries.size(); i = next.getAndIncrement()) {
+                            Query query = queries.get(i);
+                            long queryStarted = System.nanoTime();
+                            List<Long> found = execute(statement, query);
+                            latencies[i] = System.nanoTime() - queryStarted;
+                            recall[i] = query.recall(found);
+                            reciprocalRanks[i] = query.reciprocalRank(found);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        long elapsed = System.nanoTime() - started;
+
+        Arrays.sort(latencies);
+        return new Result(Arrays.stream(recall).average().orElse(0), Arrays.stream(reciprocalRanks).average().orElse(0),
+                latencies, queries.size() / (elapsed / 1e9));
+    }
+
+    private void applySessionSettings(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("SET hnsw.ef_search = " + settings.hnswEfSearch());
+            statement.execute("SET hnsw.iterative_scan = strict_order");
+            statement.execute("SET ivfflat.probes = " + settings.ivfProbes());
+        }
+    }
+
+    private List<Long> execute(PreparedStatement statement, Query query) throws SQLException {
+        statement.setString(1, query.userId());
+        statement.setString(2, Arrays.toString(query.vector()));
+        statement.setInt(3, settings.k());
+        List<Long> ids = new ArrayList<>(settings.k());
+        try (ResultSet rs = statement.executeQuery()) {
+            while (rs.next()) {
+                ids.add(rs.getLong("id"));
+            }
+        }
+        return ids;
+    }
+
+    record Settings(String jdbcUrl, String user, String password, String migrations, String schema,
+                    int corpusSize, int users, int documentsPerUser, int topics, float noise,
+                    int queries, int k, int[] concurrency, long seed,
+                    String index, int hnswM, int hnswEfConstruction, int hnswEfSearch, int ivfLists, int ivfProbes) {
+
+        static Settings fromSystemProperties() {
+            return new Settings(
+                    System.getProperty("benchmark.jdbcUrl"),
+                    System.getProperty("benchmark.user", "postgres"),
+                    System.getProperty("benchmark.password", "postgres"),
+                    System.getProperty("benchmark.migrations", "../../db-migration/flyway/sql"),
+                    System.getProperty("benchmark.schema", "retrieval_benchmark"),
+                    Integer.getInteger("benchmark.corpusSize", 20_000),
+                    Integer.getInteger("benchmark.users", 4),
+                    Integer.getInteger("benchmark.documentsPerUser", 50),
+                    Integer.getInteger("benchmark.topics", 200),
+                    Float.parseFloat(System.getProperty("benchmark.noise", "0.35")),
+                    Integer.getInteger("benchmark.queries", 500),
+                    Integer.getInteger("benchmark.k", 10),
+                    Arrays.stream(System.getProperty("benchmark.concurrency", "1,4,16").split(","))
+                            .map(String::trim).mapToInt(Integer::parseInt).toArray(),
+                    Long.getLong("benchmark.seed", 42L),
+                    System.getProperty("benchmark.index", "hnsw"),
+                    Integer.getInteger("benchmark.hnsw.m", 16),
+                    Integer.getInteger("benchmark.hnsw.efConstruction", 64),
+                    Integer.getInteger("benchmark.hnsw.efSearch", 40),
+                    Integer.getInteger("benchmark.ivfflat.lists", 100),
+                    Integer.getInteger("benchmark.ivfflat.probes", 10));
+        }
+
+        String indexDescription() {
+            return switch (index) {
+                case "hnsw" -> "hnsw(m=" + hnswM + ", ef_construction=" + hnswEfConstruction + ", ef_search=" + hnswEfSearch + ")";
+                case "ivfflat" -> "ivfflat(lists=" + ivfLists + ", probes=" + ivfProbes + ")";
+                default -> index;
+            };
+        }
+
+        @Override
+        public String toString() {
+            return "schema=" + schema + ", corpusSize=" + corpusSize + ", users=" + users + ", topics=" + topics + ", noise=" + noise
+                    + ", queries=" + queries + ", k=" + k + ", concurrency=" + Arrays.toString(concurrency)
+                    + ", index=" + indexDescription() + ", seed=" + seed;
+        }
+    }
+
+    /**
+     * Rows drawn around topic centroids, so that neighbourhoods are dense like real chunk embeddings.
+     */
+    private static final class Corpus {
+        private final float[][] vectors;
+        private final String[] userIds;
+        private final UUID[] fileUuids;
+        private final int[] topics;
+
+        private Corpus(int size) {
+            vectors = new float[size][];
+            userIds = new String[size];
+            fileUuids = new UUID[size];
+            topics = new int[size];
+        }
+
+        static Corpus generate(Settings settings) {
+            Random random = new Random(settings.seed());
+            float[][] centroids = new float[settings.topics()][];
+            for (int t = 0; t < centroids.length; t++) {
+                centroids[t] = normalize(gaussian(random, 1f));
+            }
+            UUID[][] documents = new UUID[settings.users()][settings.documentsPerUser()];
+            for (UUID[] userDocuments : documents) {
+                for (int d = 0; d < userDocuments.length; d++) {
+                    userDocuments[d] = new UUID(random.nextLong(), random.nextLong());
+                }
+            }
+
+            Corpus corpus = new Corpus(settings.corpusSize());
+            for (int row = 0; row < settings.corpusSize(); row++) {
+                int user = row % settings.users();
+                int topic = random.nextInt(settings.topics());
+                float[] noise = gaussian(random, settings.noise() / (float) Math.sqrt(DIMENSION));
+                float[] vector = new float[DIMENSION];
+                for (int i = 0; i < DIMENSION; i++) {
+                    vector[i] = centroids[topic][i] + noise[i];
+                }
+                corpus.vectors[row] = normalize(vector);
+                corpus.userIds[row] = "bench-user-" + user;
+                corpus.fileUuids[row] = documents[user][random.nextInt(settings.documentsPerUser())];
+                corpus.topics[row] = topic;
+            }
+            return corpus;
+        }
+
+        int size() {
+            return vectors.length;
+        }
+
+        // a query is a perturbed copy of a random chunk, the relevant set is the exact top-k of that user
+        List<Query> queries(Settings settings, SimilarityKernel kernel) {
+            Random random = new Random(settings.seed() + 1);
+            List<Query> queries = new ArrayList<>(settings.queries());
+            for (int q = 0; q < settings.queries(); q++) {
+                int source = random.nextInt(size());
+                float[] noise = gaussian(random, settings.noise() / 2f / (float) Math.sqrt(DIMENSION));
+                float[] vector = new float[DIMENSION];
+                for (int i = 0; i < DIMENSION; i++) {
+                    vector[i] = vectors[source][i] + noise[i];
+                }
+                vector = normalize(vector);
+
+                TopKSelector exact = new TopKSelector(settings.k());
+                for (int row = 0; row < size(); row++) {
+                    if (userIds[row].equals(userIds[source])) {
+                        exact.offer(row + 1L, kernel.dot(vector, vectors[row])); // unit vectors: dot = cosine
+                    }
+                }
+                long[] relevant = exact.results().stream().mapToLong(ScoredRow::rowId).toArray();
+                queries.add(new Query(userIds[source], vector, source + 1L, relevant));
+            }
+            return queries;
+        }
+
+        private static float[] gaussian(Random random, float sigma) {
+            float[] vector = new float[DIMENSION];
+            for (int i = 0; i < DIMENSION; i++) {
+                vector[i] = (float) random.nextGaussian() * sigma;
+            }
+            return vector;
+        }
+
+        private static float[] normalize(float[] vector) {
+            double sum = 0;
+            for (float v : vector) {
+                sum += v * v;
+            }
+            float norm = (float) Math.sqrt(sum);
+            for (int i = 0; i < vector.length; i++) {
+                vector[i] /= norm;
+            }
+            return vector;
+        }
+    }
+
+    private record Query(String userId, float[] vector, long sourceId, long[] relevant) {
+
+        double recall(List<Long> found) {
+            long hits = Arrays.stream(relevant).filter(found::contains).count();
+            return (double) hits / relevant.length;
+        }
+
+        double reciprocalRank(List<Long> found) {
+            int rank = found.indexOf(sourceId);
+            return rank < 0 ? 0 : 1.0 / (rank + 1);
+        }
+    }
+
+    private record Result(double recall, double mrr, long[] sortedLatencies, double qps) {
+
+        double percentileMs(double percentile) {
+            int index = (int) Math.ceil(percentile * sortedLatencies.length) - 1;
+            return sortedLatencies[Math.max(0, Math.min(index, sortedLatencies.length - 1))] / 1e6;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.github.vadimmiheev.vectordocs.searchservice.similarity;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteOrder;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exact top-K scan over a document-sized candidate set, on the heap and off-heap.
+ * Run with {@code gradle :services:search-service:jmh}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class SimilarityKernelBenchmark {
+
+    @Param({"768", "1536"})
+    private int dimension;
+
+    @Param({"scalar", "simd"})
+    private String kernelType;
+
+    @Param({"2000"})
+    private int rows;
+
+    @Param({"10"})
+    private int topK;
+
+    private SimilarityKernel kernel;
+    private float[] query;
+    private float[] heapData;
+    private MemorySegment offHeapData;
+    private Arena arena;
+
+    @Setup
+    public void setUp() {
+        kernel = "simd".equals(kernelType) ? SimilarityKernels.best() : SimilarityKernels.scalar();
+
+        Random random = new Random(42);
+        query = new float[dimension];
+        for (int i = 0; i < dimension; i++) query[i] = random.nextFloat() - 0.5f;
+
+        heapData = new float[rows * dimension];
+        for (int i = 0; i < heapData.length; i++) heapData[i] = random.nextFloat() - 0.5f;
+
+        arena = Arena.ofShared();
+        offHeapData = arena.allocate((long) heapData.length * Float.BYTES, 64);
+        ValueLayout.OfFloat layout = ValueLayout.JAVA_FLOAT_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < heapData.length; i++) {
+            offHeapData.set(layout, (long) i * Float.BYTES, heapData[i]);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        arena.close();
+    }
+
+    @Benchmark
+    public void heapTopK(Blackhole blackhole) {
+        TopKSelector selector = new TopKSelector(topK);
+        for (int row = 0; row < rows; row++) {
+            selector.offer(row, kernel.dot(query, heapData, row * dimension));
+        }
+        List<ScoredRow> results = selector.results();
+        blackhole.consume(results);
+    }
+
+    @Benchmark
+    public void offHeapTopK(Blackhole blackhole) {
+        TopKSelector selector = new TopKSelector(topK);
+        long stride = (long) dimension * Float.BYTES;
+        for (int row = 0; row < rows; row++) {
+            selector.offer(row, kernel.dot(query, offHeapData, row * stride));
+        }
+        List<ScoredRow> results = selector.results();
+        blackhole.consume(results);
+    }
+}
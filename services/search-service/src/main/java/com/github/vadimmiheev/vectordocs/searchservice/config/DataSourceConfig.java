@@ -0,0 +1,64 @@
+package com.github.vadimmiheev.vectordocs.searchservice.config;
+
+import com.github.vadimmiheev.vectordocs.searchservice.datasource.DataSourceRoute;
+import com.github.vadimmiheev.vectordocs.searchservice.datasource.RoutingDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+/**
+ * Primary + read replica pools behind one routing {@link DataSource}. Replaces the auto-configured pool only when
+ * a replica is configured; the lazy proxy defers the pool choice to the first statement, after the route is set.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.datasource.replica.enabled", havingValue = "true")
+public class DataSourceConfig {
+
+    @Bean(destroyMethod = "close")
+    public HikariDataSource primaryPool(DataSourceProperties properties, Environment environment) {
+        HikariDataSource primary = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(primary));
+        primary.setPoolName("primary");
+        return primary;
+    }
+
+    @Bean(destroyMethod = "close")
+    public HikariDataSource replicaPool(DataSourceProperties properties,
+                                       Environment environment,
+                                       @Value("${app.datasource.replica.url}") String replicaUrl,
+                                       @Value("${app.datasource.replica.username}") String replicaUsername,
+                                       @Value("${app.datasource.replica.password}") String replicaPassword) {
+        HikariDataSource replica = new HikariDataSource();
+        // same session settings (hnsw.iterative_scan) as the primary, pool sizing can be overridden
+        Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(replica));
+        Binder.get(environment).bind("app.datasource.replica.hikari", Bindable.ofInstance(replica));
+        replica.setJdbcUrl(replicaUrl);
+        replica.setUsername(replicaUsername);
+        replica.setPassword(replicaPassword);
+        replica.setDriverClassName(properties.getDriverClassName());
+        replica.setReadOnly(true);
+        replica.setPoolName("replica");
+        return replica;
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(HikariDataSource primaryPool, HikariDataSource replicaPool) {
+        RoutingDataSource routing = new RoutingDataSource();
+        routing.setTargetDataSources(Map.<Object, Object>of(DataSourceRoute.PRIMARY, primaryPool, DataSourceRoute.REPLICA, replicaPool));
+        routing.setDefaultTargetDataSource(primaryPool);
+        routing.afterPropertiesSet();
+        return new LazyConnectionDataSourceProxy(routing);
+    }
+}
@@ -1,7 +1,13 @@
 package com.github.vadimmiheev.vectordocs.searchservice.config;
 
+import com.github.vadimmiheev.vectordocs.searchservice.embedding.HashingEmbeddingModel;
+import com.github.vadimmiheev.vectordocs.searchservice.embedding.LocalEmbeddingModel;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.embedding.onnx.OnnxEmbeddingModel;
+import dev.langchain4j.model.embedding.onnx.PoolingMode;
 import dev.langchain4j.model.openai.OpenAiEmbeddingModel;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -9,7 +15,8 @@ import org.springframework.context.annotation.Configuration;
 public class EmbeddingConfig {
 
     @Bean
-    public OpenAiEmbeddingModel embeddingModel(
+    @ConditionalOnProperty(name = "app.embedding.provider", havingValue = "openai", matchIfMissing = true)
+    public EmbeddingModel embeddingModel(
             @Value("${app.embedding.base-url:http://localhost:11434/v1}") String baseUrl,
             @Value("${app.embedding.model-name:nomic-embed-text}") String modelName,
             @Value("${app.embedding.api-key:dummy}") String apiKey
@@ -20,4 +27,32 @@ public class EmbeddingConfig {
                 .apiKey(apiKey)
                 .build();
     }
+
+    // Offline stand-in for load tests, no endpoint needed
+    @Bean
+    @ConditionalOnProperty(name = "app.embedding.provider", havingValue = "hashing")
+    public EmbeddingModel hashingEmbeddingModel(
+            @Value("${app.embedding.dimension:768}") int dimension,
+            @Value("${app.embedding.hashing.latency-ms:0}") long latencyMs
+    ) {
+        return new HashingEmbeddingModel(dimension, latencyMs);
+    }
+
+    // In-process sentence-embedding model (ONNX Runtime on CPU + HuggingFace tokenizer), must output app.embedding.dimension
+    @Bean
+    @ConditionalOnProperty(name = "app.embedding.provider", havingValue = "onnx")
+    public LocalEmbeddingModel onnxEmbeddingModel(
+            @Value("${app.embedding.onnx.model-path}") String modelPath,
+            @Value("${app.embedding.onnx.tokenizer-path}") String tokenizerPath,
+            @Value("${app.embedding.onnx.pooling:MEAN}") PoolingMode pooling,
+            @Value("${app.embedding.onnx.text-prefix:}") String textPrefix,
+            @Value("${app.embedding.dimension:768}") int dimension
+    ) {
+        LocalEmbeddingModel model = new LocalEmbeddingModel(new OnnxEmbeddingModel(modelPath, tokenizerPath, pooling), textPrefix);
+        if (model.dimension() != dimension) {
+            throw new IllegalStateException("ONNX model " + modelPath + " produces " + model.dimension()
+                    + "-dim vectors, the embeddings table expects " + dimension);
+        }
+        return model;
+    }
 }
@@ -0,0 +1,20 @@
+package com.github.vadimmiheev.vectordocs.searchservice.config;
+
+import com.github.vadimmiheev.vectordocs.searchservice.similarity.SimilarityKernel;
+import com.github.vadimmiheev.vectordocs.searchservice.similarity.SimilarityKernels;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Slf4j
+@Configuration
+public class SimilarityConfig {
+
+    @Bean
+    public SimilarityKernel similarityKernel(@Value("${app.search.simd.enabled:true}") boolean simdEnabled) {
+        SimilarityKernel kernel = simdEnabled ? SimilarityKernels.best() : SimilarityKernels.scalar();
+        log.info("Using {} similarity kernel", kernel.name());
+        return kernel;
+    }
+}
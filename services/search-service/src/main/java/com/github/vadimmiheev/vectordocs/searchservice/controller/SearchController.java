@@ -1,7 +1,10 @@
 package com.github.vadimmiheev.vectordocs.searchservice.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.vadimmiheev.vectordocs.searchservice.dto.RetrieveRequest;
+import com.github.vadimmiheev.vectordocs.searchservice.dto.RetrieveResponse;
 import com.github.vadimmiheev.vectordocs.searchservice.dto.SearchRequestEvent;
+import com.github.vadimmiheev.vectordocs.searchservice.service.DirectSearchService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
@@ -20,13 +23,16 @@ import java.util.Collections;
 public class SearchController {
     private final KafkaTemplate<String, String> kafkaTemplate;
     private final ObjectMapper objectMapper;
+    private final DirectSearchService directSearchService;
 
     @Value("${app.topics.search-request}")
     private String searchRequestTopic;
 
-    public SearchController(KafkaTemplate<String, String> kafkaTemplate, ObjectMapper objectMapper) {
+    public SearchController(KafkaTemplate<String, String> kafkaTemplate, ObjectMapper objectMapper,
+                            DirectSearchService directSearchService) {
         this.kafkaTemplate = kafkaTemplate;
         this.objectMapper = objectMapper;
+        this.directSearchService = directSearchService;
     }
 
     @PostMapping({"/search", "/"})
@@ -59,4 +65,27 @@ public class SearchController {
 
         return ResponseEntity.accepted().build();
     }
+
+    // Retrieval only, answered synchronously without the Kafka round trips of the answer pipeline
+    @PostMapping({"/search/retrieve", "/retrieve"})
+    public ResponseEntity<?> retrieve(@RequestBody RetrieveRequest request,
+                                      @RequestHeader(value = "X-User-Id") String userIdHeader) {
+        if (!StringUtils.hasText(userIdHeader)) {
+            log.error("Missing userId (header X-User-Id)");
+            return ResponseEntity.badRequest().build();
+        }
+
+        if (!StringUtils.hasText(request.getQuery())) {
+            return ResponseEntity.badRequest().body(Collections.singletonMap("error", "query is required"));
+        }
+
+        try {
+            RetrieveResponse response = directSearchService.retrieve(userIdHeader, request.getQuery(), request.getDocumentId(), request.getTopK());
+            log.info("Direct retrieval for userId={} returned {} hits in {} ms", userIdHeader, response.getHits().size(), response.getTookMs());
+            return ResponseEntity.ok(response);
+        } catch (Exception ex) {
+            log.error("Direct retrieval failed for userId={}", userIdHeader, ex);
+            return ResponseEntity.internalServerError().body(Collections.singletonMap("error", "Failed to retrieve search results"));
+        }
+    }
 }
@@ -0,0 +1,6 @@
+package com.github.vadimmiheev.vectordocs.searchservice.datasource;
+
+public enum DataSourceRoute {
+    PRIMARY,
+    REPLICA
+}
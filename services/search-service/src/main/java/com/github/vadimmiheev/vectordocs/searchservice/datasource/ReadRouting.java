@@ -0,0 +1,33 @@
+package com.github.vadimmiheev.vectordocs.searchservice.datasource;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.function.Supplier;
+
+/**
+ * Runs read-only search queries on the replica unless the user's corpus changed too recently ({@link ReplicaLagGuard}).
+ * The route is thread-bound, so it has to be applied on the thread that runs the query.
+ */
+@Component
+@RequiredArgsConstructor
+public class ReadRouting {
+
+    private final ReplicaLagGuard lagGuard;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.datasource.replica.enabled:false}")
+    private boolean replicaEnabled = false;
+
+    public <T> T forSearch(String userId, Supplier<T> query) {
+        if (!replicaEnabled) {
+            return query.get();
+        }
+
+        DataSourceRoute route = lagGuard.isReplicaFresh(userId) ? DataSourceRoute.REPLICA : DataSourceRoute.PRIMARY;
+        meterRegistry.counter("search.datasource.route", "route", route.name().toLowerCase()).increment();
+        return RoutingDataSource.withRoute(route, query);
+    }
+}
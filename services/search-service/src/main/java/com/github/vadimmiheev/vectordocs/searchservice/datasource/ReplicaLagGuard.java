@@ -0,0 +1,36 @@
+package com.github.vadimmiheev.vectordocs.searchservice.datasource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers when each user's corpus last changed. Until the replica had time to replay the change, reads of that
+ * user go to the primary so that a just processed document is searchable immediately.
+ */
+@Component
+public class ReplicaLagGuard {
+
+    private final Map<String, Long> lastChanges = new ConcurrentHashMap<>();
+
+    @Value("${app.datasource.replica.max-lag-ms:5000}")
+    private long maxLagMs = 5000;
+
+    public void recordCorpusChange(String userId) {
+        lastChanges.put(userId, System.currentTimeMillis());
+    }
+
+    public boolean isReplicaFresh(String userId) {
+        Long changedAt = lastChanges.get(userId);
+        if (changedAt == null) {
+            return true;
+        }
+        if (System.currentTimeMillis() - changedAt > maxLagMs) {
+            lastChanges.remove(userId, changedAt);
+            return true;
+        }
+        return false;
+    }
+}
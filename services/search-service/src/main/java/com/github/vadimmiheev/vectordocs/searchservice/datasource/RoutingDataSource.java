@@ -0,0 +1,38 @@
+package com.github.vadimmiheev.vectordocs.searchservice.datasource;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import java.util.function.Supplier;
+
+/**
+ * Picks the primary or the read replica pool per connection, from a thread-bound route set by {@link ReadRouting}.
+ * Without a route connections come from the primary.
+ */
+public class RoutingDataSource extends AbstractRoutingDataSource {
+
+    private static final ThreadLocal<DataSourceRoute> ROUTE = new ThreadLocal<>();
+
+    static <T> T withRoute(DataSourceRoute route, Supplier<T> work) {
+        DataSourceRoute previous = ROUTE.get();
+        ROUTE.set(route);
+        try {
+            return work.get();
+        } finally {
+            if (previous == null) {
+                ROUTE.remove();
+            } else {
+                ROUTE.set(previous);
+            }
+        }
+    }
+
+    static DataSourceRoute currentRoute() {
+        DataSourceRoute route = ROUTE.get();
+        return route == null ? DataSourceRoute.PRIMARY : route;
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return currentRoute();
+    }
+}
@@ -0,0 +1,18 @@
+package com.github.vadimmiheev.vectordocs.searchservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.UUID;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class RetrieveRequest {
+    private String query;
+    private UUID documentId;
+    private Integer topK;
+}
@@ -0,0 +1,16 @@
+package com.github.vadimmiheev.vectordocs.searchservice.dto;
+
+import lombok.*;
+
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class RetrieveResponse {
+    private String query;
+    private List<SearchProcessedEvent.Hit> hits;
+    private long tookMs;
+}
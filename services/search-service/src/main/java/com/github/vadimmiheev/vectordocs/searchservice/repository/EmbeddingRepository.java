@@ -1,13 +1,17 @@
 package com.github.vadimmiheev.vectordocs.searchservice.repository;
 
 import com.github.vadimmiheev.vectordocs.searchservice.entity.Embedding;
+import jakarta.persistence.QueryHint;
 import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 public interface EmbeddingRepository extends JpaRepository<Embedding, Long> {
 
@@ -30,4 +34,173 @@ public interface EmbeddingRepository extends JpaRepository<Embedding, Long> {
                                         @Param("queryVector") String queryVector,
                                         @Param("documentId") UUID documentId,
                                         Limit limit);
+
+    // Quantized first stage (Hamming distance on binary_quantize(vector)) over :candidates rows, re-ranked with full precision
+    @Query(
+    value = "SELECT * FROM (" +
+            "SELECT * FROM embeddings e " +
+            "WHERE (e.user_id = :userId) " +
+            "ORDER BY e.vector_bits <~> binary_quantize(CAST(:queryVector AS vector)) " +
+            "LIMIT :candidates) c " +
+            "ORDER BY c.vector <=> CAST(:queryVector AS vector)",
+    nativeQuery = true)
+    List<Embedding> findTopSimilarBinary(@Param("userId") String userId,
+                                         @Param("queryVector") String queryVector,
+                                         @Param("candidates") int candidates,
+                                         Limit limit);
+
+    @Query(
+    value = "SELECT * FROM (" +
+            "SELECT * FROM embeddings e " +
+            "WHERE (e.user_id = :userId) " +
+            "AND (e.file_uuid = :documentId) " +
+            "ORDER BY e.vector_bits <~> binary_quantize(CAST(:queryVector AS vector)) " +
+            "LIMIT :candidates) c " +
+            "ORDER BY c.vector <=> CAST(:queryVector AS vector)",
+    nativeQuery = true)
+    List<Embedding> findTopSimilarBinaryByDoc(@Param("userId") String userId,
+                                              @Param("queryVector") String queryVector,
+                                              @Param("documentId") UUID documentId,
+                                              @Param("candidates") int candidates,
+                                              Limit limit);
+
+    // Quantized first stage on the float16 index, re-ranked with full precision
+    @Query(
+    value = "SELECT * FROM (" +
+            "SELECT * FROM embeddings e " +
+            "WHERE (e.user_id = :userId) " +
+            "ORDER BY CAST(e.vector AS halfvec(768)) <=> CAST(:queryVector AS halfvec(768)) " +
+            "LIMIT :candidates) c " +
+            "ORDER BY c.vector <=> CAST(:queryVector AS vector)",
+    nativeQuery = true)
+    List<Embedding> findTopSimilarHalf(@Param("userId") String userId,
+                                       @Param("queryVector") String queryVector,
+                                       @Param("candidates") int candidates,
+                                       Limit limit);
+
+    @Query(
+    value = "SELECT * FROM (" +
+            "SELECT * FROM embeddings e " +
+            "WHERE (e.user_id = :userId) " +
+            "AND (e.file_uuid = :documentId) " +
+            "ORDER BY CAST(e.vector AS halfvec(768)) <=> CAST(:queryVector AS halfvec(768)) " +
+            "LIMIT :candidates) c " +
+            "ORDER BY c.vector <=> CAST(:queryVector AS vector)",
+    nativeQuery = true)
+    List<Embedding> findTopSimilarHalfByDoc(@Param("userId") String userId,
+                                            @Param("queryVector") String queryVector,
+                                            @Param("documentId") UUID documentId,
+                                            @Param("candidates") int candidates,
+                                            Limit limit);
+
+    // by-id lookup pruned to the user's partition, findAllById would probe every partition
+    @Query(
+    value = "SELECT * FROM embeddings e " +
+            "WHERE (e.user_id = :userId) " +
+            "AND (e.id IN (:ids))",
+    nativeQuery = true)
+    List<Embedding> findAllByUserIdAndIdIn(@Param("userId") String userId,
+                                           @Param("ids") Collection<Long> ids);
+
+    @Query(
+    value = "SELECT DISTINCT e.file_uuid FROM embeddings e " +
+            "WHERE (e.user_id = :userId)",
+    nativeQuery = true)
+    List<UUID> findDocumentIdsByUser(@Param("userId") String userId);
+
+    // One shard of a sharded search: a group of the user's documents
+    @Query(
+    value = "SELECT * FROM embeddings e " +
+            "WHERE (e.user_id = :userId) " +
+            "AND (e.file_uuid IN (:documentIds)) " +
+            "ORDER BY e.vector <=> CAST(:queryVector AS vector)",
+    nativeQuery = true)
+    List<Embedding> findTopSimilarInDocs(@Param("userId") String userId,
+                                         @Param("queryVector") String queryVector,
+                                         @Param("documentIds") Collection<UUID> documentIds,
+                                         Limit limit);
+
+    @Query(
+    value = "SELECT * FROM (" +
+            "SELECT * FROM embeddings e " +
+            "WHERE (e.user_id = :userId) " +
+            "AND (e.file_uuid IN (:documentIds)) " +
+            "ORDER BY e.vector_bits <~> binary_quantize(CAST(:queryVector AS vector)) " +
+            "LIMIT :candidates) c " +
+            "ORDER BY c.vector <=> CAST(:queryVector AS vector)",
+    nativeQuery = true)
+    List<Embedding> findTopSimilarBinaryInDocs(@Param("userId") String userId,
+                                               @Param("queryVector") String queryVector,
+                                               @Param("documentIds") Collection<UUID> documentIds,
+                                               @Param("candidates") int candidates,
+                                               Limit limit);
+
+    @Query(
+    value = "SELECT * FROM (" +
+            "SELECT * FROM embeddings e " +
+            "WHERE (e.user_id = :userId) " +
+            "AND (e.file_uuid IN (:documentIds)) " +
+            "ORDER BY CAST(e.vector AS halfvec(768)) <=> CAST(:queryVector AS halfvec(768)) " +
+            "LIMIT :candidates) c " +
+            "ORDER BY c.vector <=> CAST(:queryVector AS vector)",
+    nativeQuery = true)
+    List<Embedding> findTopSimilarHalfInDocs(@Param("userId") String userId,
+                                             @Param("queryVector") String queryVector,
+                                             @Param("documentIds") Collection<UUID> documentIds,
+                                             @Param("candidates") int candidates,
+                                             Limit limit);
+
+    // Lexical leg: full-text match on the generated chunk_tsv column (GIN index), :tsQuery in to_tsquery syntax
+    @Query(
+    value = "SELECT * FROM embeddings e " +
+            "WHERE (e.user_id = :userId) " +
+            "AND (e.chunk_tsv @@ to_tsquery('simple', :tsQuery)) " +
+            "ORDER BY ts_rank_cd(e.chunk_tsv, to_tsquery('simple', :tsQuery)) DESC, e.id",
+    nativeQuery = true)
+    List<Embedding> findTopLexical(@Param("userId") String userId,
+                                   @Param("tsQuery") String tsQuery,
+                                   Limit limit);
+
+    @Query(
+    value = "SELECT * FROM embeddings e " +
+            "WHERE (e.user_id = :userId) " +
+            "AND (e.file_uuid = :documentId) " +
+            "AND (e.chunk_tsv @@ to_tsquery('simple', :tsQuery)) " +
+            "ORDER BY ts_rank_cd(e.chunk_tsv, to_tsquery('simple', :tsQuery)) DESC, e.id",
+    nativeQuery = true)
+    List<Embedding> findTopLexicalByDoc(@Param("userId") String userId,
+                                        @Param("tsQuery") String tsQuery,
+                                        @Param("documentId") UUID documentId,
+                                        Limit limit);
+
+    @Query(
+    value = "SELECT * FROM embeddings e " +
+            "WHERE (e.vector_generated = true) " +
+            "ORDER BY random()",
+    nativeQuery = true)
+    List<Embedding> findRandomVectorized(Limit limit);
+
+    // rows grouped by file, as expected by the vector segment format
+    @Query(
+    value = "SELECT * FROM embeddings e " +
+            "WHERE (e.user_id = :userId) " +
+            "AND (e.vector_generated = true) " +
+            "ORDER BY e.file_uuid, e.id",
+    nativeQuery = true)
+    @QueryHints(@QueryHint(name = "org.hibernate.fetchSize", value = "500"))
+    Stream<Embedding> streamVectorizedByUser(@Param("userId") String userId);
+
+    @Query(
+    value = "SELECT count(*) FROM embeddings e " +
+            "WHERE (e.user_id = :userId) " +
+            "AND (e.vector_generated = true)",
+    nativeQuery = true)
+    long countVectorizedByUser(@Param("userId") String userId);
+
+    @Query(
+    value = "SELECT coalesce(max(e.id), 0) FROM embeddings e " +
+            "WHERE (e.user_id = :userId) " +
+            "AND (e.vector_generated = true)",
+    nativeQuery = true)
+    long maxVectorizedIdByUser(@Param("userId") String userId);
 }
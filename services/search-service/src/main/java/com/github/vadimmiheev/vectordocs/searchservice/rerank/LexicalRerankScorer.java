@@ -0,0 +1,102 @@
+package com.github.vadimmiheev.vectordocs.searchservice.rerank;
+
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Local stand-in for a cross-encoder: rewards passages covering the query terms that are rare among the candidates
+ * of the same search and containing query bigrams verbatim. Needs no model files and runs in microseconds.
+ */
+@Component
+public class LexicalRerankScorer implements RerankScorer {
+
+    private static final Pattern TERM = Pattern.compile("[\\p{L}\\p{N}]+(?:[-_./][\\p{L}\\p{N}]+)*");
+
+    @Override
+    public float[] score(List<RerankPair> pairs) {
+        // document frequencies per search: concurrent searches of other users share the batch
+        Map<Long, List<Integer>> searches = new LinkedHashMap<>();
+        for (int i = 0; i < pairs.size(); i++) {
+            searches.computeIfAbsent(pairs.get(i).searchId(), id -> new ArrayList<>()).add(i);
+        }
+
+        float[] scores = new float[pairs.size()];
+        searches.values().forEach(indexes -> scoreSearch(pairs, indexes, scores));
+        return scores;
+    }
+
+    private static void scoreSearch(List<RerankPair> pairs, List<Integer> indexes, float[] scores) {
+        Map<Integer, List<String>> passages = new HashMap<>();
+        Map<String, Integer> documentFrequency = new HashMap<>();
+        for (int i : indexes) {
+            List<String> terms = terms(pairs.get(i).passage());
+            passages.put(i, terms);
+            new HashSet<>(terms).forEach(t -> documentFrequency.merge(t, 1, Integer::sum));
+        }
+
+        for (int i : indexes) {
+            List<String> query = terms(pairs.get(i).query());
+            if (query.isEmpty()) {
+                continue;
+            }
+            List<String> passage = passages.get(i);
+            Set<String> passageTerms = new HashSet<>(passage);
+
+            float score = 0f;
+            float maxScore = 0f;
+            for (String term : query) {
+                int df = documentFrequency.getOrDefault(term, 0);
+                float idf = (float) Math.log(1.0 + indexes.size() / Math.max(df, 0.5));
+                maxScore += idf;
+                if (passageTerms.contains(term)) {
+                    score += idf;
+                }
+            }
+            scores[i] = maxScore == 0f ? 0f : score / maxScore + 0.5f * bigramCoverage(query, passage);
+        }
+    }
+
+    @Override
+    public String name() {
+        return "lexical";
+    }
+
+    private static float bigramCoverage(List<String> query, List<String> passage) {
+        if (query.size() < 2) {
+            return 0f;
+        }
+        Set<String> passageBigrams = new HashSet<>();
+        for (int i = 1; i < passage.size(); i++) {
+            passageBigrams.add(passage.get(i - 1) + ' ' + passage.get(i));
+        }
+        int found = 0;
+        for (int i = 1; i < query.size(); i++) {
+            if (passageBigrams.contains(query.get(i - 1) + ' ' + query.get(i))) {
+                found++;
+            }
+        }
+        return (float) found / (query.size() - 1);
+    }
+
+    private static List<String> terms(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null) {
+            return terms;
+        }
+        Matcher matcher = TERM.matcher(text.toLowerCase(Locale.ROOT));
+        while (matcher.find()) {
+            terms.add(matcher.group());
+        }
+        return terms;
+    }
+}
@@ -0,0 +1,96 @@
+package com.github.vadimmiheev.vectordocs.searchservice.rerank;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesces re-rank requests of concurrent searches into one scorer call: the worker takes the first waiting request,
+ * then keeps collecting for at most {@code maxWaitMs} or until {@code maxPairs} pairs are queued. Requests cancelled
+ * by their caller (latency budget exceeded) are dropped from the batch before scoring.
+ */
+@Slf4j
+class RerankBatcher implements AutoCloseable {
+
+    private final RerankScorer scorer;
+    private final int maxPairs;
+    private final long maxWaitMs;
+    private final BlockingQueue<Request> queue = new LinkedBlockingQueue<>();
+    private final Thread worker;
+
+    RerankBatcher(RerankScorer scorer, int maxPairs, long maxWaitMs) {
+        this.scorer = scorer;
+        this.maxPairs = maxPairs;
+        this.maxWaitMs = maxWaitMs;
+        this.worker = Thread.ofPlatform().name("rerank-batcher").daemon().start(this::run);
+    }
+
+    CompletableFuture<float[]> submit(List<RerankScorer.RerankPair> pairs) {
+        Request request = new Request(pairs, new CompletableFuture<>());
+        queue.add(request);
+        return request.result();
+    }
+
+    private void run() {
+        while (!Thread.currentThread().isInterrupted()) {
+            List<Request> batch = new ArrayList<>();
+            try {
+                Request first = queue.take();
+                batch.add(first);
+                int pairs = first.pairs().size();
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+                while (pairs < maxPairs) {
+                    Request next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                    pairs += next.pairs().size();
+                }
+            } catch (InterruptedException e) {
+                batch.forEach(r -> r.result().cancel(false));
+                Thread.currentThread().interrupt();
+                return;
+            }
+            score(batch);
+        }
+    }
+
+    private void score(List<Request> queued) {
+        List<Request> batch = queued.stream().filter(r -> !r.result().isDone()).toList();
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            List<RerankScorer.RerankPair> pairs = new ArrayList<>();
+            batch.forEach(r -> pairs.addAll(r.pairs()));
+            float[] scores = scorer.score(pairs);
+
+            int offset = 0;
+            for (Request request : batch) {
+                int size = request.pairs().size();
+                float[] slice = new float[size];
+                System.arraycopy(scores, offset, slice, 0, size);
+                offset += size;
+                request.result().complete(slice);
+            }
+            log.debug("Re-ranked {} pairs of {} searches in one batch", pairs.size(), batch.size());
+        } catch (Exception e) {
+            batch.forEach(r -> r.result().completeExceptionally(e));
+        }
+    }
+
+    @Override
+    public void close() {
+        worker.interrupt();
+        queue.forEach(r -> r.result().cancel(false));
+    }
+
+    private record Request(List<RerankScorer.RerankPair> pairs, CompletableFuture<float[]> result) {
+    }
+}
@@ -0,0 +1,25 @@
+package com.github.vadimmiheev.vectordocs.searchservice.rerank;
+
+import java.util.List;
+
+/**
+ * Second-stage relevance model scoring (query, passage) pairs jointly, e.g. a cross-encoder.
+ * Called with pairs from several concurrent searches at once, so implementations should be efficient on batches.
+ * The score of a pair must not depend on pairs of other searches in the batch: statistics over the passages are only
+ * taken within one {@link RerankPair#searchId()}.
+ */
+public interface RerankScorer {
+
+    /**
+     * @return one score per pair, higher is more relevant
+     */
+    float[] score(List<RerankPair> pairs);
+
+    String name();
+
+    /**
+     * @param searchId the same for all pairs of one search, different between searches (and users) sharing a batch
+     */
+    record RerankPair(long searchId, String query, String passage) {
+    }
+}
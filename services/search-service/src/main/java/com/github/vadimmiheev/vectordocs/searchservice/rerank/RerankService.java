@@ -0,0 +1,142 @@
+package com.github.vadimmiheev.vectordocs.searchservice.rerank;
+
+import com.github.vadimmiheev.vectordocs.searchservice.entity.Embedding;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Rescores vector search candidates with a {@link RerankScorer} within a latency budget.
+ * Past the budget (or on a scorer failure) the vector order is kept, so re-ranking can only delay a search by the budget.
+ * The scorer is picked by {@code app.search.rerank.scorer} among the {@link RerankScorer} beans.
+ */
+@Slf4j
+@Service
+public class RerankService {
+
+    private final RerankScorer scorer;
+    private final MeterRegistry meterRegistry;
+    private final RerankBatcher batcher;
+    private final AtomicLong searchIds = new AtomicLong();
+
+    @Value("${app.search.rerank.enabled:false}")
+    private boolean enabled = false;
+
+    @Value("${app.search.rerank.candidates:20}")
+    private int candidates = 20;
+
+    @Value("${app.search.rerank.latency-budget-ms:150}")
+    private long latencyBudgetMs = 150;
+
+    public RerankService(List<RerankScorer> scorers,
+                         @Value("${app.search.rerank.scorer:lexical}") String scorerName,
+                         MeterRegistry meterRegistry,
+                         @Value("${app.search.rerank.batch.max-pairs:64}") int maxBatchPairs,
+                         @Value("${app.search.rerank.batch.max-wait-ms:5}") long maxBatchWaitMs) {
+        this.scorer = scorers.stream()
+                .filter(s -> s.name().equals(scorerName))
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("Unknown app.search.rerank.scorer=" + scorerName + ", available: "
+                        + scorers.stream().map(RerankScorer::name).toList()));
+        this.meterRegistry = meterRegistry;
+        this.batcher = new RerankBatcher(scorer, maxBatchPairs, maxBatchWaitMs);
+        log.info("Using {} re-rank scorer", scorer.name());
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int candidates() {
+        return candidates;
+    }
+
+    /**
+     * @param candidates hits in vector order
+     * @return the best {@code topK} hits by re-rank score, or the first {@code topK} in vector order on fallback
+     */
+    public List<Embedding> rerank(String query, List<Embedding> candidates, int topK) {
+        if (candidates.size() <= 1) {
+            return candidates;
+        }
+
+        long started = System.nanoTime();
+        float[] scores;
+        long searchId = searchIds.incrementAndGet();
+        List<RerankScorer.RerankPair> pairs = candidates.stream()
+                .map(c -> new RerankScorer.RerankPair(searchId, query, c.getChunkText()))
+                .toList();
+        CompletableFuture<float[]> scored = batcher.submit(pairs);
+        try {
+            scores = scored.get(latencyBudgetMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // still queued: the batcher skips it instead of scoring for nobody
+            scored.cancel(false);
+            return fallback("timeout", candidates, topK);
+        } catch (InterruptedException e) {
+            scored.cancel(false);
+            Thread.currentThread().interrupt();
+            return fallback("interrupted", candidates, topK);
+        } catch (Exception e) {
+            log.warn("Re-ranking failed, keeping vector order: {}", e.toString());
+            return fallback("error", candidates, topK);
+        }
+        meterRegistry.timer("search.rerank.latency", "scorer", scorer.name()).record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+
+        List<Integer> order = new ArrayList<>(candidates.size());
+        for (int i = 0; i < candidates.size(); i++) {
+            order.add(i);
+        }
+        // stable: equal scores keep the vector order
+        order.sort(Comparator.comparingDouble((Integer i) -> scores[i]).reversed());
+
+        List<Embedding> reranked = new ArrayList<>(Math.min(topK, candidates.size()));
+        double rankShift = 0;
+        for (int rank = 0; rank < Math.min(topK, order.size()); rank++) {
+            int vectorRank = order.get(rank);
+            rankShift += Math.abs(vectorRank - rank);
+            reranked.add(candidates.get(vectorRank));
+        }
+        recordRankShift(rankShift / reranked.size(), order.get(0) != 0, countPromoted(order, topK));
+        return reranked;
+    }
+
+    // hits of the final top-K that were outside the vector top-K
+    private static int countPromoted(List<Integer> order, int topK) {
+        int promoted = 0;
+        for (int rank = 0; rank < Math.min(topK, order.size()); rank++) {
+            if (order.get(rank) >= topK) {
+                promoted++;
+            }
+        }
+        return promoted;
+    }
+
+    private void recordRankShift(double meanShift, boolean topChanged, int promoted) {
+        meterRegistry.summary("search.rerank.rank-shift").record(meanShift);
+        meterRegistry.summary("search.rerank.promoted").record(promoted);
+        if (topChanged) {
+            meterRegistry.counter("search.rerank.top1-changed").increment();
+        }
+    }
+
+    private List<Embedding> fallback(String reason, List<Embedding> candidates, int topK) {
+        meterRegistry.counter("search.rerank.fallback", "reason", reason).increment();
+        return candidates.subList(0, Math.min(topK, candidates.size()));
+    }
+
+    @PreDestroy
+    void shutdown() {
+        batcher.close();
+    }
+}
@@ -0,0 +1,46 @@
+package com.github.vadimmiheev.vectordocs.searchservice.segment;
+
+import com.github.vadimmiheev.vectordocs.searchservice.similarity.ScoredRow;
+import com.github.vadimmiheev.vectordocs.searchservice.similarity.SimilarityKernel;
+import com.github.vadimmiheev.vectordocs.searchservice.similarity.TopKSelector;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Exact cosine scan over a range of segment rows. Float32 segments go through the SIMD kernel straight from the mapping,
+ * the compact encodings are decoded on the fly.
+ */
+@Component
+@RequiredArgsConstructor
+public class SegmentSearcher {
+
+    private final SimilarityKernel kernel;
+
+    /**
+     * Top rows by cosine similarity; {@link ScoredRow#rowId()} holds {@code embeddings.id}.
+     */
+    public List<ScoredRow> search(VectorSegment segment, VectorSegment.RowRange range, float[] query, int topK) {
+        if (query.length != segment.dimension()) {
+            throw new IllegalArgumentException("Query dimension " + query.length + " does not match segment dimension " + segment.dimension());
+        }
+        float queryNorm = kernel.norm(query);
+        if (queryNorm == 0f || range.size() == 0) {
+            return List.of();
+        }
+
+        TopKSelector selector = new TopKSelector(topK);
+        boolean float32 = segment.encoding() == VectorEncoding.FLOAT32;
+        for (long row = range.from(); row < range.to(); row++) {
+            float norm = segment.norm(row);
+            if (norm == 0f) continue; // vector was never generated
+
+            float dot = float32
+                    ? kernel.dot(query, segment.segment(), segment.vectorOffset(row))
+                    : segment.dot(row, query);
+            selector.offer(segment.rowId(row), dot / (norm * queryNorm));
+        }
+        return selector.results();
+    }
+}
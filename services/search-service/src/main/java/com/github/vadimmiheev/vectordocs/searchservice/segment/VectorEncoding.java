@@ -0,0 +1,20 @@
+package com.github.vadimmiheev.vectordocs.searchservice.segment;
+
+/**
+ * Storage format of vector components inside a segment file.
+ */
+public enum VectorEncoding {
+    FLOAT32(4),
+    FLOAT16(2),
+    INT8(1); // symmetric per-row scale, stored in the row header
+
+    private final int bytes;
+
+    VectorEncoding(int bytes) {
+        this.bytes = bytes;
+    }
+
+    public int bytes() {
+        return bytes;
+    }
+}
@@ -0,0 +1,213 @@
+package com.github.vadimmiheev.vectordocs.searchservice.segment;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Read-only, memory-mapped view of a segment file. Vectors stay off-heap and are read straight from the mapping.
+ *
+ * <pre>
+ * header  (64 bytes)      magic, version, encoding, dimension, row count, created at, max row id
+ * rows    (32 bytes/row)  embeddings.id, file uuid (msb, lsb), L2 norm, int8 scale
+ * vectors (dim * bytes)   contiguous components in the segment encoding
+ * </pre>
+ * All values are little-endian. Rows are expected to be grouped by file, so a file maps to one contiguous row range.
+ */
+public class VectorSegment {
+
+    static final int MAGIC = 0x56534547; // "VSEG"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 64;
+    static final int ROW_STRIDE = 32;
+
+    static final ValueLayout.OfInt INT = ValueLayout.JAVA_INT_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+    static final ValueLayout.OfLong LONG = ValueLayout.JAVA_LONG_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+    static final ValueLayout.OfFloat FLOAT = ValueLayout.JAVA_FLOAT_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+    static final ValueLayout.OfShort SHORT = ValueLayout.JAVA_SHORT_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+
+    private final Path path;
+    private final MemorySegment segment;
+    private final VectorEncoding encoding;
+    private final int dimension;
+    private final long count;
+    private final long createdAt;
+    private final long maxRowId;
+    private final long vectorsOffset;
+    private final long vectorStride;
+    private final Map<UUID, RowRange> fileRanges;
+
+    private VectorSegment(Path path, MemorySegment segment) {
+        this.path = path;
+        this.segment = segment;
+
+        if (segment.byteSize() < HEADER_SIZE || segment.get(INT, 0) != MAGIC) {
+            throw new IllegalStateException("Not a vector segment: " + path);
+        }
+        int version = segment.get(INT, 4);
+        if (version != VERSION) {
+            throw new IllegalStateException("Unsupported segment version " + version + ": " + path);
+        }
+        this.encoding = VectorEncoding.values()[segment.get(INT, 8)];
+        this.dimension = segment.get(INT, 12);
+        this.count = segment.get(LONG, 16);
+        this.createdAt = segment.get(LONG, 24);
+        this.maxRowId = segment.get(LONG, 32);
+        this.vectorsOffset = HEADER_SIZE + count * ROW_STRIDE;
+        this.vectorStride = (long) dimension * encoding.bytes();
+
+        if (segment.byteSize() != vectorsOffset + count * vectorStride) {
+            throw new IllegalStateException("Truncated vector segment: " + path);
+        }
+        this.fileRanges = indexFileRanges();
+    }
+
+    /**
+     * Maps the file into memory. The mapping is released by the GC once the segment is no longer referenced,
+     * so a segment that is being scanned can be replaced at any time.
+     */
+    public static VectorSegment open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MemorySegment mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size(), Arena.ofAuto());
+            return new VectorSegment(path, mapped);
+        }
+    }
+
+    public Path path() {
+        return path;
+    }
+
+    public MemorySegment segment() {
+        return segment;
+    }
+
+    public VectorEncoding encoding() {
+        return encoding;
+    }
+
+    public int dimension() {
+        return dimension;
+    }
+
+    public long count() {
+        return count;
+    }
+
+    public long createdAt() {
+        return createdAt;
+    }
+
+    public long maxRowId() {
+        return maxRowId;
+    }
+
+    public long rowId(long row) {
+        return segment.get(LONG, rowOffset(row));
+    }
+
+    public UUID fileUuid(long row) {
+        long offset = rowOffset(row);
+        return new UUID(segment.get(LONG, offset + 8), segment.get(LONG, offset + 16));
+    }
+
+    public float norm(long row) {
+        return segment.get(FLOAT, rowOffset(row) + 24);
+    }
+
+    public float scale(long row) {
+        return segment.get(FLOAT, rowOffset(row) + 28);
+    }
+
+    /**
+     * Byte offset of the first vector component of the row inside {@link #segment()}.
+     */
+    public long vectorOffset(long row) {
+        return vectorsOffset + row * vectorStride;
+    }
+
+    /**
+     * Rows that belong to the file, or {@code null} when the file has no rows in this segment.
+     */
+    public RowRange rowRange(UUID fileUuid) {
+        return fileRanges.get(fileUuid);
+    }
+
+    public RowRange allRows() {
+        return new RowRange(0, count);
+    }
+
+    /**
+     * Dot product of the row with the query, decoded on the fly without copying the row to the heap.
+     */
+    public float dot(long row, float[] query) {
+        long base = vectorOffset(row);
+        float sum = 0f;
+        switch (encoding) {
+            case FLOAT32 -> {
+                for (int i = 0; i < dimension; i++) {
+                    sum += segment.get(FLOAT, base + (long) i * Float.BYTES) * query[i];
+                }
+            }
+            case FLOAT16 -> {
+                for (int i = 0; i < dimension; i++) {
+                    sum += Float.float16ToFloat(segment.get(SHORT, base + (long) i * Short.BYTES)) * query[i];
+                }
+            }
+            case INT8 -> {
+                for (int i = 0; i < dimension; i++) {
+                    sum += segment.get(ValueLayout.JAVA_BYTE, base + i) * query[i];
+                }
+                sum *= scale(row);
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Decodes the row into {@code target}. Meant for re-ranking a handful of candidates, not for scanning.
+     */
+    public float[] decode(long row, float[] target) {
+        long base = vectorOffset(row);
+        for (int i = 0; i < dimension; i++) {
+            target[i] = switch (encoding) {
+                case FLOAT32 -> segment.get(FLOAT, base + (long) i * Float.BYTES);
+                case FLOAT16 -> Float.float16ToFloat(segment.get(SHORT, base + (long) i * Short.BYTES));
+                case INT8 -> segment.get(ValueLayout.JAVA_BYTE, base + i) * scale(row);
+            };
+        }
+        return target;
+    }
+
+    private long rowOffset(long row) {
+        return HEADER_SIZE + row * ROW_STRIDE;
+    }
+
+    private Map<UUID, RowRange> indexFileRanges() {
+        Map<UUID, RowRange> ranges = new HashMap<>();
+        long start = 0;
+        for (long row = 1; row <= count; row++) {
+            if (row == count || !fileUuid(row).equals(fileUuid(start))) {
+                ranges.put(fileUuid(start), new RowRange(start, row));
+                start = row;
+            }
+        }
+        return ranges;
+    }
+
+    /**
+     * Half-open range of rows {@code [from, to)}.
+     */
+    public record RowRange(long from, long to) {
+        public long size() {
+            return to - from;
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.github.vadimmiheev.vectordocs.searchservice.segment;
+
+import com.github.vadimmiheev.vectordocs.searchservice.entity.Embedding;
+import com.github.vadimmiheev.vectordocs.searchservice.repository.EmbeddingRepository;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Keeps one memory-mapped vector segment per user. Segments are built from Postgres on first use, persisted
+ * under {@code app.segments.dir} and reopened after a restart as long as they still match the user's rows.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class VectorSegmentStore {
+
+    private static final String SEGMENT_EXTENSION = ".vseg";
+
+    private final EmbeddingRepository embeddingRepository;
+    private final PlatformTransactionManager transactionManager;
+    private final EntityManager entityManager;
+
+    @Value("${app.segments.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.segments.dir:/tmp/vector-segments}")
+    private Path directory;
+
+    @Value("${app.segments.encoding:FLOAT32}")
+    private VectorEncoding encoding;
+
+    @Value("${app.segments.dimension:768}")
+    private int dimension;
+
+    private final ConcurrentHashMap<String, CompletableFuture<VectorSegment>> segments = new ConcurrentHashMap<>();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Returns the user's segment, opening or building it if needed. Concurrent callers for the same user wait for a single build.
+     */
+    public VectorSegment acquire(String userId) throws IOException {
+        CompletableFuture<VectorSegment> created = new CompletableFuture<>();
+        CompletableFuture<VectorSegment> existing = segments.putIfAbsent(userId, created);
+        if (existing != null) {
+            return existing.join();
+        }
+
+        try {
+            VectorSegment segment = openOrBuild(userId);
+            created.complete(segment);
+            return segment;
+        } catch (IOException | RuntimeException e) {
+            segments.remove(userId, created);
+            created.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Drops the user's segment so the next search rebuilds it. Readers holding the old segment keep a valid mapping.
+     */
+    public void invalidate(String userId) {
+        segments.remove(userId);
+        try {
+            Files.deleteIfExists(segmentPath(userId));
+            log.debug("Invalidated vector segment for userId={}", userId);
+        } catch (IOException e) {
+            log.warn("Failed to delete vector segment for userId={}: {}", userId, e.getMessage());
+        }
+    }
+
+    private VectorSegment openOrBuild(String userId) throws IOException {
+        Path path = segmentPath(userId);
+        if (Files.exists(path)) {
+            try {
+                VectorSegment segment = VectorSegment.open(path);
+                if (isCurrent(segment, userId)) {
+                    log.info("Opened vector segment for userId={} rows={}", userId, segment.count());
+                    return segment;
+                }
+                log.info("Vector segment for userId={} is stale, rebuilding", userId);
+            } catch (IllegalStateException e) {
+                log.warn("Discarding unreadable vector segment {}: {}", path, e.getMessage());
+            }
+        }
+        return build(userId, path);
+    }
+
+    private boolean isCurrent(VectorSegment segment, String userId) {
+        return segment.encoding() == encoding
+                && segment.dimension() == dimension
+                && segment.count() == embeddingRepository.countVectorizedByUser(userId)
+                && segment.maxRowId() == embeddingRepository.maxVectorizedIdByUser(userId);
+    }
+
+    private VectorSegment build(String userId, Path path) throws IOException {
+        long started = System.currentTimeMillis();
+
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        tx.setReadOnly(true);
+        try {
+            tx.executeWithoutResult(_ -> {
+                try (Stream<Embedding> rows = embeddingRepository.streamVectorizedByUser(userId);
+                     VectorSegmentWriter writer = new VectorSegmentWriter(path, dimension, encoding)) {
+                    Iterator<Embedding> it = rows.iterator();
+                    while (it.hasNext()) {
+                        Embedding e = it.next();
+                        writer.append(e.getId(), e.getFileUuid(), e.getVector());
+                        entityManager.detach(e); // keep the persistence context from growing with the corpus
+                    }
+                    writer.finish();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        VectorSegment segment = VectorSegment.open(path);
+        log.info("Built vector segment for userId={} rows={} encoding={} in {} ms",
+                userId, segment.count(), encoding, System.currentTimeMillis() - started);
+        return segment;
+    }
+
+    private Path segmentPath(String userId) {
+        return directory.resolve(HexFormat.of().formatHex(userId.getBytes(StandardCharsets.UTF_8)) + SEGMENT_EXTENSION);
+    }
+}
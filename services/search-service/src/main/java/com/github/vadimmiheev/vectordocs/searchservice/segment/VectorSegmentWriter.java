@@ -0,0 +1,138 @@
+package com.github.vadimmiheev.vectordocs.searchservice.segment;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.UUID;
+
+/**
+ * Streams rows into a new segment file. Row headers and vectors are spooled into two temporary files,
+ * so the writer never holds more than one vector on the heap, and are concatenated behind the file
+ * header on {@link #finish()}. The target file is replaced atomically, so concurrent writers never see partial files.
+ */
+public class VectorSegmentWriter implements Closeable {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final Path target;
+    private final Path rowsTmp;
+    private final Path vectorsTmp;
+    private final int dimension;
+    private final VectorEncoding encoding;
+
+    private final OutputStream rowsOut;
+    private final OutputStream vectorsOut;
+    private final ByteBuffer rowBuffer = ByteBuffer.allocate(VectorSegment.ROW_STRIDE).order(ByteOrder.LITTLE_ENDIAN);
+    private final ByteBuffer vectorBuffer;
+
+    private long count;
+    private long maxRowId;
+    private boolean finished;
+
+    public VectorSegmentWriter(Path target, int dimension, VectorEncoding encoding) throws IOException {
+        Path directory = target.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+
+        this.target = target;
+        this.rowsTmp = Files.createTempFile(directory, target.getFileName().toString(), ".rows.tmp");
+        this.vectorsTmp = Files.createTempFile(directory, target.getFileName().toString(), ".vectors.tmp");
+        this.dimension = dimension;
+        this.encoding = encoding;
+        this.vectorBuffer = ByteBuffer.allocate(dimension * encoding.bytes()).order(ByteOrder.LITTLE_ENDIAN);
+
+        this.rowsOut = new BufferedOutputStream(Files.newOutputStream(rowsTmp), BUFFER_SIZE);
+        this.vectorsOut = new BufferedOutputStream(Files.newOutputStream(vectorsTmp), BUFFER_SIZE);
+    }
+
+    public void append(long rowId, UUID fileUuid, float[] vector) throws IOException {
+        if (vector.length != dimension) {
+            throw new IllegalArgumentException("Expected vector of dimension " + dimension + " but got " + vector.length);
+        }
+
+        float norm = 0f;
+        float maxAbs = 0f;
+        for (float v : vector) {
+            norm += v * v;
+            maxAbs = Math.max(maxAbs, Math.abs(v));
+        }
+        float scale = encoding == VectorEncoding.INT8 && maxAbs > 0f ? maxAbs / 127f : 1f;
+
+        rowBuffer.clear();
+        rowBuffer.putLong(rowId)
+                .putLong(fileUuid.getMostSignificantBits())
+                .putLong(fileUuid.getLeastSignificantBits())
+                .putFloat((float) Math.sqrt(norm))
+                .putFloat(scale);
+        rowsOut.write(rowBuffer.array(), 0, VectorSegment.ROW_STRIDE);
+
+        vectorBuffer.clear();
+        switch (encoding) {
+            case FLOAT32 -> {
+                for (float v : vector) vectorBuffer.putFloat(v);
+            }
+            case FLOAT16 -> {
+                for (float v : vector) vectorBuffer.putShort(Float.floatToFloat16(v));
+            }
+            case INT8 -> {
+                for (float v : vector) vectorBuffer.put((byte) Math.round(v / scale));
+            }
+        }
+        vectorsOut.write(vectorBuffer.array(), 0, vectorBuffer.capacity());
+
+        count++;
+        maxRowId = Math.max(maxRowId, rowId);
+    }
+
+    public long count() {
+        return count;
+    }
+
+    public void finish() throws IOException {
+        rowsOut.close();
+        vectorsOut.close();
+
+        ByteBuffer header = ByteBuffer.allocate(VectorSegment.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(VectorSegment.MAGIC)
+                .putInt(VectorSegment.VERSION)
+                .putInt(encoding.ordinal())
+                .putInt(dimension)
+                .putLong(count)
+                .putLong(System.currentTimeMillis())
+                .putLong(maxRowId);
+
+        Path tmp = Files.createTempFile(target.toAbsolutePath().getParent(), target.getFileName().toString(), ".tmp");
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(tmp), BUFFER_SIZE)) {
+            out.write(header.array());
+            try (InputStream rows = Files.newInputStream(rowsTmp)) {
+                rows.transferTo(out);
+            }
+            try (InputStream vectors = Files.newInputStream(vectorsTmp)) {
+                vectors.transferTo(out);
+            }
+        }
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        finished = true;
+        deleteSpoolFiles();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!finished) {
+            rowsOut.close();
+            vectorsOut.close();
+            deleteSpoolFiles();
+        }
+    }
+
+    private void deleteSpoolFiles() throws IOException {
+        Files.deleteIfExists(rowsTmp);
+        Files.deleteIfExists(vectorsTmp);
+    }
+}
@@ -0,0 +1,186 @@
+package com.github.vadimmiheev.vectordocs.searchservice.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.vadimmiheev.vectordocs.searchservice.dto.SearchProcessedEvent;
+import com.github.vadimmiheev.vectordocs.searchservice.dto.SearchRequestEvent;
+import com.github.vadimmiheev.vectordocs.searchservice.entity.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Batch variant of {@link SearchRequestListener}: all requests of a poll share one {@code embedAll} call and their
+ * vector queries run in parallel on a bounded pool. Each result is still published separately under its record key.
+ * If the batch embedding fails, every request is embedded on its own, so one bad request only fails itself.
+ * Speculative search only works with the one-at-a-time listener, which also consumes the raw {@code search.request}.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "app.search.batch.enabled", havingValue = "true")
+public class BatchSearchRequestListener {
+
+    private final RetrievalService retrievalService;
+    private final EmbeddingModel embeddingModel;
+    private final KafkaTemplate<String, String> kafkaTemplate;
+    private final ObjectMapper objectMapper;
+    private final SearchResultCache resultCache;
+    private final ObservationRegistry observationRegistry;
+    private final ExecutorService retrievalPool;
+
+    @Value("${app.topics.search-processed:search.processed}")
+    private String processedTopic;
+
+    @Value("${app.search.top-k:5}")
+    private int topK;
+
+    public BatchSearchRequestListener(RetrievalService retrievalService,
+                                      EmbeddingModel embeddingModel,
+                                      KafkaTemplate<String, String> kafkaTemplate,
+                                      ObjectMapper objectMapper,
+                                      SearchResultCache resultCache,
+                                      SpeculativeSearch speculativeSearch,
+                                      ObservationRegistry observationRegistry,
+                                      @Value("${app.search.batch.parallelism:8}") int parallelism) {
+        if (speculativeSearch.isEnabled()) {
+            throw new IllegalStateException("app.search.speculative.enabled=true requires app.search.batch.enabled=false");
+        }
+        this.retrievalService = retrievalService;
+        this.embeddingModel = embeddingModel;
+        this.kafkaTemplate = kafkaTemplate;
+        this.objectMapper = objectMapper;
+        this.resultCache = resultCache;
+        this.observationRegistry = observationRegistry;
+        AtomicInteger threads = new AtomicInteger();
+        this.retrievalPool = Executors.newFixedThreadPool(parallelism, r -> {
+            Thread thread = new Thread(r, "search-batch-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @KafkaListener(topics = "${app.topics.search-request-supplemented}",
+            groupId = "${spring.kafka.consumer.group-id:search-service}",
+            batch = "true",
+            properties = "max.poll.records=${app.search.batch.max-size:32}")
+    public void onSearchRequests(List<ConsumerRecord<String, String>> records) {
+        List<PendingSearch> pending = new ArrayList<>();
+        for (ConsumerRecord<String, String> record : records) {
+            try {
+                SearchRequestEvent request = objectMapper.readValue(record.value(), SearchRequestEvent.class);
+                if (!StringUtils.hasText(request.getUserId()) || !StringUtils.hasText(request.getQuery())) {
+                    log.warn("Skip processing: missing userId or query. key={}, userId={}, queryPresent={}",
+                            record.key(), request.getUserId(), StringUtils.hasText(request.getQuery()));
+                    continue;
+                }
+                String ragQuery = StringUtils.hasText(request.getRagQuery()) ? request.getRagQuery() : request.getQuery();
+                SearchResultCache.Key cacheKey = resultCache.key(request.getUserId(), request.getDocumentId(), ragQuery, topK);
+                List<SearchProcessedEvent.Hit> cached = resultCache.get(cacheKey);
+                if (cached != null) {
+                    publish(record.key(), request, ragQuery, cached, null);
+                } else {
+                    pending.add(new PendingSearch(record.key(), request, ragQuery, cacheKey));
+                }
+            } catch (Exception e) {
+                log.error("Failed to parse search.request message: {}", record.value(), e);
+            }
+        }
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        // 1) One embedding call for the whole batch
+        Observation batch = observationRegistry.getCurrentObservation();
+        String requestIds = pending.stream().map(p -> String.valueOf(p.request().getRequestId())).collect(Collectors.joining(","));
+        List<dev.langchain4j.data.embedding.Embedding> vectors = null;
+        try {
+            List<TextSegment> segments = pending.stream().map(p -> TextSegment.from(p.ragQuery())).toList();
+            vectors = span("search.embedding", requestIds, batch).observe(() -> embeddingModel.embedAll(segments)).content();
+        } catch (Exception e) {
+            log.warn("Failed to embed a batch of {} search requests, embedding them one by one: {}", pending.size(), e.toString());
+        }
+        if (vectors != null && vectors.size() != pending.size()) {
+            log.warn("Batch embedding returned {} vectors for {} search requests, embedding them one by one", vectors.size(), pending.size());
+            vectors = null;
+        }
+
+        // 2) Vector queries in parallel, 3) publish each result as soon as it is ready
+        List<CompletableFuture<Void>> searches = new ArrayList<>(pending.size());
+        for (int i = 0; i < pending.size(); i++) {
+            PendingSearch search = pending.get(i);
+            float[] queryVector = vectors == null ? null : vectors.get(i).vector();
+            searches.add(CompletableFuture.runAsync(() -> searchAndPublish(search, queryVector, batch), retrievalPool));
+        }
+        CompletableFuture.allOf(searches.toArray(CompletableFuture[]::new)).join();
+        log.info("Processed a batch of {} search requests", pending.size());
+    }
+
+    private void searchAndPublish(PendingSearch search, float[] batchVector, Observation batch) {
+        SearchRequestEvent request = search.request();
+        String requestId = String.valueOf(request.getRequestId());
+        try {
+            float[] queryVector = batchVector != null ? batchVector : span("search.embedding", requestId, batch)
+                    .observe(() -> embeddingModel.embed(search.ragQuery())).content().vector();
+            List<Embedding> hits = span("search.vector-query", requestId, batch)
+                    .observe(() -> retrievalService.retrieve(request.getUserId(), request.getDocumentId(),
+                            search.ragQuery(), queryVector, topK));
+            List<SearchProcessedEvent.Hit> embeddings = DirectSearchService.toHits(hits);
+            resultCache.put(search.cacheKey(), embeddings);
+            publish(search.key(), request, search.ragQuery(), embeddings, queryVector);
+        } catch (Exception e) {
+            log.error("Failed to process search request key={} userId={}", search.key(), request.getUserId(), e);
+        }
+    }
+
+    private void publish(String key, SearchRequestEvent request, String ragQuery, List<SearchProcessedEvent.Hit> embeddings,
+                         float[] queryVector) {
+        try {
+            SearchProcessedEvent processed = SearchProcessedEvent.builder()
+                    .query(request.getQuery())
+                    .ragQuery(ragQuery)
+                    .userId(request.getUserId())
+                    .requestId(request.getRequestId())
+                    .context(request.getContext())
+                    .embeddings(embeddings)
+                    .queryVector(queryVector)
+                    .build();
+
+            kafkaTemplate.send(processedTopic, key, objectMapper.writeValueAsString(processed));
+            log.debug("Published search.processed for userId={}, embeddings={}", request.getUserId(), embeddings.size());
+        } catch (Exception e) {
+            log.error("Failed to publish search result key={} userId={}", key, request.getUserId(), e);
+        }
+    }
+
+    // child of the Kafka batch consumer span, also on the retrieval pool threads; the batch embedding carries all request ids
+    private Observation span(String name, String requestIds, Observation batch) {
+        return Observation.createNotStarted(name, observationRegistry)
+                .parentObservation(batch)
+                .highCardinalityKeyValue("request.id", requestIds);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        retrievalPool.shutdownNow();
+    }
+
+    private record PendingSearch(String key, SearchRequestEvent request, String ragQuery, SearchResultCache.Key cacheKey) {
+    }
+}
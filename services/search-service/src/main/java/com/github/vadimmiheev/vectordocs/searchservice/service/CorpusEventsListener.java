@@ -0,0 +1,52 @@
+package com.github.vadimmiheev.vectordocs.searchservice.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.vadimmiheev.vectordocs.searchservice.datasource.ReplicaLagGuard;
+import com.github.vadimmiheev.vectordocs.searchservice.segment.VectorSegmentStore;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+/**
+ * Drops per-user local search state (vector segment, cached results) when a user's corpus changes.
+ * Every instance must see every event, so the listener uses its own throwaway consumer group.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CorpusEventsListener {
+
+    private final ObjectMapper objectMapper;
+    private final VectorSegmentStore segmentStore;
+    private final SearchResultCache resultCache;
+    private final ReplicaLagGuard replicaLagGuard;
+
+    @KafkaListener(topics = {
+            "${app.topics.documents-processed:documents.processed}",
+            "${app.topics.documents-deleted:documents.deleted}"
+    }, groupId = "${spring.kafka.consumer.group-id:search-service}-corpus-${random.uuid}",
+            properties = "auto.offset.reset=latest")
+    public void onCorpusChanged(String message,
+                                @Header(name = KafkaHeaders.RECEIVED_TOPIC, required = false) String topic) {
+        try {
+            JsonNode event = objectMapper.readTree(message);
+            String userId = event.path("userId").asText(null);
+            if (!StringUtils.hasText(userId)) {
+                log.warn("Skip corpus change: missing userId. topic={}", topic);
+                return;
+            }
+
+            replicaLagGuard.recordCorpusChange(userId);
+            resultCache.bumpCorpusVersion(userId);
+            segmentStore.invalidate(userId);
+            log.debug("Corpus changed for userId={} (topic {})", userId, topic);
+        } catch (Exception e) {
+            log.error("Failed to process corpus change message: {}", message, e);
+        }
+    }
+}
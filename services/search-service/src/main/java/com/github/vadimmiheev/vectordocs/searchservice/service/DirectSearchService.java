@@ -0,0 +1,87 @@
+package com.github.vadimmiheev.vectordocs.searchservice.service;
+
+import com.github.vadimmiheev.vectordocs.searchservice.dto.RetrieveResponse;
+import com.github.vadimmiheev.vectordocs.searchservice.dto.SearchProcessedEvent;
+import com.github.vadimmiheev.vectordocs.searchservice.entity.Embedding;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Retrieval-only search answered within the HTTP request: embed, query, return hits.
+ * Unlike the Kafka pipeline there is no query supplementation and no answer generation.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DirectSearchService {
+
+    private final RetrievalService retrievalService;
+    private final EmbeddingModel embeddingModel;
+    private final MeterRegistry meterRegistry;
+    private final SearchResultCache resultCache;
+
+    @Value("${app.search.top-k:5}")
+    private int defaultTopK = 5;
+
+    @Value("${app.search.retrieve.max-top-k:50}")
+    private int maxTopK = 50;
+
+    @Value("${app.search.retrieve.p99-target-ms:300}")
+    private long p99TargetMs = 300;
+
+    public RetrieveResponse retrieve(String userId, String query, UUID documentId, Integer topK) {
+        int k = topK == null || topK <= 0 ? defaultTopK : Math.min(topK, maxTopK);
+
+        long started = System.nanoTime();
+        SearchResultCache.Key cacheKey = resultCache.key(userId, documentId, query, k);
+        List<SearchProcessedEvent.Hit> hits = resultCache.get(cacheKey);
+        if (hits == null) {
+            float[] queryVector = embeddingModel.embed(query).content().vector();
+            hits = toHits(retrievalService.retrieve(userId, documentId, query, queryVector, k));
+            resultCache.put(cacheKey, hits);
+        }
+        long tookNanos = System.nanoTime() - started;
+
+        latencyTimer().record(Duration.ofNanos(tookNanos));
+        long tookMs = Duration.ofNanos(tookNanos).toMillis();
+        if (tookMs > p99TargetMs) {
+            log.warn("Direct retrieval over the p99 target ({} ms > {} ms) for userId={}", tookMs, p99TargetMs, userId);
+        }
+
+        return RetrieveResponse.builder()
+                .query(query)
+                .hits(hits)
+                .tookMs(tookMs)
+                .build();
+    }
+
+    static List<SearchProcessedEvent.Hit> toHits(List<Embedding> hits) {
+        return hits.stream()
+                .map(e -> SearchProcessedEvent.Hit.builder()
+                        .id(e.getId())
+                        .fileUuid(e.getFileUuid())
+                        .fileName(e.getFileName())
+                        .pageNumber(e.getPageNumber())
+                        .chunkText(e.getChunkText())
+                        .build())
+                .toList();
+    }
+
+    // the SLO bucket lets dashboards alert on the share of requests slower than the target
+    private Timer latencyTimer() {
+        return Timer.builder("search.retrieve.direct")
+                .description("End-to-end latency of POST /search/retrieve")
+                .publishPercentiles(0.5, 0.99)
+                .serviceLevelObjectives(Duration.ofMillis(p99TargetMs))
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,60 @@
+package com.github.vadimmiheev.vectordocs.searchservice.service;
+
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Turns free user text into a {@code to_tsquery('simple', ...)} expression for the lexical retrieval leg.
+ * Terms are OR-ed (questions rarely contain every word of the chunk) and identifiers such as {@code AB-123-X}
+ * or {@code ERR_42} are kept whole.
+ */
+final class LexicalQuery {
+
+    private static final Pattern TERM = Pattern.compile("[\\p{L}\\p{N}]+(?:[-_./][\\p{L}\\p{N}]+)*");
+
+    // the 'simple' configuration has no stop words, frequent words would match almost every chunk
+    private static final Set<String> STOP_WORDS = Set.of(
+            "the", "and", "for", "are", "was", "were", "what", "which", "who", "whom", "how", "why", "when", "where",
+            "this", "that", "these", "those", "with", "from", "into", "about", "does", "did", "can", "could",
+            "should", "would", "have", "has", "had", "not", "you", "your", "there", "their", "its", "any", "all");
+
+    private static final int MAX_TERMS = 16;
+
+    private LexicalQuery() {
+    }
+
+    /**
+     * @return tsquery text, or {@code null} when the text has no searchable terms
+     */
+    static String toTsQuery(String text) {
+        if (text == null || text.isBlank()) {
+            return null;
+        }
+
+        Set<String> terms = new LinkedHashSet<>();
+        Matcher matcher = TERM.matcher(text.toLowerCase(Locale.ROOT));
+        while (matcher.find() && terms.size() < MAX_TERMS) {
+            String term = matcher.group();
+            boolean hasDigit = term.chars().anyMatch(Character::isDigit);
+            if (hasDigit || (term.length() > 2 && !STOP_WORDS.contains(term))) {
+                terms.add(term);
+            }
+        }
+        if (terms.isEmpty()) {
+            return null;
+        }
+
+        // quoted lexemes, so that '-', '.' or '/' inside identifiers are not read as tsquery syntax
+        StringBuilder query = new StringBuilder();
+        for (String term : terms) {
+            if (!query.isEmpty()) {
+                query.append(" | ");
+            }
+            query.append('\'').append(term).append('\'');
+        }
+        return query.toString();
+    }
+}
@@ -0,0 +1,11 @@
+package com.github.vadimmiheev.vectordocs.searchservice.service;
+
+/**
+ * Representation used for the first stage of a pgvector search. Candidates found on the quantized form
+ * are always re-ranked with the full precision vectors.
+ */
+public enum QuantizationMode {
+    NONE,
+    BINARY,
+    HALFVEC
+}
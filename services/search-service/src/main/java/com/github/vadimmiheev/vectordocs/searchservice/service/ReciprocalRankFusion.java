@@ -0,0 +1,39 @@
+package com.github.vadimmiheev.vectordocs.searchservice.service;
+
+import com.github.vadimmiheev.vectordocs.searchservice.entity.Embedding;
+
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reciprocal rank fusion: every ranking contributes {@code 1 / (k + rank)} for each chunk it contains, so chunks
+ * found by several legs float up without the raw scores (cosine distance, ts_rank) having to be comparable.
+ */
+final class ReciprocalRankFusion {
+
+    static final int DEFAULT_K = 60;
+
+    private ReciprocalRankFusion() {
+    }
+
+    static List<Embedding> fuse(List<List<Embedding>> rankings, int k, int topK) {
+        Map<Long, Double> scores = new LinkedHashMap<>();
+        Map<Long, Embedding> chunks = new LinkedHashMap<>();
+        for (List<Embedding> ranking : rankings) {
+            for (int rank = 0; rank < ranking.size(); rank++) {
+                Embedding chunk = ranking.get(rank);
+                scores.merge(chunk.getId(), 1.0 / (k + rank + 1), Double::sum);
+                chunks.putIfAbsent(chunk.getId(), chunk);
+            }
+        }
+
+        // stable sort: on equal scores the earlier leg (and better rank in it) wins
+        return scores.entrySet().stream()
+                .sorted(Map.Entry.<Long, Double>comparingByValue(Comparator.reverseOrder()))
+                .limit(topK)
+                .map(e -> chunks.get(e.getKey()))
+                .toList();
+    }
+}
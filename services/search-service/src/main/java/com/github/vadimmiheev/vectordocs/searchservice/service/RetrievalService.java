@@ -0,0 +1,218 @@
+package com.github.vadimmiheev.vectordocs.searchservice.service;
+
+import com.github.vadimmiheev.vectordocs.searchservice.datasource.ReadRouting;
+import com.github.vadimmiheev.vectordocs.searchservice.entity.Embedding;
+import com.github.vadimmiheev.vectordocs.searchservice.repository.EmbeddingRepository;
+import com.github.vadimmiheev.vectordocs.searchservice.rerank.RerankService;
+import com.github.vadimmiheev.vectordocs.searchservice.segment.SegmentSearcher;
+import com.github.vadimmiheev.vectordocs.searchservice.segment.VectorSegment;
+import com.github.vadimmiheev.vectordocs.searchservice.segment.VectorSegmentStore;
+import com.github.vadimmiheev.vectordocs.searchservice.similarity.MaximalMarginalRelevance;
+import com.github.vadimmiheev.vectordocs.searchservice.similarity.ScoredRow;
+import com.github.vadimmiheev.vectordocs.searchservice.similarity.SimilarityKernel;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Finds the chunks closest to a query vector. Document-scoped searches are answered by an exact in-JVM scan
+ * of the user's vector segment when segments are enabled, everything else goes to pgvector, optionally through a
+ * quantized first stage ({@link QuantizationMode}). With hybrid search enabled a full-text leg runs next to the
+ * vector leg and both rankings are merged with {@link ReciprocalRankFusion}. The final top-K can be picked from a larger
+ * candidate set by maximal marginal relevance, which also drops near-duplicates of overlapping chunks, and re-ranked
+ * by a second-stage scorer ({@link RerankService}). User-wide searches over many documents can be fanned out
+ * per document group ({@link ShardedRetrieval}).
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class RetrievalService {
+
+    private final EmbeddingRepository embeddingRepository;
+    private final VectorSegmentStore segmentStore;
+    private final SegmentSearcher segmentSearcher;
+    private final MeterRegistry meterRegistry;
+    private final SimilarityKernel similarityKernel;
+    private final RerankService rerankService;
+    private final ReadRouting readRouting;
+    private final ShardedRetrieval shardedRetrieval;
+
+    // the lexical leg only waits on Postgres, a virtual thread per request is enough
+    private final ExecutorService lexicalExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    @Value("${app.search.quantization:NONE}")
+    private QuantizationMode quantization = QuantizationMode.NONE;
+
+    // candidates fetched from the quantized representation before the full precision refinement
+    @Value("${app.search.quantized.refine-candidates:50}")
+    private int refineCandidates = 50;
+
+    @Value("${app.search.hybrid.enabled:false}")
+    private boolean hybridEnabled = false;
+
+    // depth of each leg's ranking that takes part in the fusion
+    @Value("${app.search.hybrid.candidates:20}")
+    private int hybridCandidates = 20;
+
+    @Value("${app.search.hybrid.rrf-k:60}")
+    private int rrfK = ReciprocalRankFusion.DEFAULT_K;
+
+    @Value("${app.search.hybrid.lexical-timeout-ms:2000}")
+    private long lexicalTimeoutMs = 2000;
+
+    @Value("${app.search.mmr.enabled:false}")
+    private boolean mmrEnabled = false;
+
+    // 1 = pure relevance, 0 = pure diversity
+    @Value("${app.search.mmr.lambda:0.7}")
+    private float mmrLambda = 0.7f;
+
+    @Value("${app.search.mmr.overfetch:4}")
+    private int mmrOverfetch = 4;
+
+    @Value("${app.search.mmr.duplicate-threshold:0.95}")
+    private float duplicateThreshold = 0.95f;
+
+    public List<Embedding> retrieve(String userId, UUID documentId, String queryText, float[] queryVector, int topK) {
+        boolean rerank = rerankService.isEnabled() && queryText != null;
+        if (!mmrEnabled && !rerank) {
+            return retrieveCandidates(userId, documentId, queryText, queryVector, topK);
+        }
+
+        int fetch = Math.max(topK, Math.max(mmrEnabled ? topK * mmrOverfetch : 0, rerank ? rerankService.candidates() : 0));
+        List<Embedding> candidates = retrieveCandidates(userId, documentId, queryText, queryVector, fetch);
+
+        // MMR first so the re-ranker does not spend its budget on near-duplicates, it then picks the final top-K
+        int pool = rerank ? Math.max(topK, rerankService.candidates()) : topK;
+        List<Embedding> diverse = mmrEnabled ? timed("mmr", () -> diversify(queryVector, candidates, pool)) : candidates;
+        return rerank ? timed("rerank", () -> rerankService.rerank(queryText, diverse, topK)) : diverse;
+    }
+
+    private List<Embedding> diversify(float[] queryVector, List<Embedding> candidates, int topK) {
+        MaximalMarginalRelevance mmr = new MaximalMarginalRelevance(similarityKernel, mmrLambda, duplicateThreshold);
+        int[] selected = mmr.select(queryVector, candidates.stream().map(Embedding::getVector).toList(), topK);
+        return Arrays.stream(selected).mapToObj(candidates::get).toList();
+    }
+
+    private List<Embedding> retrieveCandidates(String userId, UUID documentId, String queryText, float[] queryVector, int topK) {
+        String tsQuery = hybridEnabled ? LexicalQuery.toTsQuery(queryText) : null;
+        if (tsQuery == null) {
+            return timed("vector", () -> retrieveByVector(userId, documentId, queryVector, topK));
+        }
+
+        int candidates = Math.max(hybridCandidates, topK);
+        CompletableFuture<List<Embedding>> lexical = CompletableFuture.supplyAsync(
+                () -> timed("lexical", () -> retrieveByText(userId, documentId, tsQuery, candidates)), lexicalExecutor);
+        List<Embedding> vector = timed("vector", () -> retrieveByVector(userId, documentId, queryVector, candidates));
+
+        return ReciprocalRankFusion.fuse(List.of(vector, awaitLexical(lexical, userId)), rrfK, topK);
+    }
+
+    private List<Embedding> retrieveByText(String userId, UUID documentId, String tsQuery, int limit) {
+        return readRouting.forSearch(userId, () -> documentId == null
+                ? embeddingRepository.findTopLexical(userId, tsQuery, Limit.of(limit))
+                : embeddingRepository.findTopLexicalByDoc(userId, tsQuery, documentId, Limit.of(limit)));
+    }
+
+    // a slow or failing lexical leg degrades the answer to pure vector search instead of failing it
+    private List<Embedding> awaitLexical(CompletableFuture<List<Embedding>> lexical, String userId) {
+        try {
+            return lexical.get(lexicalTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            lexical.cancel(true);
+            return List.of();
+        } catch (Exception e) {
+            lexical.cancel(true);
+            log.warn("Lexical search failed for userId={}, using vector results only: {}", userId, e.toString());
+            return List.of();
+        }
+    }
+
+    private <T> T timed(String leg, Supplier<T> search) {
+        return Timer.builder("search.retrieval.leg")
+                .description("Latency of a single retrieval leg")
+                .tag("leg", leg)
+                .register(meterRegistry)
+                .record(search);
+    }
+
+    private List<Embedding> retrieveByVector(String userId, UUID documentId, float[] queryVector, int topK) {
+        if (documentId != null && segmentStore.isEnabled()) {
+            List<Embedding> local = retrieveFromSegment(userId, documentId, queryVector, topK);
+            if (local != null) {
+                return local;
+            }
+        }
+
+        if (documentId == null && shardedRetrieval.isEnabled()) {
+            List<Embedding> merged = shardedRetrieval.retrieve(userId, queryVector, topK, quantization, Math.max(refineCandidates, topK));
+            if (merged != null) {
+                return merged;
+            }
+        }
+
+        String pgVectorString = Arrays.toString(queryVector);
+        int candidates = Math.max(refineCandidates, topK);
+        return readRouting.forSearch(userId, () -> switch (quantization) {
+            case NONE -> documentId == null
+                    ? embeddingRepository.findTopSimilar(userId, pgVectorString, Limit.of(topK))
+                    : embeddingRepository.findTopSimilarByDoc(userId, pgVectorString, documentId, Limit.of(topK));
+            case BINARY -> documentId == null
+                    ? embeddingRepository.findTopSimilarBinary(userId, pgVectorString, candidates, Limit.of(topK))
+                    : embeddingRepository.findTopSimilarBinaryByDoc(userId, pgVectorString, documentId, candidates, Limit.of(topK));
+            case HALFVEC -> documentId == null
+                    ? embeddingRepository.findTopSimilarHalf(userId, pgVectorString, candidates, Limit.of(topK))
+                    : embeddingRepository.findTopSimilarHalfByDoc(userId, pgVectorString, documentId, candidates, Limit.of(topK));
+        });
+    }
+
+    /**
+     * @return hits ordered by similarity, or {@code null} when the segment cannot answer and pgvector should be used
+     */
+    private List<Embedding> retrieveFromSegment(String userId, UUID documentId, float[] queryVector, int topK) {
+        try {
+            VectorSegment segment = segmentStore.acquire(userId);
+            VectorSegment.RowRange range = segment.rowRange(documentId);
+            if (range == null) {
+                return null; // document not in the segment yet
+            }
+
+            List<ScoredRow> scored = segmentSearcher.search(segment, range, queryVector, topK);
+            Map<Long, Embedding> rows = new HashMap<>();
+            embeddingRepository.findAllByUserIdAndIdIn(userId, scored.stream().map(ScoredRow::rowId).toList())
+                    .forEach(e -> rows.put(e.getId(), e));
+
+            // primary key lookup loses the order, restore it from the scores
+            return scored.stream()
+                    .map(s -> rows.get(s.rowId()))
+                    .filter(Objects::nonNull)
+                    .toList();
+        } catch (Exception e) {
+            log.warn("Local segment search failed for userId={} documentId={}, falling back to pgvector: {}", userId, documentId, e.getMessage());
+            return null;
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        lexicalExecutor.shutdownNow();
+    }
+}
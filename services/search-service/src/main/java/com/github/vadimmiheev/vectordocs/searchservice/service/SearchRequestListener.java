@@ -4,32 +4,36 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.vadimmiheev.vectordocs.searchservice.dto.SearchProcessedEvent;
 import com.github.vadimmiheev.vectordocs.searchservice.dto.SearchRequestEvent;
 import com.github.vadimmiheev.vectordocs.searchservice.entity.Embedding;
-import com.github.vadimmiheev.vectordocs.searchservice.repository.EmbeddingRepository;
 import dev.langchain4j.model.embedding.EmbeddingModel;
 import dev.langchain4j.model.output.Response;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.data.domain.Limit;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.KafkaHeaders;
 import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 
-import java.util.Arrays;
 import java.util.List;
-import java.util.stream.Collectors;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
+@ConditionalOnProperty(name = "app.search.batch.enabled", havingValue = "false", matchIfMissing = true)
 public class SearchRequestListener {
 
-    private final EmbeddingRepository embeddingRepository;
+    private final RetrievalService retrievalService;
     private final EmbeddingModel embeddingModel;
     private final KafkaTemplate<String, String> kafkaTemplate;
     private final ObjectMapper objectMapper;
+    private final SearchResultCache resultCache;
+    private final SpeculativeSearch speculativeSearch;
+    private final ObservationRegistry observationRegistry;
 
     @Value("${app.topics.search-processed:search.processed}")
     private String processedTopic;
@@ -37,49 +41,72 @@ public class SearchRequestListener {
     @Value("${app.search.top-k:5}")
     private int topK;
 
-    @KafkaListener(topics = "${app.topics.search-request-supplemented}", groupId = "${spring.kafka.consumer.group-id:search-service}")
-    public void onSearchRequest(String message,
-                                @Header(name = "kafka_receivedMessageKey", required = false) String key) {
+    // the raw search.request is only subscribed with speculative search enabled
+    @KafkaListener(topics = "#{@speculativeSearch.listenerTopics()}", groupId = "${spring.kafka.consumer.group-id:search-service}")
+    public void onMessage(String message,
+                          @Header(name = "kafka_receivedMessageKey", required = false) String key,
+                          @Header(name = KafkaHeaders.RECEIVED_TOPIC, required = false) String topic) {
+        if (speculativeSearch.isRawTopic(topic)) {
+            speculativeSearch.start(message);
+        } else {
+            onSearchRequest(message, key);
+        }
+    }
+
+    public void onSearchRequest(String message, String key) {
         try {
             SearchRequestEvent request = objectMapper.readValue(message, SearchRequestEvent.class);
             String userId = request.getUserId();
             String query = request.getQuery();
-            String ragQuery = request.getRagQuery().isEmpty() ? request.getQuery() : request.getRagQuery();
+            String ragQuery = StringUtils.hasText(request.getRagQuery()) ? request.getRagQuery() : request.getQuery();
 
             if (!StringUtils.hasText(userId) || !StringUtils.hasText(query)) {
                 log.warn("Skip processing: missing userId or query. key={}, userId={}, queryPresent={}", key, userId, StringUtils.hasText(query));
                 return;
             }
 
-            // 1) Build query embedding
-            Response<dev.langchain4j.data.embedding.Embedding> response = embeddingModel.embed(ragQuery);
-            float[] queryVector = response.content().vector();
-			String pgVectorString = Arrays.toString(queryVector);
+            // Repeated question on an unchanged corpus: no embedding call, no DB query
+            SearchResultCache.Key cacheKey = resultCache.key(userId, request.getDocumentId(), ragQuery, topK);
+            List<SearchProcessedEvent.Hit> embeddings = resultCache.get(cacheKey);
+            float[] queryVector = null;
+            if (embeddings == null) {
+                // The raw question may already have been searched while it was being rewritten
+                List<Embedding> hits = null;
+                SpeculativeSearch.Outcome speculation = speculativeSearch.claim(request, ragQuery);
+                if (speculation != null) {
+                    hits = speculation.hits();
+                    queryVector = speculation.queryVector();
+                }
+
+                // 1) Build query embedding
+                if (queryVector == null) {
+                    Response<dev.langchain4j.data.embedding.Embedding> response = span("search.embedding", request)
+                            .observe(() -> embeddingModel.embed(ragQuery));
+                    queryVector = response.content().vector();
+                }
 
-            // 2) Fetch top-K similar chunks for this user
-            List<Embedding> hits;
-            if (request.getDocumentId() == null) {
-                hits = embeddingRepository.findTopSimilar(userId, pgVectorString, Limit.of(topK));
+                // 2) Fetch top-K similar chunks for this user
+                if (hits == null) {
+                    float[] vector = queryVector;
+                    hits = span("search.vector-query", request)
+                            .observe(() -> retrievalService.retrieve(userId, request.getDocumentId(), ragQuery, vector, topK));
+                }
+
+                // 3) Map to processed event
+                embeddings = DirectSearchService.toHits(hits);
+                resultCache.put(cacheKey, embeddings);
             } else {
-                hits = embeddingRepository.findTopSimilarByDoc(userId, pgVectorString, request.getDocumentId(), Limit.of(topK));
+                speculativeSearch.discard(request.getRequestId());
             }
 
-            // 3) Map to processed event
-            List<SearchProcessedEvent.Hit> embeddings = hits.stream()
-                    .map(e -> SearchProcessedEvent.Hit.builder()
-                            .fileUuid(e.getFileUuid())
-                            .fileName(e.getFileName())
-                            .pageNumber(e.getPageNumber())
-                            .chunkText(e.getChunkText())
-                            .build())
-                    .collect(Collectors.toList());
-
             SearchProcessedEvent processed = SearchProcessedEvent.builder()
                     .query(query)
+                    .ragQuery(ragQuery)
                     .userId(userId)
                     .requestId(request.getRequestId())
                     .context(request.getContext())
                     .embeddings(embeddings)
+                    .queryVector(queryVector)
                     .build();
 
             String payload = objectMapper.writeValueAsString(processed);
@@ -89,4 +116,10 @@ public class SearchRequestListener {
             log.error("Failed to process search.request message: {}", message, e);
         }
     }
+
+    // child of the Kafka consumer span, tagged with the chat request it belongs to
+    private Observation span(String name, SearchRequestEvent request) {
+        return Observation.createNotStarted(name, observationRegistry)
+                .highCardinalityKeyValue("request.id", String.valueOf(request.getRequestId()));
+    }
 }
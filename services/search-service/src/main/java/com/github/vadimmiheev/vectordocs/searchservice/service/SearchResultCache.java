@@ -0,0 +1,108 @@
+package com.github.vadimmiheev.vectordocs.searchservice.service;
+
+import com.github.vadimmiheev.vectordocs.searchservice.dto.SearchProcessedEvent;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory LRU of search hits for repeated (userId, documentId, ragQuery) searches.
+ * Keys carry the user's corpus version, which {@link CorpusEventsListener} bumps on every document change, so an entry
+ * can never outlive the corpus it was computed from; superseded entries simply age out. Versions come from one
+ * service-wide counter and are forgotten once they are older than the TTL: every entry keyed by an earlier version
+ * has expired by then, so a forgotten user falls back to version 0 without reviving anything.
+ * Results can lag an upload by the delivery delay of its documents.processed event, so the cache is off by default.
+ */
+@Component
+@RequiredArgsConstructor
+public class SearchResultCache {
+
+    private final MeterRegistry meterRegistry;
+
+    private final AtomicLong versionClock = new AtomicLong();
+    private final Map<String, CorpusVersion> corpusVersions = new ConcurrentHashMap<>();
+
+    @Value("${app.search.cache.enabled:false}")
+    private boolean enabled = false;
+
+    @Value("${app.search.cache.max-entries:2000}")
+    private int maxEntries = 2000;
+
+    @Value("${app.search.cache.ttl:PT10M}")
+    private Duration ttl = Duration.ofMinutes(10);
+
+    // access ordered, guarded by itself
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+            return size() > maxEntries;
+        }
+    };
+
+    /**
+     * Captures the current corpus version, take the key before searching so that a corpus change during the
+     * search makes the result unreachable instead of stale.
+     */
+    public Key key(String userId, UUID documentId, String query, int topK) {
+        return new Key(userId, documentId, query, topK, corpusVersion(userId));
+    }
+
+    /**
+     * @return cached hits, or {@code null} on a miss
+     */
+    public List<SearchProcessedEvent.Hit> get(Key key) {
+        if (!enabled) {
+            return null;
+        }
+
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+            if (entry != null && entry.expiresAt() < System.currentTimeMillis()) {
+                entries.remove(key);
+                entry = null;
+            }
+        }
+        meterRegistry.counter("search.result.cache", "result", entry == null ? "miss" : "hit").increment();
+        return entry == null ? null : entry.hits();
+    }
+
+    public void put(Key key, List<SearchProcessedEvent.Hit> hits) {
+        if (!enabled || key.corpusVersion() != corpusVersion(key.userId())) {
+            return;
+        }
+        synchronized (entries) {
+            entries.put(key, new Entry(List.copyOf(hits), System.currentTimeMillis() + ttl.toMillis()));
+        }
+    }
+
+    public void bumpCorpusVersion(String userId) {
+        long now = System.currentTimeMillis();
+        // bumps are rare (document events), pruning here keeps the map to users with recent changes
+        corpusVersions.values().removeIf(v -> v.bumpedAt() + ttl.toMillis() < now);
+        corpusVersions.put(userId, new CorpusVersion(versionClock.incrementAndGet(), now));
+    }
+
+    public long corpusVersion(String userId) {
+        CorpusVersion version = corpusVersions.get(userId);
+        return version == null ? 0L : version.value();
+    }
+
+    public record Key(String userId, UUID documentId, String query, int topK, long corpusVersion) {
+    }
+
+    private record CorpusVersion(long value, long bumpedAt) {
+    }
+
+    private record Entry(List<SearchProcessedEvent.Hit> hits, long expiresAt) {
+    }
+}
@@ -0,0 +1,186 @@
+package com.github.vadimmiheev.vectordocs.searchservice.service;
+
+import com.github.vadimmiheev.vectordocs.searchservice.datasource.ReadRouting;
+import com.github.vadimmiheev.vectordocs.searchservice.entity.Embedding;
+import com.github.vadimmiheev.vectordocs.searchservice.repository.EmbeddingRepository;
+import com.github.vadimmiheev.vectordocs.searchservice.similarity.ScoredRow;
+import com.github.vadimmiheev.vectordocs.searchservice.similarity.SimilarityKernel;
+import com.github.vadimmiheev.vectordocs.searchservice.similarity.TopKSelector;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * User-wide search split into document groups queried concurrently. Each shard's hits are merged into a running
+ * top-K as soon as the shard answers; the result is returned once all shards answered or the deadline passed,
+ * so one slow shard bounds the latency instead of a single query over thousands of documents.
+ * Shards use the same first stage ({@link QuantizationMode}) as the unsharded search. Every shard query runs with a
+ * {@code statement_timeout} of the time left until the deadline, so Postgres stops it and frees the pool thread and
+ * the connection once nobody waits for its hits.
+ */
+@Slf4j
+@Component
+public class ShardedRetrieval {
+
+    private final EmbeddingRepository embeddingRepository;
+    private final SimilarityKernel similarityKernel;
+    private final ReadRouting readRouting;
+    private final MeterRegistry meterRegistry;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate shardTransaction;
+    private final ExecutorService shardPool;
+
+    @Value("${app.search.sharded.enabled:false}")
+    private boolean enabled = false;
+
+    @Value("${app.search.sharded.shards:8}")
+    private int shards = 8;
+
+    // below this many documents a single query is cheaper than fanning out
+    @Value("${app.search.sharded.min-documents:50}")
+    private int minDocuments = 50;
+
+    @Value("${app.search.sharded.deadline-ms:500}")
+    private long deadlineMs = 500;
+
+    public ShardedRetrieval(EmbeddingRepository embeddingRepository,
+                            SimilarityKernel similarityKernel,
+                            ReadRouting readRouting,
+                            MeterRegistry meterRegistry,
+                            JdbcTemplate jdbcTemplate,
+                            PlatformTransactionManager transactionManager,
+                            @Value("${app.search.sharded.parallelism:16}") int parallelism) {
+        this.embeddingRepository = embeddingRepository;
+        this.similarityKernel = similarityKernel;
+        this.readRouting = readRouting;
+        this.meterRegistry = meterRegistry;
+        this.jdbcTemplate = jdbcTemplate;
+        // SET LOCAL scope for the statement timeout
+        this.shardTransaction = new TransactionTemplate(transactionManager);
+        this.shardTransaction.setReadOnly(true);
+        AtomicInteger threads = new AtomicInteger();
+        this.shardPool = Executors.newFixedThreadPool(parallelism, r -> {
+            Thread thread = new Thread(r, "search-shard-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @param candidates rows taken from the quantized index per shard before the exact refinement
+     * @return merged top-K by cosine similarity, or {@code null} when the user has too few documents to shard
+     */
+    public List<Embedding> retrieve(String userId, float[] queryVector, int topK, QuantizationMode quantization, int candidates) {
+        List<UUID> documents = readRouting.forSearch(userId, () -> embeddingRepository.findDocumentIdsByUser(userId));
+        if (documents.size() < minDocuments) {
+            return null;
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(deadlineMs);
+        String pgVectorString = Arrays.toString(queryVector);
+        float queryNorm = similarityKernel.norm(queryVector);
+        Merger merger = new Merger(topK);
+
+        List<CompletableFuture<Void>> pending = new ArrayList<>();
+        for (List<UUID> group : split(documents, shards)) {
+            pending.add(CompletableFuture
+                    .supplyAsync(() -> queryShard(userId, pgVectorString, group, topK, quantization, candidates, deadline), shardPool)
+                    .thenAccept(hits -> merger.offer(hits, queryVector, queryNorm)));
+        }
+
+        try {
+            CompletableFuture.allOf(pending.toArray(CompletableFuture[]::new)).get(deadlineMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            long late = pending.stream().filter(f -> !f.isDone()).count();
+            // only drops the hits, the running queries are ended by their statement_timeout
+            pending.forEach(f -> f.cancel(false));
+            meterRegistry.counter("search.sharded.deadline-exceeded").increment();
+            log.warn("Sharded search for userId={} hit the {} ms deadline, {} of {} shards missing", userId, deadlineMs, late, pending.size());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            // a failed shard only loses its own hits
+            log.warn("Sharded search for userId={} had failing shards: {}", userId, e.toString());
+        }
+        return merger.results();
+    }
+
+    private List<Embedding> queryShard(String userId, String pgVectorString, List<UUID> group, int topK,
+                                       QuantizationMode quantization, int candidates, long deadline) {
+        long remainingMs = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+        if (remainingMs <= 0) {
+            return List.of(); // waited in the pool past the deadline
+        }
+        return readRouting.forSearch(userId, () -> shardTransaction.execute(status -> {
+            jdbcTemplate.queryForObject("SELECT set_config('statement_timeout', ?, true)", String.class, remainingMs + "ms");
+            return switch (quantization) {
+                case NONE -> embeddingRepository.findTopSimilarInDocs(userId, pgVectorString, group, Limit.of(topK));
+                case BINARY -> embeddingRepository.findTopSimilarBinaryInDocs(userId, pgVectorString, group, candidates, Limit.of(topK));
+                case HALFVEC -> embeddingRepository.findTopSimilarHalfInDocs(userId, pgVectorString, group, candidates, Limit.of(topK));
+            };
+        }));
+    }
+
+    static List<List<UUID>> split(List<UUID> documents, int shards) {
+        int count = Math.max(1, Math.min(shards, documents.size()));
+        List<List<UUID>> groups = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            groups.add(new ArrayList<>());
+        }
+        for (int i = 0; i < documents.size(); i++) {
+            groups.get(i % count).add(documents.get(i));
+        }
+        return groups;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        shardPool.shutdownNow();
+    }
+
+    private final class Merger {
+        private final TopKSelector selector;
+        private final Map<Long, Embedding> rows = new HashMap<>();
+
+        private Merger(int topK) {
+            this.selector = new TopKSelector(topK);
+        }
+
+        // scores are recomputed in the JVM, the rows carry their vectors
+        synchronized void offer(List<Embedding> hits, float[] queryVector, float queryNorm) {
+            for (Embedding hit : hits) {
+                float norm = similarityKernel.norm(hit.getVector());
+                float score = queryNorm == 0f || norm == 0f ? 0f : similarityKernel.dot(queryVector, hit.getVector()) / (queryNorm * norm);
+                selector.offer(hit.getId(), score);
+                rows.put(hit.getId(), hit);
+            }
+        }
+
+        synchronized List<Embedding> results() {
+            return selector.results().stream().map(ScoredRow::rowId).map(rows::get).toList();
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package com.github.vadimmiheev.vectordocs.searchservice.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.vadimmiheev.vectordocs.searchservice.dto.SearchRequestEvent;
+import com.github.vadimmiheev.vectordocs.searchservice.entity.Embedding;
+import com.github.vadimmiheev.vectordocs.searchservice.similarity.SimilarityKernel;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Searches with the raw question of a {@code search.request} while answer-generator is still rewriting it. When the
+ * supplemented request arrives, its rag query either matches the raw question closely enough (same text, or query
+ * vectors within the similarity threshold) and the speculative hits are used as they are, or the search runs again
+ * with the rewritten query, reusing its already computed vector.
+ * <p>
+ * Both topics are consumed by the same listener so that, with equal partition counts, the raw and the supplemented
+ * request of one key land on the same instance.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SpeculativeSearch {
+
+    private final RetrievalService retrievalService;
+    private final EmbeddingModel embeddingModel;
+    private final ObjectMapper objectMapper;
+    private final SimilarityKernel similarityKernel;
+    private final MeterRegistry meterRegistry;
+
+    // embedding call plus a DB query, both just waiting on I/O
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final Map<String, Pending> pending = new ConcurrentHashMap<>();
+
+    @Value("${app.search.speculative.enabled:false}")
+    private boolean enabled = false;
+
+    @Value("${app.topics.search-request:search.request}")
+    private String rawTopic = "search.request";
+
+    @Value("${app.topics.search-request-supplemented:search.request.supplemented}")
+    private String supplementedTopic = "search.request.supplemented";
+
+    @Value("${app.search.speculative.similarity-threshold:0.9}")
+    private float similarityThreshold = 0.9f;
+
+    // how long a supplemented request waits for a speculative search still in flight
+    @Value("${app.search.speculative.wait-ms:1000}")
+    private long waitMs = 1000;
+
+    // unclaimed speculations (request served from cache, supplementation failed) are dropped after this
+    @Value("${app.search.speculative.ttl-ms:30000}")
+    private long ttlMs = 30000;
+
+    @Value("${app.search.top-k:5}")
+    private int topK = 5;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public boolean isRawTopic(String topic) {
+        return enabled && rawTopic.equals(topic);
+    }
+
+    // topics of the single-record search listener
+    public String[] listenerTopics() {
+        return enabled ? new String[]{supplementedTopic, rawTopic} : new String[]{supplementedTopic};
+    }
+
+    public void start(String message) {
+        try {
+            SearchRequestEvent request = objectMapper.readValue(message, SearchRequestEvent.class);
+            if (!StringUtils.hasText(request.getRequestId()) || !StringUtils.hasText(request.getUserId())
+                    || !StringUtils.hasText(request.getQuery())) {
+                return;
+            }
+
+            evictExpired();
+            String query = request.getQuery();
+            CompletableFuture<Speculation> search = CompletableFuture.supplyAsync(() -> {
+                float[] vector = embeddingModel.embed(query).content().vector();
+                List<Embedding> hits = retrievalService.retrieve(request.getUserId(), request.getDocumentId(), query, vector, topK);
+                return new Speculation(query, vector, hits);
+            }, executor);
+            pending.put(request.getRequestId(), new Pending(search, System.nanoTime()));
+        } catch (Exception e) {
+            log.warn("Failed to start speculative search: {}", e.toString());
+        }
+    }
+
+    /**
+     * @return hits and/or the rag query vector to reuse, or {@code null} when there is no usable speculation
+     */
+    public Outcome claim(SearchRequestEvent request, String ragQuery) {
+        if (!enabled || request.getRequestId() == null) {
+            return null;
+        }
+        Pending speculation = pending.remove(request.getRequestId());
+        if (speculation == null) {
+            count("missing");
+            return null;
+        }
+
+        Speculation raw;
+        try {
+            raw = speculation.search().get(waitMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (Exception e) {
+            speculation.search().cancel(true);
+            count("failed");
+            log.debug("Speculative search unusable for requestId={}: {}", request.getRequestId(), e.toString());
+            return null;
+        }
+
+        if (normalize(raw.query()).equals(normalize(ragQuery))) {
+            count("same-query");
+            return new Outcome(raw.hits(), raw.queryVector());
+        }
+
+        float[] ragVector = embeddingModel.embed(ragQuery).content().vector();
+        if (similarityKernel.cosine(raw.queryVector(), ragVector) >= similarityThreshold) {
+            count("similar");
+            return new Outcome(raw.hits(), ragVector);
+        }
+        count("diverged");
+        return new Outcome(null, ragVector);
+    }
+
+    public void discard(String requestId) {
+        if (enabled && requestId != null) {
+            Pending speculation = pending.remove(requestId);
+            if (speculation != null) {
+                speculation.search().cancel(true);
+            }
+        }
+    }
+
+    private void evictExpired() {
+        long now = System.nanoTime();
+        pending.values().removeIf(p -> now - p.startedAtNanos() > TimeUnit.MILLISECONDS.toNanos(ttlMs));
+    }
+
+    private void count(String outcome) {
+        Counter.builder("search.speculative")
+                .description("Speculative raw-query searches by outcome")
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    private static String normalize(String query) {
+        return query == null ? "" : query.strip().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * @param hits        speculative hits to publish, {@code null} when the search must run again
+     * @param queryVector vector of the rag query
+     */
+    public record Outcome(List<Embedding> hits, float[] queryVector) {
+    }
+
+    private record Speculation(String query, float[] queryVector, List<Embedding> hits) {
+    }
+
+    private record Pending(CompletableFuture<Speculation> search, long startedAtNanos) {
+    }
+}
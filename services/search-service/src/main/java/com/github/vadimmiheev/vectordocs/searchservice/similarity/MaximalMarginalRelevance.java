@@ -0,0 +1,94 @@
+package com.github.vadimmiheev.vectordocs.searchservice.similarity;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Greedy maximal marginal relevance: picks the candidate maximising
+ * {@code lambda * sim(query, c) - (1 - lambda) * max(sim(c, selected))}, so each pick is relevant but not a repeat
+ * of what was already chosen. Candidates at or above {@code duplicateThreshold} cosine to a selected one are dropped.
+ */
+public final class MaximalMarginalRelevance {
+
+    private final SimilarityKernel kernel;
+    private final float lambda;
+    private final float duplicateThreshold;
+
+    public MaximalMarginalRelevance(SimilarityKernel kernel, float lambda, float duplicateThreshold) {
+        if (lambda < 0f || lambda > 1f) {
+            throw new IllegalArgumentException("lambda must be within [0, 1]: " + lambda);
+        }
+        this.kernel = kernel;
+        this.lambda = lambda;
+        this.duplicateThreshold = duplicateThreshold;
+    }
+
+    /**
+     * @param candidates candidate vectors, {@code null} entries (not vectorized yet) count as unrelated to everything
+     * @return indexes of the selected candidates in selection order, at most {@code k}
+     */
+    public int[] select(float[] query, List<float[]> candidates, int k) {
+        int n = candidates.size();
+        float queryNorm = kernel.norm(query);
+        float[] norms = new float[n];
+        float[] relevance = new float[n];
+        for (int i = 0; i < n; i++) {
+            float[] candidate = candidates.get(i);
+            if (candidate != null) {
+                norms[i] = kernel.norm(candidate);
+                relevance[i] = cosine(kernel.dot(query, candidate), queryNorm, norms[i]);
+            }
+        }
+
+        // highest similarity to anything selected so far, updated with each pick: O(n * k) dot products
+        float[] redundancy = new float[n];
+        Arrays.fill(redundancy, Float.NEGATIVE_INFINITY);
+        boolean[] done = new boolean[n];
+        int[] selected = new int[Math.min(k, n)];
+        int count = 0;
+
+        while (count < selected.length) {
+            int best = -1;
+            float bestScore = Float.NEGATIVE_INFINITY;
+            for (int i = 0; i < n; i++) {
+                if (done[i]) {
+                    continue;
+                }
+                float penalty = count == 0 ? 0f : Math.max(redundancy[i], 0f);
+                float score = lambda * relevance[i] - (1f - lambda) * penalty;
+                if (score > bestScore) {
+                    best = i;
+                    bestScore = score;
+                }
+            }
+            if (best < 0) {
+                break;
+            }
+
+            done[best] = true;
+            selected[count++] = best;
+
+            float[] picked = candidates.get(best);
+            if (picked == null) {
+                continue;
+            }
+            for (int i = 0; i < n; i++) {
+                float[] candidate = candidates.get(i);
+                if (done[i] || candidate == null) {
+                    continue;
+                }
+                float similarity = cosine(kernel.dot(picked, candidate), norms[best], norms[i]);
+                if (similarity >= duplicateThreshold) {
+                    done[i] = true; // near-duplicate of a chosen chunk, typically the overlap of adjacent chunks
+                } else if (similarity > redundancy[i]) {
+                    redundancy[i] = similarity;
+                }
+            }
+        }
+        return count == selected.length ? selected : Arrays.copyOf(selected, count);
+    }
+
+    private static float cosine(float dot, float normA, float normB) {
+        return normA == 0f || normB == 0f ? 0f : dot / (normA * normB);
+    }
+}
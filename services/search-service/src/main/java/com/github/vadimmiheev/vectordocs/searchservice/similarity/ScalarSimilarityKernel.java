@@ -0,0 +1,41 @@
+package com.github.vadimmiheev.vectordocs.searchservice.similarity;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteOrder;
+
+/**
+ * Plain loops, used when the Vector API module is not available.
+ */
+public class ScalarSimilarityKernel implements SimilarityKernel {
+
+    private static final ValueLayout.OfFloat FLOAT_LE = ValueLayout.JAVA_FLOAT_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+
+    @Override
+    public float dot(float[] a, float[] b) {
+        return dot(a, b, 0);
+    }
+
+    @Override
+    public float dot(float[] query, float[] data, int offset) {
+        float sum = 0f;
+        for (int i = 0; i < query.length; i++) {
+            sum += query[i] * data[offset + i];
+        }
+        return sum;
+    }
+
+    @Override
+    public float dot(float[] query, MemorySegment data, long offset) {
+        float sum = 0f;
+        for (int i = 0; i < query.length; i++) {
+            sum += query[i] * data.get(FLOAT_LE, offset + (long) i * Float.BYTES);
+        }
+        return sum;
+    }
+
+    @Override
+    public String name() {
+        return "scalar";
+    }
+}
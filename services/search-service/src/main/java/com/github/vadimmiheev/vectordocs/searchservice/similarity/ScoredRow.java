@@ -0,0 +1,4 @@
+package com.github.vadimmiheev.vectordocs.searchservice.similarity;
+
+public record ScoredRow(long rowId, float score) {
+}
@@ -0,0 +1,65 @@
+package com.github.vadimmiheev.vectordocs.searchservice.similarity;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteOrder;
+
+/**
+ * Vector API implementation. Only loaded through {@link SimilarityKernels} when {@code jdk.incubator.vector} is resolved,
+ * i.e. the JVM was started with {@code --add-modules jdk.incubator.vector}.
+ */
+public class SimdSimilarityKernel implements SimilarityKernel {
+
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+    private static final ValueLayout.OfFloat FLOAT_LE = ValueLayout.JAVA_FLOAT_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+
+    @Override
+    public float dot(float[] a, float[] b) {
+        return dot(a, b, 0);
+    }
+
+    @Override
+    public float dot(float[] query, float[] data, int offset) {
+        int length = query.length;
+        int bound = SPECIES.loopBound(length);
+        FloatVector acc = FloatVector.zero(SPECIES);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            FloatVector q = FloatVector.fromArray(SPECIES, query, i);
+            FloatVector d = FloatVector.fromArray(SPECIES, data, offset + i);
+            acc = q.fma(d, acc);
+        }
+        float sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            sum += query[i] * data[offset + i];
+        }
+        return sum;
+    }
+
+    @Override
+    public float dot(float[] query, MemorySegment data, long offset) {
+        int length = query.length;
+        int bound = SPECIES.loopBound(length);
+        FloatVector acc = FloatVector.zero(SPECIES);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            FloatVector q = FloatVector.fromArray(SPECIES, query, i);
+            FloatVector d = FloatVector.fromMemorySegment(SPECIES, data, offset + (long) i * Float.BYTES, ByteOrder.LITTLE_ENDIAN);
+            acc = q.fma(d, acc);
+        }
+        float sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            sum += query[i] * data.get(FLOAT_LE, offset + (long) i * Float.BYTES);
+        }
+        return sum;
+    }
+
+    @Override
+    public String name() {
+        return "simd-" + SPECIES.vectorBitSize();
+    }
+}
@@ -0,0 +1,32 @@
+package com.github.vadimmiheev.vectordocs.searchservice.similarity;
+
+import java.lang.foreign.MemorySegment;
+
+/**
+ * Dot product primitives used by the in-JVM scorers. Cosine similarity is derived from the dot product and precomputed norms.
+ */
+public interface SimilarityKernel {
+
+    float dot(float[] a, float[] b);
+
+    /**
+     * Dot product of the query with {@code query.length} floats of {@code data} starting at {@code offset}.
+     */
+    float dot(float[] query, float[] data, int offset);
+
+    /**
+     * Dot product of the query with little-endian float32 components stored off-heap starting at byte {@code offset}.
+     */
+    float dot(float[] query, MemorySegment data, long offset);
+
+    default float norm(float[] a) {
+        return (float) Math.sqrt(dot(a, a));
+    }
+
+    default float cosine(float[] a, float[] b) {
+        float denominator = norm(a) * norm(b);
+        return denominator == 0f ? 0f : dot(a, b) / denominator;
+    }
+
+    String name();
+}
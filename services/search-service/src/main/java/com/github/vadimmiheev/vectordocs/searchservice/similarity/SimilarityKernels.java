@@ -0,0 +1,35 @@
+package com.github.vadimmiheev.vectordocs.searchservice.similarity;
+
+import lombok.extern.slf4j.Slf4j;
+
+@Slf4j
+public final class SimilarityKernels {
+
+    private static final String VECTOR_MODULE = "jdk.incubator.vector";
+
+    private SimilarityKernels() {
+    }
+
+    public static SimilarityKernel scalar() {
+        return new ScalarSimilarityKernel();
+    }
+
+    /**
+     * Vector API kernel when the incubator module is resolved, scalar kernel otherwise.
+     */
+    public static SimilarityKernel best() {
+        if (ModuleLayer.boot().findModule(VECTOR_MODULE).isEmpty()) {
+            log.info("Module {} is not available, using scalar similarity kernel", VECTOR_MODULE);
+            return scalar();
+        }
+        try {
+            // loaded reflectively so that this class links without the incubator module
+            return (SimilarityKernel) Class.forName(SimilarityKernels.class.getPackageName() + ".SimdSimilarityKernel")
+                    .getDeclaredConstructor()
+                    .newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            log.warn("Failed to initialize SIMD similarity kernel, using scalar one: {}", e.getMessage());
+            return scalar();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.github.vadimmiheev.vectordocs.searchservice.similarity;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Keeps the {@code k} highest scores seen so far in a primitive min-heap, so a scan allocates nothing per row.
+ * Not thread-safe.
+ */
+public class TopKSelector {
+
+    private final int k;
+    private final long[] ids;
+    private final float[] scores;
+    private int size;
+
+    public TopKSelector(int k) {
+        if (k <= 0) {
+            throw new IllegalArgumentException("k must be positive");
+        }
+        this.k = k;
+        this.ids = new long[k];
+        this.scores = new float[k];
+    }
+
+    /**
+     * Lowest score that still enters the heap, useful to skip work for hopeless candidates.
+     */
+    public float threshold() {
+        return size < k ? Float.NEGATIVE_INFINITY : scores[0];
+    }
+
+    public void offer(long id, float score) {
+        if (Float.isNaN(score)) {
+            return;
+        }
+        if (size < k) {
+            ids[size] = id;
+            scores[size] = score;
+            siftUp(size++);
+        } else if (score > scores[0]) {
+            ids[0] = id;
+            scores[0] = score;
+            siftDown(0);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Selected rows ordered by descending score.
+     */
+    public List<ScoredRow> results() {
+        List<ScoredRow> results = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            results.add(new ScoredRow(ids[i], scores[i]));
+        }
+        results.sort(Comparator.comparingDouble(ScoredRow::score).reversed());
+        return results;
+    }
+
+    private void siftUp(int index) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (scores[index] >= scores[parent]) break;
+            swap(index, parent);
+            index = parent;
+        }
+    }
+
+    private void siftDown(int index) {
+        while (true) {
+            int left = 2 * index + 1;
+            if (left >= size) break;
+            int smallest = left + 1 < size && scores[left + 1] < scores[left] ? left + 1 : left;
+            if (scores[index] <= scores[smallest]) break;
+            swap(index, smallest);
+            index = smallest;
+        }
+    }
+
+    private void swap(int a, int b) {
+        long id = ids[a];
+        ids[a] = ids[b];
+        ids[b] = id;
+        float score = scores[a];
+        scores[a] = scores[b];
+        scores[b] = score;
+    }
+}
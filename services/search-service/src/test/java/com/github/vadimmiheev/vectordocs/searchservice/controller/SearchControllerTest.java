@@ -0,0 +1,86 @@
+package com.github.vadimmiheev.vectordocs.searchservice.controller;
+
+import com.github.vadimmiheev.vectordocs.searchservice.dto.RetrieveResponse;
+import com.github.vadimmiheev.vectordocs.searchservice.dto.SearchProcessedEvent;
+import com.github.vadimmiheev.vectordocs.searchservice.service.DirectSearchService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.http.MediaType;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(controllers = SearchController.class)
+class SearchControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockitoBean
+    private DirectSearchService directSearchService;
+
+    @MockitoBean
+    private KafkaTemplate<String, String> kafkaTemplate;
+
+    private final String userId = "123";
+
+    @Test
+    void retrieve_ShouldReturnHits() throws Exception {
+        SearchProcessedEvent.Hit hit = new SearchProcessedEvent.Hit();
+        RetrieveResponse response = RetrieveResponse.builder().query("what is pgvector").hits(List.of(hit)).tookMs(12).build();
+        when(directSearchService.retrieve(userId, "what is pgvector", null, 3)).thenReturn(response);
+
+        mockMvc.perform(post("/search/retrieve")
+                        .header("X-User-Id", userId)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"query\":\"what is pgvector\",\"topK\":3}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.query").value("what is pgvector"))
+                .andExpect(jsonPath("$.hits.length()").value(1))
+                .andExpect(jsonPath("$.tookMs").value(12));
+    }
+
+    @Test
+    void retrieve_BlankUserId_ShouldReturnBadRequest() throws Exception {
+        mockMvc.perform(post("/search/retrieve")
+                        .header("X-User-Id", " ")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"query\":\"what is pgvector\"}"))
+                .andExpect(status().isBadRequest())
+                .andDo(result -> verify(directSearchService, never()).retrieve(any(), any(), any(), any()));
+    }
+
+    @Test
+    void retrieve_MissingQuery_ShouldReturnBadRequest() throws Exception {
+        mockMvc.perform(post("/search/retrieve")
+                        .header("X-User-Id", userId)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"topK\":3}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("query is required"))
+                .andDo(result -> verify(directSearchService, never()).retrieve(any(), any(), any(), any()));
+    }
+
+    @Test
+    void retrieve_SearchFailure_ShouldReturnInternalServerError() throws Exception {
+        when(directSearchService.retrieve(any(), any(), any(), any())).thenThrow(new IllegalStateException("db down"));
+
+        mockMvc.perform(post("/search/retrieve")
+                        .header("X-User-Id", userId)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"query\":\"what is pgvector\"}"))
+                .andExpect(status().isInternalServerError())
+                .andExpect(jsonPath("$.error").value("Failed to retrieve search results"));
+    }
+}
@@ -0,0 +1,54 @@
+package com.github.vadimmiheev.vectordocs.searchservice.datasource;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReadRoutingTest {
+
+    private final ReplicaLagGuard lagGuard = new ReplicaLagGuard();
+    private final ReadRouting readRouting = new ReadRouting(lagGuard, new SimpleMeterRegistry());
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(readRouting, "replicaEnabled", true);
+    }
+
+    @Test
+    void shouldRouteSearchesToReplica() {
+        assertThat(readRouting.forSearch("user-1", RoutingDataSource::currentRoute)).isEqualTo(DataSourceRoute.REPLICA);
+        assertThat(RoutingDataSource.currentRoute()).isEqualTo(DataSourceRoute.PRIMARY);
+    }
+
+    @Test
+    void shouldReadRecentlyChangedCorpusFromPrimary() {
+        // Given
+        lagGuard.recordCorpusChange("user-1");
+
+        // When/Then
+        assertThat(readRouting.forSearch("user-1", RoutingDataSource::currentRoute)).isEqualTo(DataSourceRoute.PRIMARY);
+        assertThat(readRouting.forSearch("user-2", RoutingDataSource::currentRoute)).isEqualTo(DataSourceRoute.REPLICA);
+    }
+
+    @Test
+    void shouldGoBackToReplicaAfterLagWindow() {
+        // Given
+        ReflectionTestUtils.setField(lagGuard, "maxLagMs", -1L);
+        lagGuard.recordCorpusChange("user-1");
+
+        // When/Then
+        assertThat(readRouting.forSearch("user-1", RoutingDataSource::currentRoute)).isEqualTo(DataSourceRoute.REPLICA);
+    }
+
+    @Test
+    void shouldNotRouteWhenReplicaIsDisabled() {
+        // Given
+        ReflectionTestUtils.setField(readRouting, "replicaEnabled", false);
+
+        // When/Then
+        assertThat(readRouting.forSearch("user-1", RoutingDataSource::currentRoute)).isEqualTo(DataSourceRoute.PRIMARY);
+    }
+}
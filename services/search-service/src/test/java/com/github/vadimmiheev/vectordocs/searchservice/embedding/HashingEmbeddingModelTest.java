@@ -0,0 +1,67 @@
+package com.github.vadimmiheev.vectordocs.searchservice.embedding;
+
+import dev.langchain4j.data.segment.TextSegment;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class HashingEmbeddingModelTest {
+
+    private final HashingEmbeddingModel model = new HashingEmbeddingModel(768, 0);
+
+    @Test
+    void shouldBeDeterministicAndNormalized() {
+        // When
+        float[] first = model.embed("Error E-4521: pressure sensor disconnected").content().vector();
+        float[] second = new HashingEmbeddingModel(768, 0).embed("Error E-4521: pressure sensor disconnected").content().vector();
+
+        // Then
+        assertThat(first).hasSize(768).containsExactly(second);
+        assertThat(dot(first, first)).isCloseTo(1f, within(1e-5f));
+        assertThat(model.dimension()).isEqualTo(768);
+    }
+
+    // document-processor has its own copy of the model with the same test: both services must embed texts alike
+    @Test
+    void shouldMatchReferenceVector() {
+        // When
+        float[] vector = model.embed("Error E-4521: pressure sensor disconnected").content().vector();
+
+        // Then
+        assertThat(vector[50]).isEqualTo(0.2902516f);
+        assertThat(vector[168]).isEqualTo(-0.20317611f);
+        assertThat(vector[498]).isEqualTo(0.17415097f);
+        assertThat(Arrays.hashCode(vector)).isEqualTo(874096921);
+    }
+
+    @Test
+    void textsSharingWordsShouldBeCloser() {
+        // Given
+        float[] query = model.embed("how to reset the pressure sensor").content().vector();
+        float[] related = model.embed("To reset the pressure sensor hold the button for 5 seconds").content().vector();
+        float[] unrelated = model.embed("Quarterly revenue grew by twelve percent").content().vector();
+
+        // When/Then
+        assertThat(dot(query, related)).isGreaterThan(dot(query, unrelated) + 0.2f);
+    }
+
+    @Test
+    void shouldEmbedBatchesAndEmptyText() {
+        // When
+        var response = model.embedAll(List.of(TextSegment.from("a b c"), TextSegment.from("!!!")));
+
+        // Then
+        assertThat(response.content()).hasSize(2);
+        assertThat(response.content().get(1).vector()).containsOnly(0f);
+    }
+
+    private float dot(float[] a, float[] b) {
+        float sum = 0f;
+        for (int i = 0; i < a.length; i++) sum += a[i] * b[i];
+        return sum;
+    }
+}
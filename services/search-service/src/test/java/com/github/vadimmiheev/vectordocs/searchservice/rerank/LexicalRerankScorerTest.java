@@ -0,0 +1,51 @@
+package com.github.vadimmiheev.vectordocs.searchservice.rerank;
+
+import com.github.vadimmiheev.vectordocs.searchservice.rerank.RerankScorer.RerankPair;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LexicalRerankScorerTest {
+
+    private final LexicalRerankScorer scorer = new LexicalRerankScorer();
+
+    @Test
+    void shouldScoreSearchTheSameAloneAndInMixedBatch() {
+        // Given
+        List<RerankPair> search = List.of(
+                new RerankPair(1L, "reset the pressure sensor", "Reset the device after a power loss."),
+                new RerankPair(1L, "reset the pressure sensor", "The pressure sensor is reset from the service menu."),
+                new RerankPair(1L, "reset the pressure sensor", "Cleaning schedule for the filter."));
+        // another user's search sharing the batch, its passages are full of the same terms
+        List<RerankPair> other = List.of(
+                new RerankPair(2L, "pressure sensor wiring", "Pressure sensor wiring diagram."),
+                new RerankPair(2L, "pressure sensor wiring", "Replacing the pressure sensor cable."),
+                new RerankPair(2L, "pressure sensor wiring", "Reset the pressure sensor after wiring."));
+
+        List<RerankPair> mixed = new ArrayList<>();
+        mixed.add(other.get(0));
+        mixed.addAll(search);
+        mixed.addAll(other.subList(1, other.size()));
+
+        // When
+        float[] alone = scorer.score(search);
+        float[] inBatch = Arrays.copyOfRange(scorer.score(mixed), 1, 1 + search.size());
+
+        // Then
+        assertThat(inBatch).containsExactly(alone);
+        assertThat(alone[1]).isGreaterThan(alone[0]).isGreaterThan(alone[2]);
+    }
+
+    @Test
+    void shouldScoreEmptyQueryAsZero() {
+        // When
+        float[] scores = scorer.score(List.of(new RerankPair(1L, "?!", "Any passage.")));
+
+        // Then
+        assertThat(scores).containsExactly(0f);
+    }
+}
@@ -0,0 +1,169 @@
+package com.github.vadimmiheev.vectordocs.searchservice.rerank;
+
+import com.github.vadimmiheev.vectordocs.searchservice.entity.Embedding;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RerankServiceTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private RerankService rerankService;
+
+    @AfterEach
+    void tearDown() {
+        if (rerankService != null) {
+            rerankService.shutdown();
+        }
+    }
+
+    @Test
+    void shouldReorderCandidatesAndRecordRankShift() {
+        // Given
+        rerankService = new RerankService(List.of(new LexicalRerankScorer()), "lexical", meterRegistry, 64, 1);
+        List<Embedding> candidates = List.of(
+                chunk(1L, "General safety instructions for the device."),
+                chunk(2L, "Maintenance schedule and cleaning."),
+                chunk(3L, "Error E-4521 means the pressure sensor is disconnected."));
+
+        // When
+        List<Embedding> result = rerankService.rerank("what does error E-4521 mean", candidates, 2);
+
+        // Then
+        assertThat(result).extracting(Embedding::getId).startsWith(3L).hasSize(2);
+        assertThat(meterRegistry.get("search.rerank.rank-shift").summary().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("search.rerank.top1-changed").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("search.rerank.promoted").summary().totalAmount()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldKeepVectorOrderWhenBudgetIsExceeded() {
+        // Given
+        RerankScorer slowScorer = new RerankScorer() {
+            @Override
+            public float[] score(List<RerankPair> pairs) {
+                try {
+                    Thread.sleep(500);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return new float[pairs.size()];
+            }
+
+            @Override
+            public String name() {
+                return "slow";
+            }
+        };
+        rerankService = new RerankService(List.of(slowScorer), "slow", meterRegistry, 64, 1);
+        ReflectionTestUtils.setField(rerankService, "latencyBudgetMs", 20L);
+        List<Embedding> candidates = List.of(chunk(1L, "a"), chunk(2L, "b"), chunk(3L, "c"));
+
+        // When
+        List<Embedding> result = rerankService.rerank("query", candidates, 2);
+
+        // Then
+        assertThat(result).extracting(Embedding::getId).containsExactly(1L, 2L);
+        assertThat(meterRegistry.get("search.rerank.fallback").tag("reason", "timeout").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldScoreConcurrentSearchesInOneBatch() {
+        // Given
+        List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        RerankScorer recordingScorer = new RerankScorer() {
+            @Override
+            public float[] score(List<RerankPair> pairs) {
+                batchSizes.add(pairs.size());
+                return new float[pairs.size()];
+            }
+
+            @Override
+            public String name() {
+                return "recording";
+            }
+        };
+        rerankService = new RerankService(List.of(recordingScorer), "recording", meterRegistry, 64, 300);
+        ReflectionTestUtils.setField(rerankService, "latencyBudgetMs", 5000L);
+
+        // When
+        CompletableFuture<List<Embedding>> first = CompletableFuture.supplyAsync(
+                () -> rerankService.rerank("q1", List.of(chunk(1L, "a"), chunk(2L, "b")), 2));
+        CompletableFuture<List<Embedding>> second = CompletableFuture.supplyAsync(
+                () -> rerankService.rerank("q2", List.of(chunk(3L, "c"), chunk(4L, "d"), chunk(5L, "e")), 2));
+
+        // Then
+        assertThat(first.join()).extracting(Embedding::getId).containsExactly(1L, 2L);
+        assertThat(second.join()).extracting(Embedding::getId).containsExactly(3L, 4L);
+        assertThat(batchSizes).containsExactly(5);
+    }
+
+    @Test
+    void shouldNotScoreSearchesThatTimedOutWhileQueued() throws Exception {
+        // Given - the scorer is busy with the first search past everyone's budget
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        RerankScorer blockingScorer = new RerankScorer() {
+            @Override
+            public float[] score(List<RerankPair> pairs) {
+                batchSizes.add(pairs.size());
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return new float[pairs.size()];
+            }
+
+            @Override
+            public String name() {
+                return "blocking";
+            }
+        };
+        rerankService = new RerankService(List.of(blockingScorer), "blocking", meterRegistry, 64, 1);
+        ReflectionTestUtils.setField(rerankService, "latencyBudgetMs", 50L);
+        rerankService.rerank("q1", List.of(chunk(1L, "a"), chunk(2L, "b")), 2);
+
+        // When - the second search gives up while queued behind it
+        rerankService.rerank("q2", List.of(chunk(3L, "c"), chunk(4L, "d"), chunk(5L, "e")), 2);
+        release.countDown();
+        ReflectionTestUtils.setField(rerankService, "latencyBudgetMs", 5000L);
+        rerankService.rerank("q3", List.of(chunk(6L, "f"), chunk(7L, "g"), chunk(8L, "h"), chunk(9L, "i")), 2);
+
+        // Then - the abandoned search never reaches the scorer
+        assertThat(batchSizes).containsExactly(2, 4);
+        assertThat(meterRegistry.get("search.rerank.fallback").tag("reason", "timeout").counter().count()).isEqualTo(2);
+    }
+
+    @Test
+    void shouldFailClearlyOnUnknownScorer() {
+        // When/Then - e.g. a cross-encoder that is not shipped yet
+        assertThatThrownBy(() -> new RerankService(List.of(new LexicalRerankScorer()), "cross-encoder", meterRegistry, 64, 1))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("app.search.rerank.scorer=cross-encoder")
+                .hasMessageContaining("lexical");
+    }
+
+    private Embedding chunk(Long id, String text) {
+        return Embedding.builder()
+                .id(id)
+                .fileUuid(UUID.randomUUID())
+                .fileName("manual.pdf")
+                .chunkText(text)
+                .pageNumber(1)
+                .userId("user-1")
+                .build();
+    }
+}
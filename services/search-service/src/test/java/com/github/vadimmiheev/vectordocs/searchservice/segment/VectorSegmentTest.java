@@ -0,0 +1,104 @@
+package com.github.vadimmiheev.vectordocs.searchservice.segment;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+class VectorSegmentTest {
+
+    private static final int DIMENSION = 768;
+
+    @TempDir
+    Path tempDir;
+
+    @ParameterizedTest
+    @EnumSource(VectorEncoding.class)
+    void shouldRoundTripRowsAndVectors(VectorEncoding encoding) throws Exception {
+        // Given
+        Path path = tempDir.resolve("user.vseg");
+        UUID firstFile = UUID.randomUUID();
+        UUID secondFile = UUID.randomUUID();
+        float[][] vectors = randomVectors(3);
+
+        try (VectorSegmentWriter writer = new VectorSegmentWriter(path, DIMENSION, encoding)) {
+            writer.append(10L, firstFile, vectors[0]);
+            writer.append(11L, firstFile, vectors[1]);
+            writer.append(42L, secondFile, vectors[2]);
+            writer.finish();
+        }
+
+        // When
+        VectorSegment segment = VectorSegment.open(path);
+
+        // Then
+        assertThat(segment.encoding()).isEqualTo(encoding);
+        assertThat(segment.dimension()).isEqualTo(DIMENSION);
+        assertThat(segment.count()).isEqualTo(3);
+        assertThat(segment.maxRowId()).isEqualTo(42L);
+        assertThat(segment.rowId(2)).isEqualTo(42L);
+        assertThat(segment.fileUuid(0)).isEqualTo(firstFile);
+        assertThat(segment.rowRange(firstFile)).isEqualTo(new VectorSegment.RowRange(0, 2));
+        assertThat(segment.rowRange(secondFile)).isEqualTo(new VectorSegment.RowRange(2, 3));
+        assertThat(segment.rowRange(UUID.randomUUID())).isNull();
+
+        float tolerance = encoding == VectorEncoding.FLOAT32 ? 1e-4f : 5e-3f;
+        for (int row = 0; row < 3; row++) {
+            assertThat(segment.dot(row, vectors[0])).isCloseTo(dot(vectors[row], vectors[0]), within(tolerance * DIMENSION / 10));
+            assertThat(segment.decode(row, new float[DIMENSION])[7]).isCloseTo(vectors[row][7], within(tolerance));
+        }
+    }
+
+    @Test
+    void shouldNotLeaveSpoolFilesBehind() throws Exception {
+        // Given
+        Path path = tempDir.resolve("user.vseg");
+
+        // When
+        try (VectorSegmentWriter writer = new VectorSegmentWriter(path, DIMENSION, VectorEncoding.FLOAT32)) {
+            writer.append(1L, UUID.randomUUID(), randomVectors(1)[0]);
+            writer.finish();
+        }
+
+        // Then
+        try (var files = Files.list(tempDir)) {
+            assertThat(files).containsExactly(path);
+        }
+    }
+
+    @Test
+    void shouldRejectForeignFiles() throws Exception {
+        // Given
+        Path path = tempDir.resolve("broken.vseg");
+        Files.write(path, new byte[128]);
+
+        // When/Then
+        assertThatThrownBy(() -> VectorSegment.open(path)).isInstanceOf(IllegalStateException.class);
+    }
+
+    private float[][] randomVectors(int count) {
+        Random random = new Random(7);
+        float[][] vectors = new float[count][DIMENSION];
+        for (float[] vector : vectors) {
+            for (int i = 0; i < DIMENSION; i++) {
+                vector[i] = (float) random.nextGaussian() * 0.05f;
+            }
+        }
+        return vectors;
+    }
+
+    private float dot(float[] a, float[] b) {
+        float sum = 0f;
+        for (int i = 0; i < a.length; i++) sum += a[i] * b[i];
+        return sum;
+    }
+}
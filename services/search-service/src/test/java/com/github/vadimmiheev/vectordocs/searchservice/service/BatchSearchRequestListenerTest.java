@@ -0,0 +1,169 @@
+package com.github.vadimmiheev.vectordocs.searchservice.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.vadimmiheev.vectordocs.searchservice.dto.SearchProcessedEvent;
+import com.github.vadimmiheev.vectordocs.searchservice.entity.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationHandler;
+import io.micrometer.observation.ObservationRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BatchSearchRequestListenerTest {
+
+    @Mock
+    private RetrievalService retrievalService;
+
+    @Mock
+    private EmbeddingModel embeddingModel;
+
+    @Mock
+    private KafkaTemplate<String, String> kafkaTemplate;
+
+    @Mock
+    private SpeculativeSearch speculativeSearch;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private BatchSearchRequestListener listener;
+
+    private final String processedTopic = "search.processed";
+
+    // "name request.id" of every finished span
+    private final List<String> spans = new CopyOnWriteArrayList<>();
+
+    private final ObservationRegistry observationRegistry = ObservationRegistry.create();
+
+    @BeforeEach
+    void setUp() {
+        observationRegistry.observationConfig().observationHandler(new ObservationHandler<>() {
+            @Override
+            public boolean supportsContext(Observation.Context context) {
+                return true;
+            }
+
+            @Override
+            public void onStop(Observation.Context context) {
+                spans.add(context.getName() + " " + context.getHighCardinalityKeyValue("request.id").getValue());
+            }
+        });
+        listener = new BatchSearchRequestListener(retrievalService, embeddingModel, kafkaTemplate, objectMapper,
+                new SearchResultCache(new SimpleMeterRegistry()), speculativeSearch, observationRegistry, 4);
+        ReflectionTestUtils.setField(listener, "processedTopic", processedTopic);
+        ReflectionTestUtils.setField(listener, "topK", 5);
+    }
+
+    @AfterEach
+    void tearDown() {
+        listener.shutdown();
+    }
+
+    @Test
+    void shouldEmbedBatchOnceAndPublishPerRecordKey() throws Exception {
+        // Given
+        float[] firstVector = {1f, 0f};
+        float[] secondVector = {0f, 1f};
+        when(embeddingModel.embedAll(anyList())).thenReturn(Response.from(List.of(
+                dev.langchain4j.data.embedding.Embedding.from(firstVector),
+                dev.langchain4j.data.embedding.Embedding.from(secondVector))));
+        when(retrievalService.retrieve(eq("user-1"), isNull(), eq("enhanced first"), eq(firstVector), eq(5)))
+                .thenReturn(List.of(hit("user-1", "first chunk")));
+        when(retrievalService.retrieve(eq("user-2"), isNull(), eq("second"), eq(secondVector), eq(5)))
+                .thenReturn(List.of(hit("user-2", "second chunk")));
+
+        List<ConsumerRecord<String, String>> records = List.of(
+                record("key-1", "{\"requestId\":\"r1\",\"query\":\"first\",\"ragQuery\":\"enhanced first\",\"userId\":\"user-1\"}"),
+                record("key-bad", "{\"requestId\":\"r2\",\"query\":\"\",\"userId\":\"user-3\"}"),
+                record("key-2", "{\"requestId\":\"r3\",\"query\":\"second\",\"userId\":\"user-2\"}"));
+
+        // When
+        listener.onSearchRequests(records);
+
+        // Then
+        verify(embeddingModel, times(1)).embedAll(List.of(TextSegment.from("enhanced first"), TextSegment.from("second")));
+
+        ArgumentCaptor<String> payload = ArgumentCaptor.forClass(String.class);
+        verify(kafkaTemplate).send(eq(processedTopic), eq("key-1"), payload.capture());
+        verify(kafkaTemplate).send(eq(processedTopic), eq("key-2"), payload.capture());
+        verify(kafkaTemplate, never()).send(any(), eq("key-bad"), any());
+
+        SearchProcessedEvent first = objectMapper.readValue(payload.getAllValues().get(0), SearchProcessedEvent.class);
+        assertThat(first.getRequestId()).isEqualTo("r1");
+        assertThat(first.getEmbeddings()).extracting(SearchProcessedEvent.Hit::getChunkText).containsExactly("first chunk");
+        assertThat(spans).containsExactlyInAnyOrder(
+                "search.embedding r1,r3", "search.vector-query r1", "search.vector-query r3");
+    }
+
+    @Test
+    void shouldEmbedEachRequestWhenBatchEmbeddingFails() {
+        // Given
+        float[] vector = {1f, 0f};
+        when(embeddingModel.embedAll(anyList())).thenThrow(new RuntimeException("batch too large"));
+        when(embeddingModel.embed("good")).thenReturn(Response.from(dev.langchain4j.data.embedding.Embedding.from(vector)));
+        when(embeddingModel.embed("bad")).thenThrow(new RuntimeException("embedding service rejected the text"));
+        when(retrievalService.retrieve(eq("user-1"), isNull(), eq("good"), eq(vector), eq(5)))
+                .thenReturn(List.of(hit("user-1", "chunk")));
+
+        // When
+        listener.onSearchRequests(List.of(
+                record("key-1", "{\"query\":\"good\",\"userId\":\"user-1\"}"),
+                record("key-2", "{\"query\":\"bad\",\"userId\":\"user-2\"}")));
+
+        // Then - the failing request only fails itself
+        verify(kafkaTemplate).send(eq(processedTopic), eq("key-1"), any());
+        verify(kafkaTemplate, never()).send(any(), eq("key-2"), any());
+        verify(retrievalService, never()).retrieve(eq("user-2"), any(), any(), any(), anyInt());
+    }
+
+    @Test
+    void shouldRefuseToStartWithSpeculativeSearch() {
+        // Given - the raw search.request is not consumed in batch mode
+        when(speculativeSearch.isEnabled()).thenReturn(true);
+
+        // When/Then
+        assertThatThrownBy(() -> new BatchSearchRequestListener(retrievalService, embeddingModel, kafkaTemplate,
+                objectMapper, new SearchResultCache(new SimpleMeterRegistry()), speculativeSearch, observationRegistry, 4))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("app.search.speculative.enabled");
+    }
+
+    private ConsumerRecord<String, String> record(String key, String value) {
+        return new ConsumerRecord<>("search.request.supplemented", 0, 0L, key, value);
+    }
+
+    private Embedding hit(String userId, String chunkText) {
+        return Embedding.builder()
+                .id(1L)
+                .fileUuid(UUID.randomUUID())
+                .fileName("doc.pdf")
+                .pageNumber(1)
+                .chunkText(chunkText)
+                .userId(userId)
+                .build();
+    }
+}
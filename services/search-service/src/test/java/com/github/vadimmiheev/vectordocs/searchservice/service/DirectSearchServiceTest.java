@@ -0,0 +1,97 @@
+package com.github.vadimmiheev.vectordocs.searchservice.service;
+
+import com.github.vadimmiheev.vectordocs.searchservice.dto.RetrieveResponse;
+import com.github.vadimmiheev.vectordocs.searchservice.entity.Embedding;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class DirectSearchServiceTest {
+
+    @Mock
+    private RetrievalService retrievalService;
+
+    @Mock
+    private EmbeddingModel embeddingModel;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private DirectSearchService directSearchService;
+
+    private SearchResultCache resultCache;
+
+    private final String userId = "user-123";
+    private final float[] queryVector = new float[]{0.1f, 0.2f, 0.3f};
+
+    @BeforeEach
+    void setUp() {
+        resultCache = new SearchResultCache(meterRegistry);
+        directSearchService = new DirectSearchService(retrievalService, embeddingModel, meterRegistry, resultCache);
+        when(embeddingModel.embed("error E-42"))
+                .thenReturn(Response.from(dev.langchain4j.data.embedding.Embedding.from(queryVector)));
+    }
+
+    @Test
+    void shouldEmbedRetrieveAndMapHits() {
+        // Given
+        UUID documentId = UUID.randomUUID();
+        Embedding hit = Embedding.builder()
+                .id(1L)
+                .fileUuid(documentId)
+                .fileName("manual.pdf")
+                .pageNumber(3)
+                .chunkText("E-42 means the sensor is offline")
+                .userId(userId)
+                .build();
+        when(retrievalService.retrieve(userId, documentId, "error E-42", queryVector, 5)).thenReturn(List.of(hit));
+
+        // When
+        RetrieveResponse response = directSearchService.retrieve(userId, "error E-42", documentId, null);
+
+        // Then
+        assertThat(response.getHits()).singleElement().satisfies(h -> {
+            assertThat(h.getFileUuid()).isEqualTo(documentId);
+            assertThat(h.getFileName()).isEqualTo("manual.pdf");
+            assertThat(h.getPageNumber()).isEqualTo(3);
+            assertThat(h.getChunkText()).isEqualTo("E-42 means the sensor is offline");
+        });
+        assertThat(meterRegistry.get("search.retrieve.direct").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldServeRepeatedQueryFromCache() {
+        // Given
+        ReflectionTestUtils.setField(resultCache, "enabled", true);
+        when(retrievalService.retrieve(userId, null, "error E-42", queryVector, 5)).thenReturn(List.of());
+
+        // When
+        directSearchService.retrieve(userId, "error E-42", null, 5);
+        directSearchService.retrieve(userId, "error E-42", null, 5);
+
+        // Then
+        verify(embeddingModel, times(1)).embed("error E-42");
+        verify(retrievalService, times(1)).retrieve(userId, null, "error E-42", queryVector, 5);
+    }
+
+    @Test
+    void shouldCapRequestedTopK() {
+        // When
+        directSearchService.retrieve(userId, "error E-42", null, 1000);
+
+        // Then
+        verify(retrievalService).retrieve(userId, null, "error E-42", queryVector, 50);
+    }
+}
@@ -0,0 +1,308 @@
+package com.github.vadimmiheev.vectordocs.searchservice.service;
+
+import com.github.vadimmiheev.vectordocs.searchservice.datasource.ReadRouting;
+import com.github.vadimmiheev.vectordocs.searchservice.datasource.ReplicaLagGuard;
+import com.github.vadimmiheev.vectordocs.searchservice.entity.Embedding;
+import com.github.vadimmiheev.vectordocs.searchservice.repository.EmbeddingRepository;
+import com.github.vadimmiheev.vectordocs.searchservice.rerank.RerankService;
+import com.github.vadimmiheev.vectordocs.searchservice.segment.SegmentSearcher;
+import com.github.vadimmiheev.vectordocs.searchservice.segment.VectorEncoding;
+import com.github.vadimmiheev.vectordocs.searchservice.segment.VectorSegment;
+import com.github.vadimmiheev.vectordocs.searchservice.segment.VectorSegmentStore;
+import com.github.vadimmiheev.vectordocs.searchservice.segment.VectorSegmentWriter;
+import com.github.vadimmiheev.vectordocs.searchservice.similarity.SimilarityKernels;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RetrievalServiceTest {
+
+    private static final int DIMENSION = 768;
+
+    @Mock
+    private EmbeddingRepository embeddingRepository;
+
+    @Mock
+    private VectorSegmentStore segmentStore;
+
+    @Mock
+    private RerankService rerankService;
+
+    @Mock
+    private ShardedRetrieval shardedRetrieval;
+
+    @TempDir
+    Path tempDir;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private RetrievalService retrievalService;
+
+    private final String userId = "user-123";
+    private final float[] queryVector = unitVector(0);
+
+    @BeforeEach
+    void setUp() {
+        retrievalService = new RetrievalService(embeddingRepository, segmentStore,
+                new SegmentSearcher(SimilarityKernels.scalar()), meterRegistry, SimilarityKernels.scalar(),
+                rerankService, new ReadRouting(new ReplicaLagGuard(), meterRegistry),
+                shardedRetrieval);
+    }
+
+    @AfterEach
+    void tearDown() {
+        retrievalService.shutdown();
+    }
+
+    @Test
+    void shouldQueryPgvectorWithoutDocumentScope() {
+        // Given
+        String pgVectorString = Arrays.toString(queryVector);
+        List<Embedding> expected = List.of(embedding(1L, UUID.randomUUID()));
+        when(embeddingRepository.findTopSimilar(userId, pgVectorString, Limit.of(5))).thenReturn(expected);
+
+        // When
+        List<Embedding> result = retrievalService.retrieve(userId, null, "query", queryVector, 5);
+
+        // Then
+        assertThat(result).isEqualTo(expected);
+        verify(embeddingRepository, never()).findTopSimilarByDoc(any(), any(), any(), any());
+    }
+
+    @Test
+    void shouldQueryPgvectorByDocumentWhenSegmentsDisabled() {
+        // Given
+        UUID documentId = UUID.randomUUID();
+        String pgVectorString = Arrays.toString(queryVector);
+        List<Embedding> expected = List.of(embedding(1L, documentId));
+        when(segmentStore.isEnabled()).thenReturn(false);
+        when(embeddingRepository.findTopSimilarByDoc(userId, pgVectorString, documentId, Limit.of(5))).thenReturn(expected);
+
+        // When
+        List<Embedding> result = retrievalService.retrieve(userId, documentId, "query", queryVector, 5);
+
+        // Then
+        assertThat(result).isEqualTo(expected);
+        verify(embeddingRepository, never()).findTopSimilar(any(), any(), any());
+    }
+
+    @Test
+    void shouldRerankBinaryCandidatesWhenQuantizationEnabled() {
+        // Given
+        ReflectionTestUtils.setField(retrievalService, "quantization", QuantizationMode.BINARY);
+        ReflectionTestUtils.setField(retrievalService, "refineCandidates", 40);
+        String pgVectorString = Arrays.toString(queryVector);
+        List<Embedding> expected = List.of(embedding(1L, UUID.randomUUID()));
+        when(embeddingRepository.findTopSimilarBinary(userId, pgVectorString, 40, Limit.of(5))).thenReturn(expected);
+
+        // When
+        List<Embedding> result = retrievalService.retrieve(userId, null, "query", queryVector, 5);
+
+        // Then
+        assertThat(result).isEqualTo(expected);
+        verify(embeddingRepository, never()).findTopSimilar(any(), any(), any());
+    }
+
+    @Test
+    void shouldFetchAtLeastTopKHalfvecCandidates() {
+        // Given
+        ReflectionTestUtils.setField(retrievalService, "quantization", QuantizationMode.HALFVEC);
+        ReflectionTestUtils.setField(retrievalService, "refineCandidates", 3);
+        UUID documentId = UUID.randomUUID();
+        when(segmentStore.isEnabled()).thenReturn(false);
+
+        // When
+        retrievalService.retrieve(userId, documentId, "query", queryVector, 10);
+
+        // Then
+        verify(embeddingRepository).findTopSimilarHalfByDoc(userId, Arrays.toString(queryVector), documentId, 10, Limit.of(10));
+    }
+
+    @Test
+    void shouldScanSegmentForDocumentScopedSearch() throws Exception {
+        // Given
+        UUID documentId = UUID.randomUUID();
+        UUID otherDocument = UUID.randomUUID();
+        VectorSegment segment = writeSegment(documentId, otherDocument);
+        when(segmentStore.isEnabled()).thenReturn(true);
+        when(segmentStore.acquire(userId)).thenReturn(segment);
+        // returned out of order on purpose
+        when(embeddingRepository.findAllByUserIdAndIdIn(eq(userId), anyList())).thenReturn(List.of(embedding(2L, documentId), embedding(1L, documentId)));
+
+        // When
+        List<Embedding> result = retrievalService.retrieve(userId, documentId, "query", queryVector, 2);
+
+        // Then
+        assertThat(result).extracting(Embedding::getId).containsExactly(1L, 2L);
+        verify(embeddingRepository).findAllByUserIdAndIdIn(userId, List.of(1L, 2L));
+        verify(embeddingRepository, never()).findTopSimilarByDoc(any(), any(), any(), any());
+    }
+
+    @Test
+    void shouldFallBackToPgvectorWhenDocumentIsNotInSegment() throws Exception {
+        // Given
+        UUID documentId = UUID.randomUUID();
+        VectorSegment segment = writeSegment(UUID.randomUUID(), UUID.randomUUID());
+        when(segmentStore.isEnabled()).thenReturn(true);
+        when(segmentStore.acquire(userId)).thenReturn(segment);
+
+        // When
+        retrievalService.retrieve(userId, documentId, "query", queryVector, 5);
+
+        // Then
+        verify(embeddingRepository).findTopSimilarByDoc(userId, Arrays.toString(queryVector), documentId, Limit.of(5));
+    }
+
+    @Test
+    void shouldFuseLexicalAndVectorRankings() {
+        // Given
+        ReflectionTestUtils.setField(retrievalService, "hybridEnabled", true);
+        String pgVectorString = Arrays.toString(queryVector);
+        UUID documentId = UUID.randomUUID();
+        when(segmentStore.isEnabled()).thenReturn(false);
+        when(embeddingRepository.findTopSimilarByDoc(userId, pgVectorString, documentId, Limit.of(20)))
+                .thenReturn(List.of(embedding(1L, documentId), embedding(2L, documentId), embedding(3L, documentId)));
+        when(embeddingRepository.findTopLexicalByDoc(userId, "'error' | 'e-4521'", documentId, Limit.of(20)))
+                .thenReturn(List.of(embedding(4L, documentId), embedding(3L, documentId)));
+
+        // When
+        List<Embedding> result = retrievalService.retrieve(userId, documentId, "What is error E-4521?", queryVector, 3);
+
+        // Then
+        // 3 is found by both legs, 1 and 4 tie on rank 1 of their leg and the vector leg comes first
+        assertThat(result).extracting(Embedding::getId).containsExactly(3L, 1L, 4L);
+        assertThat(meterRegistry.get("search.retrieval.leg").tag("leg", "lexical").timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("search.retrieval.leg").tag("leg", "vector").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldKeepVectorResultsWhenLexicalLegFails() {
+        // Given
+        ReflectionTestUtils.setField(retrievalService, "hybridEnabled", true);
+        List<Embedding> vectorHits = List.of(embedding(1L, UUID.randomUUID()), embedding(2L, UUID.randomUUID()));
+        when(embeddingRepository.findTopSimilar(userId, Arrays.toString(queryVector), Limit.of(20))).thenReturn(vectorHits);
+        when(embeddingRepository.findTopLexical(eq(userId), anyString(), any())).thenThrow(new IllegalStateException("boom"));
+
+        // When
+        List<Embedding> result = retrievalService.retrieve(userId, null, "part AB-123-X", queryVector, 2);
+
+        // Then
+        assertThat(result).isEqualTo(vectorHits);
+    }
+
+    @Test
+    void shouldSkipLexicalLegWithoutSearchableTerms() {
+        // Given
+        ReflectionTestUtils.setField(retrievalService, "hybridEnabled", true);
+
+        // When
+        retrievalService.retrieve(userId, null, "what is it?", queryVector, 5);
+
+        // Then
+        verify(embeddingRepository).findTopSimilar(userId, Arrays.toString(queryVector), Limit.of(5));
+        verify(embeddingRepository, never()).findTopLexical(any(), any(), any());
+    }
+
+    @Test
+    void shouldOverfetchAndDropNearDuplicatesWithMmr() {
+        // Given
+        ReflectionTestUtils.setField(retrievalService, "mmrEnabled", true);
+        ReflectionTestUtils.setField(retrievalService, "mmrOverfetch", 3);
+        UUID documentId = UUID.randomUUID();
+        Embedding best = embedding(1L, documentId, unitVector(0));
+        Embedding overlap = embedding(2L, documentId, unitVector(0)); // same passage from the chunk overlap
+        Embedding other = embedding(3L, documentId, mix(0, 1));
+        when(embeddingRepository.findTopSimilar(userId, Arrays.toString(queryVector), Limit.of(6)))
+                .thenReturn(List.of(best, overlap, other));
+
+        // When
+        List<Embedding> result = retrievalService.retrieve(userId, null, "query", queryVector, 2);
+
+        // Then
+        assertThat(result).extracting(Embedding::getId).containsExactly(1L, 3L);
+    }
+
+    @Test
+    void shouldRerankWiderCandidatePool() {
+        // Given
+        List<Embedding> candidates = List.of(embedding(1L, UUID.randomUUID()), embedding(2L, UUID.randomUUID()));
+        List<Embedding> reranked = List.of(candidates.get(1));
+        when(rerankService.isEnabled()).thenReturn(true);
+        when(rerankService.candidates()).thenReturn(20);
+        when(embeddingRepository.findTopSimilar(userId, Arrays.toString(queryVector), Limit.of(20))).thenReturn(candidates);
+        when(rerankService.rerank("query", candidates, 1)).thenReturn(reranked);
+
+        // When
+        List<Embedding> result = retrievalService.retrieve(userId, null, "query", queryVector, 1);
+
+        // Then
+        assertThat(result).isEqualTo(reranked);
+    }
+
+    @Test
+    void lexicalQueryShouldKeepIdentifiersWhole() {
+        assertThat(LexicalQuery.toTsQuery("Where is part AB-123-X / err_42 used?"))
+                .isEqualTo("'part' | 'ab-123-x' | 'err_42' | 'used'");
+        assertThat(LexicalQuery.toTsQuery("it's (a) & b!")).isNull();
+    }
+
+    private VectorSegment writeSegment(UUID documentId, UUID otherDocument) throws Exception {
+        Path path = tempDir.resolve("segment.vseg");
+        try (VectorSegmentWriter writer = new VectorSegmentWriter(path, DIMENSION, VectorEncoding.FLOAT32)) {
+            writer.append(1L, documentId, unitVector(0));  // identical to the query
+            writer.append(2L, documentId, mix(0, 1));       // 45 degrees away
+            writer.append(3L, documentId, unitVector(1));   // orthogonal
+            writer.append(4L, otherDocument, unitVector(0)); // other document, must not be returned
+            writer.finish();
+        }
+        return VectorSegment.open(path);
+    }
+
+    private static float[] unitVector(int axis) {
+        float[] vector = new float[DIMENSION];
+        vector[axis] = 1f;
+        return vector;
+    }
+
+    private static float[] mix(int first, int second) {
+        float[] vector = new float[DIMENSION];
+        vector[first] = 1f;
+        vector[second] = 1f;
+        return vector;
+    }
+
+    private Embedding embedding(Long id, UUID fileUuid) {
+        return embedding(id, fileUuid, new float[DIMENSION]);
+    }
+
+    private Embedding embedding(Long id, UUID fileUuid, float[] vector) {
+        return Embedding.builder()
+                .id(id)
+                .fileUuid(fileUuid)
+                .fileName("doc.pdf")
+                .chunkText("chunk " + id)
+                .vector(vector)
+                .pageNumber(1)
+                .userId(userId)
+                .build();
+    }
+}
@@ -4,16 +4,16 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.vadimmiheev.vectordocs.searchservice.dto.SearchProcessedEvent;
 import com.github.vadimmiheev.vectordocs.searchservice.dto.SearchRequestEvent;
 import com.github.vadimmiheev.vectordocs.searchservice.entity.Embedding;
-import com.github.vadimmiheev.vectordocs.searchservice.repository.EmbeddingRepository;
 import dev.langchain4j.model.embedding.EmbeddingModel;
 import dev.langchain4j.model.output.Response;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.data.domain.Limit;
 import org.springframework.kafka.core.KafkaTemplate;
 
 import java.time.Instant;
@@ -21,14 +21,16 @@ import java.util.*;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 class SearchRequestListenerTest {
 
     @Mock
-    private EmbeddingRepository embeddingRepository;
+    private RetrievalService retrievalService;
 
     @Mock
     private EmbeddingModel embeddingModel;
@@ -39,6 +41,9 @@ class SearchRequestListenerTest {
     @Mock
     private ObjectMapper objectMapper;
 
+    @Mock
+    private SpeculativeSearch speculativeSearch;
+
 
     private SearchRequestListener searchRequestListener;
 
@@ -48,10 +53,13 @@ class SearchRequestListenerTest {
     @BeforeEach
     void setUp() {
         searchRequestListener = new SearchRequestListener(
-                embeddingRepository,
+                retrievalService,
                 embeddingModel,
                 kafkaTemplate,
-                objectMapper
+                objectMapper,
+                new SearchResultCache(new SimpleMeterRegistry()),
+                speculativeSearch,
+                ObservationRegistry.NOOP
         );
 
         // Set up fields via reflection since they're @Value injected
@@ -91,7 +99,6 @@ class SearchRequestListenerTest {
         // Mock embedding generation
         float[] queryVector = new float[768];
         Arrays.fill(queryVector, 0.5f);
-        String pgVectorString = Arrays.toString(queryVector);
 
         dev.langchain4j.data.embedding.Embedding langChainEmbedding = dev.langchain4j.data.embedding.Embedding.from(queryVector);
         Response<dev.langchain4j.data.embedding.Embedding> embeddingResponse = Response.from(langChainEmbedding);
@@ -99,13 +106,13 @@ class SearchRequestListenerTest {
         when(objectMapper.readValue(message, SearchRequestEvent.class)).thenReturn(requestEvent);
         when(embeddingModel.embed(ragQuery)).thenReturn(embeddingResponse);
 
-        // Mock repository response
+        // Mock retrieval response
         List<Embedding> mockEmbeddings = Arrays.asList(
                 createEmbedding(1L, UUID.randomUUID(), "doc1.pdf", "First chunk text", 1, userId),
                 createEmbedding(2L, UUID.randomUUID(), "doc2.pdf", "Second chunk text", 2, userId)
         );
 
-        when(embeddingRepository.findTopSimilar(eq(userId), eq(pgVectorString), eq(Limit.of(topK))))
+        when(retrievalService.retrieve(eq(userId), isNull(), eq(ragQuery), eq(queryVector), eq(topK)))
                 .thenReturn(mockEmbeddings);
 
         // Mock Kafka message serialization
@@ -118,9 +125,8 @@ class SearchRequestListenerTest {
         // Verify embedding generation
         verify(embeddingModel).embed(ragQuery);
 
-        // Verify repository call
-        verify(embeddingRepository).findTopSimilar(userId, pgVectorString, Limit.of(topK));
-        verify(embeddingRepository, never()).findTopSimilarByDoc(any(), any(), any(), any());
+        // Verify retrieval call
+        verify(retrievalService).retrieve(userId, null, ragQuery, queryVector, topK);
 
         // Verify Kafka message sent
         verify(kafkaTemplate).send(eq(processedTopic), eq(key), eq("processed-message"));
@@ -134,9 +140,11 @@ class SearchRequestListenerTest {
         assertThat(processedEvent.getQuery()).isEqualTo(query);
         assertThat(processedEvent.getUserId()).isEqualTo(userId);
         assertThat(processedEvent.getEmbeddings()).hasSize(2);
+        assertThat(processedEvent.getQueryVector()).isEqualTo(queryVector);
 
         // Verify first hit
         SearchProcessedEvent.Hit firstHit = processedEvent.getEmbeddings().getFirst();
+        assertThat(firstHit.getId()).isEqualTo(1L);
         assertThat(firstHit.getFileName()).isEqualTo("doc1.pdf");
         assertThat(firstHit.getChunkText()).isEqualTo("First chunk text");
         assertThat(firstHit.getPageNumber()).isEqualTo(1);
@@ -171,7 +179,6 @@ class SearchRequestListenerTest {
         // Mock embedding generation
         float[] queryVector = new float[768];
         Arrays.fill(queryVector, 0.5f);
-        String pgVectorString = Arrays.toString(queryVector);
 
         dev.langchain4j.data.embedding.Embedding langChainEmbedding = dev.langchain4j.data.embedding.Embedding.from(queryVector);
         Response<dev.langchain4j.data.embedding.Embedding> embeddingResponse = Response.from(langChainEmbedding);
@@ -179,12 +186,12 @@ class SearchRequestListenerTest {
         when(objectMapper.readValue(message, SearchRequestEvent.class)).thenReturn(requestEvent);
         when(embeddingModel.embed(ragQuery)).thenReturn(embeddingResponse);
 
-        // Mock repository response with document filter
+        // Mock retrieval response with document filter
         List<Embedding> mockEmbeddings = Collections.singletonList(
                 createEmbedding(1L, documentId, "doc1.pdf", "Filtered chunk text", 1, userId)
         );
 
-        when(embeddingRepository.findTopSimilarByDoc(eq(userId), eq(pgVectorString), eq(documentId), eq(Limit.of(topK))))
+        when(retrievalService.retrieve(eq(userId), eq(documentId), eq(ragQuery), eq(queryVector), eq(topK)))
                 .thenReturn(mockEmbeddings);
 
         // Mock Kafka message serialization
@@ -194,9 +201,8 @@ class SearchRequestListenerTest {
         searchRequestListener.onSearchRequest(message, key);
 
         // Then
-        // Verify repository call with document filter
-        verify(embeddingRepository).findTopSimilarByDoc(userId, pgVectorString, documentId, Limit.of(topK));
-        verify(embeddingRepository, never()).findTopSimilar(any(), any(), any());
+        // Verify retrieval call with document filter
+        verify(retrievalService).retrieve(userId, documentId, ragQuery, queryVector, topK);
 
         // Verify Kafka message sent
         verify(kafkaTemplate).send(eq(processedTopic), eq(key), eq("processed-message"));
@@ -222,8 +228,7 @@ class SearchRequestListenerTest {
         // Then
         // Should skip processing without errors
         verify(embeddingModel, never()).embed(any(String.class));
-        verify(embeddingRepository, never()).findTopSimilar(any(), any(), any());
-        verify(embeddingRepository, never()).findTopSimilarByDoc(any(), any(), any(), any());
+        verify(retrievalService, never()).retrieve(any(), any(), any(), any(), anyInt());
         verify(kafkaTemplate, never()).send(any(), any(), any());
     }
 
@@ -247,8 +252,7 @@ class SearchRequestListenerTest {
         // Then
         // Should skip processing without errors
         verify(embeddingModel, never()).embed(any(String.class));
-        verify(embeddingRepository, never()).findTopSimilar(any(), any(), any());
-        verify(embeddingRepository, never()).findTopSimilarByDoc(any(), any(), any(), any());
+        verify(retrievalService, never()).retrieve(any(), any(), any(), any(), anyInt());
         verify(kafkaTemplate, never()).send(any(), any(), any());
     }
 
@@ -275,7 +279,6 @@ class SearchRequestListenerTest {
         // Mock embedding generation - should use query (not ragQuery) since ragQuery is empty
         float[] queryVector = new float[768];
         Arrays.fill(queryVector, 0.5f);
-        String pgVectorString = Arrays.toString(queryVector);
 
         dev.langchain4j.data.embedding.Embedding langChainEmbedding = dev.langchain4j.data.embedding.Embedding.from(queryVector);
         Response<dev.langchain4j.data.embedding.Embedding> embeddingResponse = Response.from(langChainEmbedding);
@@ -283,12 +286,12 @@ class SearchRequestListenerTest {
         when(objectMapper.readValue(message, SearchRequestEvent.class)).thenReturn(requestEvent);
         when(embeddingModel.embed(query)).thenReturn(embeddingResponse); // Should use query, not ragQuery
 
-        // Mock repository response
+        // Mock retrieval response
         List<Embedding> mockEmbeddings = Collections.singletonList(
                 createEmbedding(1L, UUID.randomUUID(), "doc.pdf", "Chunk text", 1, userId)
         );
 
-        when(embeddingRepository.findTopSimilar(eq(userId), eq(pgVectorString), eq(Limit.of(topK))))
+        when(retrievalService.retrieve(eq(userId), isNull(), eq(query), eq(queryVector), eq(topK)))
                 .thenReturn(mockEmbeddings);
 
         // Mock Kafka message serialization
@@ -301,8 +304,8 @@ class SearchRequestListenerTest {
         // Verify embedding generation uses query (not ragQuery)
         verify(embeddingModel).embed(query);
 
-        // Verify repository call
-        verify(embeddingRepository).findTopSimilar(userId, pgVectorString, Limit.of(topK));
+        // Verify retrieval call
+        verify(retrievalService).retrieve(userId, null, query, queryVector, topK);
 
         // Verify Kafka message sent
         verify(kafkaTemplate).send(eq(processedTopic), eq(key), eq("processed-message"));
@@ -323,8 +326,7 @@ class SearchRequestListenerTest {
         // Then
         // Should not throw exception, just log error
         verify(embeddingModel, never()).embed(any(String.class));
-        verify(embeddingRepository, never()).findTopSimilar(any(), any(), any());
-        verify(embeddingRepository, never()).findTopSimilarByDoc(any(), any(), any(), any());
+        verify(retrievalService, never()).retrieve(any(), any(), any(), any(), anyInt());
         verify(kafkaTemplate, never()).send(any(), any(), any());
     }
 
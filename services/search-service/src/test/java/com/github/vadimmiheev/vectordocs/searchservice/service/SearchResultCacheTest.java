@@ -0,0 +1,115 @@
+package com.github.vadimmiheev.vectordocs.searchservice.service;
+
+import com.github.vadimmiheev.vectordocs.searchservice.dto.SearchProcessedEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SearchResultCacheTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final SearchResultCache cache = new SearchResultCache(meterRegistry);
+
+    private final List<SearchProcessedEvent.Hit> hits = List.of(SearchProcessedEvent.Hit.builder()
+            .fileUuid(UUID.randomUUID())
+            .fileName("doc.pdf")
+            .pageNumber(1)
+            .chunkText("chunk")
+            .build());
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(cache, "enabled", true);
+    }
+
+    @Test
+    void shouldReturnHitsForSameQueryAndCorpusVersion() {
+        // Given
+        UUID documentId = UUID.randomUUID();
+        cache.put(cache.key("user-1", documentId, "query", 5), hits);
+
+        // When/Then
+        assertThat(cache.get(cache.key("user-1", documentId, "query", 5))).isEqualTo(hits);
+        assertThat(cache.get(cache.key("user-1", null, "query", 5))).isNull();
+        assertThat(cache.get(cache.key("user-2", documentId, "query", 5))).isNull();
+        assertThat(meterRegistry.get("search.result.cache").tag("result", "hit").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void corpusChangeShouldHideOlderResults() {
+        // Given
+        cache.put(cache.key("user-1", null, "query", 5), hits);
+
+        // When
+        cache.bumpCorpusVersion("user-1");
+
+        // Then
+        assertThat(cache.get(cache.key("user-1", null, "query", 5))).isNull();
+    }
+
+    @Test
+    void shouldNotStoreResultsComputedBeforeCorpusChange() {
+        // Given
+        SearchResultCache.Key key = cache.key("user-1", null, "query", 5);
+
+        // When
+        cache.bumpCorpusVersion("user-1"); // document processed while the search was running
+        cache.put(key, hits);
+
+        // Then
+        assertThat(cache.get(cache.key("user-1", null, "query", 5))).isNull();
+    }
+
+    @Test
+    void shouldForgetCorpusVersionsOlderThanTtl() {
+        // Given
+        cache.bumpCorpusVersion("user-1");
+        long version = cache.corpusVersion("user-1");
+        ReflectionTestUtils.setField(cache, "ttl", Duration.ofMillis(-1));
+
+        // When - the next document event prunes versions whose entries have all expired
+        cache.bumpCorpusVersion("user-2");
+
+        // Then
+        assertThat(version).isPositive();
+        assertThat(cache.corpusVersion("user-1")).isZero();
+        assertThat(cache.corpusVersion("user-2")).isGreaterThan(version);
+    }
+
+    @Test
+    void shouldStayOffUnlessEnabled() {
+        // Given
+        SearchResultCache disabled = new SearchResultCache(meterRegistry);
+        disabled.put(disabled.key("user-1", null, "query", 5), hits);
+
+        // When/Then
+        assertThat(disabled.get(disabled.key("user-1", null, "query", 5))).isNull();
+    }
+
+    @Test
+    void shouldEvictLeastRecentlyUsedAndExpiredEntries() {
+        // Given
+        ReflectionTestUtils.setField(cache, "maxEntries", 2);
+        cache.put(cache.key("user-1", null, "a", 5), hits);
+        cache.put(cache.key("user-1", null, "b", 5), hits);
+        cache.get(cache.key("user-1", null, "a", 5));
+
+        // When
+        cache.put(cache.key("user-1", null, "c", 5), hits);
+
+        // Then
+        assertThat(cache.get(cache.key("user-1", null, "a", 5))).isNotNull();
+        assertThat(cache.get(cache.key("user-1", null, "b", 5))).isNull();
+
+        ReflectionTestUtils.setField(cache, "ttl", Duration.ofMillis(-1));
+        cache.put(cache.key("user-1", null, "d", 5), hits);
+        assertThat(cache.get(cache.key("user-1", null, "d", 5))).isNull();
+    }
+}
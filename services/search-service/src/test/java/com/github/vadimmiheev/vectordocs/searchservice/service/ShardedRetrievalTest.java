@@ -0,0 +1,164 @@
+package com.github.vadimmiheev.vectordocs.searchservice.service;
+
+import com.github.vadimmiheev.vectordocs.searchservice.datasource.ReadRouting;
+import com.github.vadimmiheev.vectordocs.searchservice.datasource.ReplicaLagGuard;
+import com.github.vadimmiheev.vectordocs.searchservice.entity.Embedding;
+import com.github.vadimmiheev.vectordocs.searchservice.repository.EmbeddingRepository;
+import com.github.vadimmiheev.vectordocs.searchservice.similarity.SimilarityKernels;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentMatcher;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ShardedRetrievalTest {
+
+    @Mock
+    private EmbeddingRepository embeddingRepository;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private ShardedRetrieval shardedRetrieval;
+
+    private final String userId = "user-1";
+    private final UUID fastDocument = UUID.randomUUID();
+    private final UUID slowDocument = UUID.randomUUID();
+
+    @BeforeEach
+    void setUp() {
+        shardedRetrieval = new ShardedRetrieval(embeddingRepository, SimilarityKernels.scalar(),
+                new ReadRouting(new ReplicaLagGuard(), meterRegistry), meterRegistry, jdbcTemplate, transactionManager, 4);
+        ReflectionTestUtils.setField(shardedRetrieval, "shards", 2);
+        ReflectionTestUtils.setField(shardedRetrieval, "minDocuments", 2);
+        // not every test gets as far as listing the user's documents (split is tested on its own)
+        lenient().when(embeddingRepository.findDocumentIdsByUser(userId)).thenReturn(List.of(fastDocument, slowDocument));
+    }
+
+    @AfterEach
+    void tearDown() {
+        shardedRetrieval.shutdown();
+    }
+
+    @Test
+    void shouldMergeShardResultsByCosineSimilarity() {
+        // Given
+        when(embeddingRepository.findTopSimilarInDocs(eq(userId), anyString(), argThat(inShard(fastDocument)), any()))
+                .thenReturn(List.of(chunk(1L, fastDocument, 1f, 0f), chunk(2L, fastDocument, 0f, 1f)));
+        when(embeddingRepository.findTopSimilarInDocs(eq(userId), anyString(), argThat(inShard(slowDocument)), any()))
+                .thenReturn(List.of(chunk(3L, slowDocument, 1f, 0.5f)));
+
+        // When
+        List<Embedding> result = shardedRetrieval.retrieve(userId, new float[]{1f, 0f}, 2, QuantizationMode.NONE, 50);
+
+        // Then
+        assertThat(result).extracting(Embedding::getId).containsExactly(1L, 3L);
+    }
+
+    @Test
+    void shouldReturnPartialResultsAtDeadline() {
+        // Given
+        ReflectionTestUtils.setField(shardedRetrieval, "deadlineMs", 100L);
+        when(embeddingRepository.findTopSimilarInDocs(eq(userId), anyString(), argThat(inShard(fastDocument)), any()))
+                .thenReturn(List.of(chunk(1L, fastDocument, 1f, 0f)));
+        when(embeddingRepository.findTopSimilarInDocs(eq(userId), anyString(), argThat(inShard(slowDocument)), any()))
+                .thenAnswer(invocation -> {
+                    Thread.sleep(2000);
+                    return List.of(chunk(3L, slowDocument, 1f, 0f));
+                });
+
+        // When
+        List<Embedding> result = shardedRetrieval.retrieve(userId, new float[]{1f, 0f}, 2, QuantizationMode.NONE, 50);
+
+        // Then
+        assertThat(result).extracting(Embedding::getId).containsExactly(1L);
+        assertThat(meterRegistry.get("search.sharded.deadline-exceeded").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldBoundShardQueriesByRemainingDeadline() {
+        // Given
+        when(embeddingRepository.findTopSimilarInDocs(eq(userId), anyString(), any(), any())).thenReturn(List.of());
+
+        // When
+        shardedRetrieval.retrieve(userId, new float[]{1f, 0f}, 2, QuantizationMode.NONE, 50);
+
+        // Then
+        verify(jdbcTemplate, times(2)).queryForObject(eq("SELECT set_config('statement_timeout', ?, true)"), eq(String.class),
+                argThat((Object timeout) -> timeout instanceof String ms && ms.endsWith("ms")
+                        && Long.parseLong(ms.substring(0, ms.length() - 2)) <= 500));
+    }
+
+    @Test
+    void shouldUseQuantizedFirstStageInShards() {
+        // Given
+        when(embeddingRepository.findTopSimilarBinaryInDocs(eq(userId), anyString(), argThat(inShard(fastDocument)), eq(40), any()))
+                .thenReturn(List.of(chunk(1L, fastDocument, 1f, 0f)));
+        when(embeddingRepository.findTopSimilarBinaryInDocs(eq(userId), anyString(), argThat(inShard(slowDocument)), eq(40), any()))
+                .thenReturn(List.of(chunk(3L, slowDocument, 0f, 1f)));
+
+        // When
+        List<Embedding> result = shardedRetrieval.retrieve(userId, new float[]{1f, 0f}, 2, QuantizationMode.BINARY, 40);
+
+        // Then
+        assertThat(result).extracting(Embedding::getId).containsExactly(1L, 3L);
+        verify(embeddingRepository, never()).findTopSimilarInDocs(any(), any(), any(), any());
+    }
+
+    @Test
+    void shouldNotShardSmallCorpora() {
+        // Given
+        ReflectionTestUtils.setField(shardedRetrieval, "minDocuments", 10);
+
+        // When/Then
+        assertThat(shardedRetrieval.retrieve(userId, new float[]{1f, 0f}, 2, QuantizationMode.NONE, 50)).isNull();
+        verify(embeddingRepository, never()).findTopSimilarInDocs(any(), any(), any(), any());
+    }
+
+    @Test
+    void splitShouldSpreadDocumentsEvenly() {
+        List<UUID> documents = List.of(UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID());
+
+        assertThat(ShardedRetrieval.split(documents, 2)).extracting(List::size).containsExactly(3, 2);
+        assertThat(ShardedRetrieval.split(documents.subList(0, 1), 8)).hasSize(1);
+    }
+
+    private static ArgumentMatcher<Collection<UUID>> inShard(UUID document) {
+        return documents -> documents != null && documents.contains(document);
+    }
+
+    private Embedding chunk(Long id, UUID fileUuid, float x, float y) {
+        return Embedding.builder()
+                .id(id)
+                .fileUuid(fileUuid)
+                .fileName("doc.pdf")
+                .chunkText("chunk " + id)
+                .vector(new float[]{x, y})
+                .pageNumber(1)
+                .userId(userId)
+                .build();
+    }
+}
@@ -0,0 +1,119 @@
+package com.github.vadimmiheev.vectordocs.searchservice.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.vadimmiheev.vectordocs.searchservice.dto.SearchRequestEvent;
+import com.github.vadimmiheev.vectordocs.searchservice.entity.Embedding;
+import com.github.vadimmiheev.vectordocs.searchservice.similarity.SimilarityKernels;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class SpeculativeSearchTest {
+
+    private static final String RAW_MESSAGE =
+            "{\"requestId\":\"req-1\",\"userId\":\"user-1\",\"query\":\"and the warranty?\",\"context\":[]}";
+
+    @Mock
+    private RetrievalService retrievalService;
+
+    @Mock
+    private EmbeddingModel embeddingModel;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<Embedding> speculativeHits = List.of(new Embedding());
+
+    private SpeculativeSearch speculativeSearch;
+
+    @BeforeEach
+    void setUp() {
+        speculativeSearch = new SpeculativeSearch(retrievalService, embeddingModel, new ObjectMapper(),
+                SimilarityKernels.scalar(), meterRegistry);
+        ReflectionTestUtils.setField(speculativeSearch, "enabled", true);
+        ReflectionTestUtils.setField(speculativeSearch, "waitMs", 5000L);
+
+        when(embeddingModel.embed("and the warranty?"))
+                .thenReturn(Response.from(dev.langchain4j.data.embedding.Embedding.from(new float[]{1f, 0f, 0f})));
+        when(retrievalService.retrieve(eq("user-1"), isNull(), eq("and the warranty?"), any(float[].class), eq(5)))
+                .thenReturn(speculativeHits);
+    }
+
+    @AfterEach
+    void tearDown() {
+        speculativeSearch.shutdown();
+    }
+
+    @Test
+    void shouldUseSpeculativeHitsWhenRewriteIsClose() {
+        // Given
+        when(embeddingModel.embed("warranty period of the XR-200"))
+                .thenReturn(Response.from(dev.langchain4j.data.embedding.Embedding.from(new float[]{0.95f, 0.3f, 0f})));
+        speculativeSearch.start(RAW_MESSAGE);
+
+        // When
+        SpeculativeSearch.Outcome outcome = speculativeSearch.claim(request(), "warranty period of the XR-200");
+
+        // Then
+        assertThat(outcome.hits()).isSameAs(speculativeHits);
+        assertThat(outcome.queryVector()).containsExactly(0.95f, 0.3f, 0f);
+        assertThat(meterRegistry.counter("search.speculative", "outcome", "similar").count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void shouldAskForSecondSearchWhenRewriteDiverges() {
+        // Given
+        when(embeddingModel.embed("installation steps for the XR-200"))
+                .thenReturn(Response.from(dev.langchain4j.data.embedding.Embedding.from(new float[]{0f, 1f, 0f})));
+        speculativeSearch.start(RAW_MESSAGE);
+
+        // When
+        SpeculativeSearch.Outcome outcome = speculativeSearch.claim(request(), "installation steps for the XR-200");
+
+        // Then - the rewritten query vector is handed over, only the retrieval runs again
+        assertThat(outcome.hits()).isNull();
+        assertThat(outcome.queryVector()).containsExactly(0f, 1f, 0f);
+        assertThat(meterRegistry.counter("search.speculative", "outcome", "diverged").count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void shouldReuseEverythingWhenQueryWasNotRewritten() {
+        // Given
+        speculativeSearch.start(RAW_MESSAGE);
+
+        // When
+        SpeculativeSearch.Outcome outcome = speculativeSearch.claim(request(), "And the  warranty?");
+
+        // Then
+        assertThat(outcome.hits()).isSameAs(speculativeHits);
+        verify(embeddingModel, times(1)).embed(any(String.class));
+
+        // a speculation is claimed once
+        assertThat(speculativeSearch.claim(request(), "and the warranty?")).isNull();
+        assertThat(meterRegistry.counter("search.speculative", "outcome", "missing").count()).isEqualTo(1.0);
+    }
+
+    private static SearchRequestEvent request() {
+        SearchRequestEvent request = new SearchRequestEvent();
+        request.setRequestId("req-1");
+        request.setUserId("user-1");
+        request.setQuery("and the warranty?");
+        return request;
+    }
+}
@@ -0,0 +1,106 @@
+package com.github.vadimmiheev.vectordocs.searchservice.similarity;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteOrder;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class SimilarityKernelTest {
+
+    private final SimilarityKernel scalar = SimilarityKernels.scalar();
+    private final SimilarityKernel best = SimilarityKernels.best();
+
+    @ParameterizedTest
+    @ValueSource(ints = {3, 768, 1536, 1000})
+    void bestKernelShouldMatchScalarKernel(int dimension) {
+        // Given
+        Random random = new Random(dimension);
+        float[] query = randomVector(random, dimension);
+        float[] data = randomVector(random, dimension * 3 + 5);
+        int offset = dimension + 5;
+
+        // When/Then
+        float expected = scalar.dot(query, data, offset);
+        assertThat(best.dot(query, data, offset)).isCloseTo(expected, within(1e-3f));
+        assertThat(best.dot(query, query)).isCloseTo(scalar.dot(query, query), within(1e-3f));
+    }
+
+    @Test
+    void shouldReadLittleEndianOffHeapVectors() {
+        // Given
+        Random random = new Random(1);
+        float[] query = randomVector(random, 768);
+        float[] row = randomVector(random, 768);
+
+        try (Arena arena = Arena.ofConfined()) {
+            MemorySegment segment = arena.allocate(16 + 768L * Float.BYTES);
+            for (int i = 0; i < row.length; i++) {
+                segment.set(ValueLayout.JAVA_FLOAT_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN), 16 + (long) i * Float.BYTES, row[i]);
+            }
+
+            // When/Then
+            float expected = scalar.dot(query, row);
+            assertThat(scalar.dot(query, segment, 16)).isCloseTo(expected, within(1e-4f));
+            assertThat(best.dot(query, segment, 16)).isCloseTo(expected, within(1e-3f));
+        }
+    }
+
+    @Test
+    void cosineShouldHandleZeroVectors() {
+        assertThat(scalar.cosine(new float[]{0f, 0f}, new float[]{1f, 0f})).isZero();
+        assertThat(scalar.cosine(new float[]{2f, 0f}, new float[]{1f, 0f})).isCloseTo(1f, within(1e-6f));
+    }
+
+    @Test
+    void topKSelectorShouldKeepHighestScoresInOrder() {
+        // Given
+        TopKSelector selector = new TopKSelector(3);
+
+        // When
+        float[] scores = {0.1f, 0.9f, 0.5f, Float.NaN, 0.7f, 0.2f, 0.95f};
+        for (int i = 0; i < scores.length; i++) {
+            selector.offer(i, scores[i]);
+        }
+
+        // Then
+        List<ScoredRow> results = selector.results();
+        assertThat(results).extracting(ScoredRow::rowId).containsExactly(6L, 1L, 4L);
+        assertThat(selector.threshold()).isEqualTo(0.7f);
+    }
+
+    @Test
+    void mmrShouldTradeRelevanceForDiversity() {
+        // Given
+        float[] query = {1f, 0f, 0f};
+        List<float[]> candidates = List.of(
+                new float[]{1f, 0f, 0f},      // most relevant
+                new float[]{0.98f, 0.2f, 0f}, // nearly the same as the first
+                new float[]{0.6f, 0f, 0.8f},  // less relevant, different content
+                new float[]{1f, 0.01f, 0f});   // duplicate of the first
+
+        // When
+        int[] relevanceOnly = new MaximalMarginalRelevance(scalar, 1f, 1.01f).select(query, candidates, 3);
+        int[] diverse = new MaximalMarginalRelevance(scalar, 0.3f, 0.999f).select(query, candidates, 3);
+
+        // Then
+        assertThat(relevanceOnly).containsExactly(0, 3, 1);
+        assertThat(diverse).containsExactly(0, 2, 1);
+    }
+
+    private float[] randomVector(Random random, int dimension) {
+        float[] vector = new float[dimension];
+        for (int i = 0; i < dimension; i++) {
+            vector[i] = (float) random.nextGaussian() * 0.05f;
+        }
+        return vector;
+    }
+}